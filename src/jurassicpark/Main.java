@@ -1,7 +1,14 @@
 package jurassicpark;
 
 
+import jurassicpark.connection.ConnectionJP;
+import jurassicpark.connection.MigradorEsquema;
 import jurassicpark.controller.AppController;
+import jurassicpark.dao.CacheEntidades;
+import jurassicpark.dao.FabricaDAO;
+import jurassicpark.util.Configuracion;
+
+import java.util.Arrays;
 
 
 /**
@@ -15,9 +22,27 @@ public class Main {
      * @param args Argumentos de la línea de comandos (no utilizados)
      */
     public static void main(String[] args) {
+        // Crear o actualizar las tablas antes de que los DAOs las usen
+        if (FabricaDAO.usaBaseDeDatos() && Configuracion.getBoolean("jp.esquema.migrar", true)) {
+            try {
+                MigradorEsquema.migrar(ConnectionJP.getPool());
+            } catch (Exception e) {
+                System.out.println("No se pudo actualizar el esquema de la base de datos: " + e.getMessage());
+                return;
+            }
+        }
+
         AppController controlador = new AppController();
         controlador.iniciar();
 
+        // Aciertos y fallos de las cachés compartidas que se han llegado a usar
+        for (CacheEntidades<?> cache : Arrays.asList(FabricaDAO.getCacheClientes(),
+                FabricaDAO.getCacheVisitantes())) {
+            if (cache != null && cache.getAciertos() + cache.getFallos() > 0) {
+                System.out.println(cache);
+            }
+        }
+
 
     }
 }
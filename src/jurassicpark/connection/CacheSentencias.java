@@ -0,0 +1,238 @@
+package jurassicpark.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caché LRU de sentencias preparadas de una conexión física, indexada por el
+ * texto SQL.
+ *
+ * Las sentencias se entregan como proxies: al cerrarlas se limpian sus
+ * parámetros y quedan disponibles para el siguiente prepareStatement con el
+ * mismo SQL, en lugar de volver a prepararse en el servidor.
+ */
+class CacheSentencias {
+
+    private final PoolConexiones pool;
+    private final int capacidad;
+
+    // Orden de acceso: la primera entrada es la menos usada recientemente
+    private final LinkedHashMap<String, SentenciaCacheada> sentencias = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Sentencias preparadas fuera de la caché porque la del mismo SQL estaba
+    // ocupada: se cierran al devolverlas, o en liberarTodas si el DAO no lo hizo
+    private final List<SentenciaCacheada> sueltas = new ArrayList<>();
+
+    /**
+     * Constructor de la clase CacheSentencias
+     *
+     * @param pool      Pool al que se notifican aciertos y fallos
+     * @param capacidad Número máximo de sentencias guardadas
+     */
+    CacheSentencias(PoolConexiones pool, int capacidad) {
+        this.pool = pool;
+        this.capacidad = capacidad;
+    }
+
+    /**
+     * Devuelve la sentencia preparada para el SQL indicado, reutilizando la
+     * guardada si está libre
+     *
+     * @param fisica Conexión física sobre la que se prepara
+     * @param proxy  Conexión que ve el DAO (para getConnection())
+     * @param sql    Texto SQL
+     * @return Sentencia preparada lista para usar
+     * @throws SQLException si hay error al preparar la sentencia
+     */
+    PreparedStatement preparar(Connection fisica, Connection proxy, String sql) throws SQLException {
+        SentenciaCacheada sentencia = sentencias.get(sql);
+        if (sentencia != null && !sentencia.enUso) {
+            pool.registrarAciertoCache();
+            return sentencia.prestar(proxy);
+        }
+
+        pool.registrarFalloCache();
+        PreparedStatement fisicaStmt = fisica.prepareStatement(sql);
+
+        // Si la del mismo SQL está ocupada (consultas anidadas) no se guarda
+        if (sentencia != null) {
+            sueltas.removeIf(suelta -> !suelta.enUso);
+            SentenciaCacheada suelta = new SentenciaCacheada(fisicaStmt, false);
+            sueltas.add(suelta);
+            return suelta.prestar(proxy);
+        }
+
+        sentencia = new SentenciaCacheada(fisicaStmt, true);
+        sentencias.put(sql, sentencia);
+        expulsarSobrantes();
+        return sentencia.prestar(proxy);
+    }
+
+    /**
+     * Marca como libres las sentencias que el DAO no cerró antes de devolver
+     * la conexión al pool, y cierra las que se prepararon fuera de la caché
+     */
+    void liberarTodas() {
+        for (SentenciaCacheada sentencia : sentencias.values()) {
+            if (sentencia.enUso) {
+                sentencia.devolver();
+            }
+        }
+        for (SentenciaCacheada suelta : sueltas) {
+            if (suelta.enUso) {
+                suelta.devolver();
+            }
+        }
+        sueltas.clear();
+    }
+
+    /**
+     * Cierra todas las sentencias guardadas
+     */
+    void cerrarTodas() {
+        for (SentenciaCacheada sentencia : sentencias.values()) {
+            sentencia.cerrarFisica();
+        }
+        sentencias.clear();
+        for (SentenciaCacheada suelta : sueltas) {
+            suelta.cerrarFisica();
+        }
+        sueltas.clear();
+    }
+
+    private void expulsarSobrantes() {
+        Iterator<Map.Entry<String, SentenciaCacheada>> it = sentencias.entrySet().iterator();
+        while (sentencias.size() > capacidad && it.hasNext()) {
+            SentenciaCacheada sentencia = it.next().getValue();
+            it.remove();
+            sentencia.guardada = false;
+            if (!sentencia.enUso) {
+                sentencia.cerrarFisica();
+            }
+        }
+    }
+
+    /**
+     * Sentencia física guardada en la caché y su proxy
+     */
+    private static class SentenciaCacheada implements InvocationHandler {
+
+        private final PreparedStatement fisica;
+        private boolean guardada;
+        private boolean enUso;
+        private Connection conexion;
+        private PreparedStatement proxy;
+        private final List<ResultSet> abiertos = new ArrayList<>();
+
+        SentenciaCacheada(PreparedStatement fisica, boolean guardada) {
+            this.fisica = fisica;
+            this.guardada = guardada;
+        }
+
+        PreparedStatement prestar(Connection conexion) {
+            this.enUso = true;
+            this.conexion = conexion;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    this);
+            return proxy;
+        }
+
+        void devolver() {
+            for (ResultSet rs : abiertos) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    /* ignorar */ }
+            }
+            abiertos.clear();
+            try {
+                fisica.clearParameters();
+                fisica.clearBatch();
+            } catch (SQLException e) {
+                guardada = false;
+            }
+            enUso = false;
+            conexion = null;
+            proxy = null;
+
+            // Expulsada mientras estaba en uso o fuera de la caché
+            if (!guardada) {
+                cerrarFisica();
+            }
+        }
+
+        private void registrarAbierto(ResultSet rs) throws SQLException {
+            // Al volver a ejecutar, JDBC cierra los ResultSet anteriores
+            Iterator<ResultSet> it = abiertos.iterator();
+            while (it.hasNext()) {
+                if (it.next().isClosed()) {
+                    it.remove();
+                }
+            }
+            abiertos.add(rs);
+        }
+
+        void cerrarFisica() {
+            try {
+                fisica.close();
+            } catch (SQLException e) {
+                /* ignorar */ }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nombre = method.getName();
+            boolean actual = enUso && this.proxy == proxy;
+
+            switch (nombre) {
+                case "close":
+                    if (actual) {
+                        devolver();
+                    }
+                    return null;
+                case "isClosed":
+                    return !actual;
+                case "getConnection":
+                    if (actual) {
+                        return conexion;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "SentenciaCacheada{" + fisica + "}";
+                default:
+                    break;
+            }
+
+            if (!actual) {
+                throw new SQLException("La sentencia ya está cerrada");
+            }
+
+            try {
+                Object resultado = method.invoke(fisica, args);
+                if (resultado instanceof ResultSet) {
+                    registrarAbierto((ResultSet) resultado);
+                }
+                return resultado;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package jurassicpark.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Envoltorio de una conexión física del pool.
+ *
+ * Se entrega al DAO como un proxy de Connection: todas las llamadas pasan a
+ * la conexión física salvo close(), que devuelve la conexión al pool en lugar
+ * de cerrarla, y prepareStatement(sql), que se sirve desde la caché de
+ * sentencias de la conexión.
+ */
+class ConexionAgrupada implements InvocationHandler {
+
+    private final PoolConexiones pool;
+    private final Connection fisica;
+    private final CacheSentencias cacheSentencias;
+    private long ultimoUso;
+
+    // Estado del préstamo actual
+    private boolean prestada;
+    private Connection proxy;
+
+    /**
+     * Constructor de la clase ConexionAgrupada
+     *
+     * @param pool                  Pool al que pertenece la conexión
+     * @param fisica                Conexión física a la base de datos
+     * @param tamanoCacheSentencias Sentencias preparadas que se guardan (0
+     *                              desactiva la caché)
+     */
+    ConexionAgrupada(PoolConexiones pool, Connection fisica, int tamanoCacheSentencias) {
+        this.pool = pool;
+        this.fisica = fisica;
+        this.cacheSentencias = (tamanoCacheSentencias > 0)
+                ? new CacheSentencias(pool, tamanoCacheSentencias)
+                : null;
+        this.ultimoUso = System.currentTimeMillis();
+    }
+
+    /**
+     * Marca la conexión como prestada y crea el proxy que se entrega al DAO
+     *
+     * @return Proxy de la conexión
+     */
+    Connection prestar() {
+        prestada = true;
+        proxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                this);
+        return proxy;
+    }
+
+    /**
+     * Marca la conexión como libre tras devolverla al pool
+     */
+    void liberar() {
+        if (cacheSentencias != null) {
+            cacheSentencias.liberarTodas();
+        }
+        prestada = false;
+        proxy = null;
+        ultimoUso = System.currentTimeMillis();
+    }
+
+    /**
+     * Comprueba que la conexión física sigue siendo utilizable
+     *
+     * @param timeoutSegundos Tiempo máximo de la comprobación
+     * @return true si la conexión es válida
+     */
+    boolean esValida(int timeoutSegundos) {
+        try {
+            return !fisica.isClosed() && fisica.isValid(timeoutSegundos);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Cierra la conexión física
+     */
+    void cerrarFisica() {
+        if (cacheSentencias != null) {
+            cacheSentencias.cerrarTodas();
+        }
+        try {
+            fisica.close();
+        } catch (SQLException e) {
+            /* ignorar */ }
+    }
+
+    Connection getFisica() {
+        return fisica;
+    }
+
+    long getUltimoUso() {
+        return ultimoUso;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String nombre = method.getName();
+
+        switch (nombre) {
+            case "close":
+                if (prestada && this.proxy == proxy) {
+                    pool.devolver(this);
+                }
+                return null;
+            case "isClosed":
+                return !prestada || this.proxy != proxy;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "ConexionAgrupada{" + fisica + "}";
+            default:
+                break;
+        }
+
+        if (!prestada || this.proxy != proxy) {
+            throw new SQLException("La conexión ya fue devuelta al pool");
+        }
+
+        // Solo la forma simple prepareStatement(sql) pasa por la caché
+        if (cacheSentencias != null && nombre.equals("prepareStatement") && args.length == 1) {
+            return cacheSentencias.preparar(fisica, (Connection) proxy, (String) args[0]);
+        }
+
+        try {
+            return method.invoke(fisica, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,38 +1,117 @@
 package jurassicpark.connection;
 
+import jurassicpark.util.Configuracion;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
- * Clase que maneja la conexión a la base de datos MySQL
+ * Clase que maneja la conexión a la base de datos MySQL.
+ *
+ * Todas las conexiones salen de un único pool compartido por los DAOs. Los
+ * parámetros se pueden cambiar en jurassicpark.properties (ver Configuracion):
+ * jp.db.host, jp.db.puerto, jp.db.nombre, jp.db.usuario, jp.db.password,
+ * jp.pool.minimo, jp.pool.maximo, jp.pool.espera.ms, jp.pool.inactividad.ms,
+ * jp.pool.validacion.seg y jp.pool.cache.sentencias.
  */
 public class ConnectionJP {
 
+    private static volatile PoolConexiones pool;
+    private static volatile DataSourceTransaccional dataSource;
+
     /**
-     * Obtiene una conexión a la base de datos MySQL
-     * 
-     * @return Conexión a la base de datos
-     * @throws SQLException si hay error en la conexión
+     * Obtiene el DataSource compartido por los DAOs. Dentro de una transacción
+     * (ver DataSourceTransaccional) devuelve siempre la conexión de esa
+     * transacción.
+     *
+     * @return DataSource con las conexiones a la base de datos
      */
-    public Connection getConnection() throws SQLException {
+    public static DataSourceTransaccional getDataSource() {
+        DataSourceTransaccional actual = dataSource;
+        if (actual == null) {
+            synchronized (ConnectionJP.class) {
+                actual = dataSource;
+                if (actual == null) {
+                    actual = new DataSourceTransaccional(getPool());
+                    dataSource = actual;
+                }
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Obtiene el pool compartido, creándolo y precalentándolo la primera vez.
+     * Sus conexiones nunca participan en la transacción del hilo actual.
+     *
+     * @return Pool de conexiones a la base de datos
+     */
+    public static PoolConexiones getPool() {
+        PoolConexiones actual = pool;
+        if (actual == null) {
+            synchronized (ConnectionJP.class) {
+                actual = pool;
+                if (actual == null) {
+                    actual = crearPool();
+                    pool = actual;
+                }
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Crea el pool de conexiones con los parámetros configurados
+     *
+     * @return Pool de conexiones
+     */
+    private static PoolConexiones crearPool() {
         try {
             // Cargar explícitamente el driver de MySQL. Da problemas.
             Class.forName("com.mysql.cj.jdbc.Driver");
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
-            throw new SQLException("No se pudo cargar el driver de MySQL: " + e.getMessage());
+            throw new IllegalStateException("No se pudo cargar el driver de MySQL: " + e.getMessage());
         }
 
         // Parámetros de conexión
-        String HOST = "localhost";
-        String PORT = "3310"; //
-        String DATABASE = "jp_db";
-        String USER = "root";
-        String PASSWORD = "root";
+        String HOST = Configuracion.getString("jp.db.host", "localhost");
+        String PORT = Configuracion.getString("jp.db.puerto", "3310");
+        String DATABASE = Configuracion.getString("jp.db.nombre", "jp_db");
+        String USER = Configuracion.getString("jp.db.usuario", "root");
+        String PASSWORD = Configuracion.getString("jp.db.password", "root");
+
+        int CACHE_SENTENCIAS = Configuracion.getInt("jp.pool.cache.sentencias", 50);
+
+        // rewriteBatchedStatements: los lotes de INSERT viajan como un único
+        // INSERT de varias filas
+        String URL = "jdbc:mysql://" + HOST + ":" + PORT + "/" + DATABASE + "?useUnicode=true&characterEncoding=utf-8"
+                + "&rewriteBatchedStatements=true";
+
+        // Con la caché activa las sentencias se preparan en el servidor una sola
+        // vez por conexión y después solo se ejecutan
+        if (CACHE_SENTENCIAS > 0) {
+            URL += "&useServerPrepStmts=true";
+        }
 
-        String URL = "jdbc:mysql://" + HOST + ":" + PORT + "/" + DATABASE + "?useUnicode=true&characterEncoding=utf-8";
+        PoolConexiones nuevo = new PoolConexiones(URL, USER, PASSWORD,
+                Configuracion.getInt("jp.pool.minimo", 2),
+                Configuracion.getInt("jp.pool.maximo", 10),
+                Configuracion.getLong("jp.pool.espera.ms", 5000),
+                Configuracion.getLong("jp.pool.inactividad.ms", 300000),
+                Configuracion.getInt("jp.pool.validacion.seg", 2),
+                CACHE_SENTENCIAS);
+        nuevo.precalentar();
+        return nuevo;
+    }
 
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+    /**
+     * Obtiene una conexión a la base de datos MySQL
+     *
+     * @return Conexión a la base de datos (al cerrarla vuelve al pool)
+     * @throws SQLException si hay error en la conexión
+     */
+    public Connection getConnection() throws SQLException {
+        return getDataSource().getConnection();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+package jurassicpark.connection;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * DataSource que usan los DAOs. Si el hilo actual tiene una transacción en
+ * curso devuelve siempre su conexión; si no, presta una del pool.
+ *
+ * La conexión de la transacción se entrega envuelta para que el close() de
+ * cada DAO no la cierre: solo la cierra quien abrió la transacción.
+ */
+public class DataSourceTransaccional implements DataSource {
+
+    private final DataSource pool;
+    private final ThreadLocal<Connection> vinculada = new ThreadLocal<>();
+
+    /**
+     * Constructor de la clase DataSourceTransaccional
+     * 
+     * @param pool DataSource del que salen las conexiones
+     */
+    DataSourceTransaccional(DataSource pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Abre una conexión del pool sin autocommit y la vincula al hilo actual
+     * 
+     * @return Conexión de la transacción (su dueño debe confirmar y cerrarla)
+     * @throws SQLException si ya hay una transacción vinculada o falla la conexión
+     */
+    public Connection iniciarTransaccion() throws SQLException {
+        if (vinculada.get() != null) {
+            throw new SQLException("Ya hay una transacción en curso en este hilo");
+        }
+        Connection conn = pool.getConnection();
+        try {
+            conn.setAutoCommit(false);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        vinculada.set(conn);
+        return conn;
+    }
+
+    /**
+     * Desvincula la transacción del hilo actual
+     */
+    public void terminarTransaccion() {
+        vinculada.remove();
+    }
+
+    /**
+     * Indica si el hilo actual tiene una transacción en curso
+     * 
+     * @return true si hay transacción vinculada
+     */
+    public boolean hayTransaccion() {
+        return vinculada.get() != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection conn = vinculada.get();
+        if (conn == null) {
+            return pool.getConnection();
+        }
+
+        // close() no hace nada: la conexión sigue siendo de la transacción
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            try {
+                                return method.invoke(conn, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("El pool usa siempre las credenciales configuradas");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return pool.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        pool.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        pool.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return pool.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return pool.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return pool.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || pool.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,244 @@
+package jurassicpark.connection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.sql.DataSource;
+
+/**
+ * Crea y actualiza el esquema de la base de datos al arrancar la aplicación.
+ *
+ * Cada migración tiene un número de versión y se aplica una sola vez: las ya
+ * aplicadas quedan registradas en la tabla esquema_version. Las migraciones
+ * nunca se modifican una vez publicadas; cualquier cambio del esquema se
+ * añade como una migración nueva al final de la lista.
+ *
+ * Mientras se migra se toma un bloqueo con nombre de MySQL, así que si
+ * arrancan varias instancias a la vez solo una aplica los cambios.
+ */
+public class MigradorEsquema {
+
+    private static final String BLOQUEO = "jp_esquema_migraciones";
+    private static final int ESPERA_BLOQUEO_SEG = 60;
+
+    private static final List<Migracion> MIGRACIONES = Arrays.asList(
+            new Migracion(1, "Tablas base",
+                    "CREATE TABLE IF NOT EXISTS cliente ("
+                            + "idcliente INT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+                            + "nombre VARCHAR(100) NOT NULL, "
+                            + "apellido VARCHAR(100) NOT NULL, "
+                            + "email VARCHAR(150), "
+                            + "telefono VARCHAR(30)"
+                            + ") ENGINE=InnoDB",
+                    "CREATE TABLE IF NOT EXISTS visitante ("
+                            + "idvisitante INT NOT NULL PRIMARY KEY, "
+                            + "nombre VARCHAR(100) NOT NULL, "
+                            + "apellido VARCHAR(100) NOT NULL, "
+                            + "edad INT NOT NULL"
+                            + ") ENGINE=InnoDB",
+                    "CREATE TABLE IF NOT EXISTS reserva ("
+                            + "idreserva INT NOT NULL PRIMARY KEY, "
+                            + "cliente_id INT NOT NULL, "
+                            + "fecha_reserva DATETIME NOT NULL, "
+                            + "fecha_visita DATETIME NOT NULL, "
+                            + "estado VARCHAR(20) NOT NULL, "
+                            + "CONSTRAINT fk_reserva_cliente FOREIGN KEY (cliente_id) REFERENCES cliente (idcliente)"
+                            + ") ENGINE=InnoDB",
+                    "CREATE TABLE IF NOT EXISTS entrada ("
+                            + "identrada INT NOT NULL PRIMARY KEY, "
+                            + "reserva_id INT NOT NULL, "
+                            + "visitante_id INT NULL, "
+                            + "precio DECIMAL(10,2) NOT NULL, "
+                            + "fecha_emision DATETIME NOT NULL, "
+                            + "utilizada BOOLEAN NOT NULL DEFAULT FALSE, "
+                            + "CONSTRAINT fk_entrada_reserva FOREIGN KEY (reserva_id) REFERENCES reserva (idreserva), "
+                            + "CONSTRAINT fk_entrada_visitante FOREIGN KEY (visitante_id) REFERENCES visitante (idvisitante)"
+                            + ") ENGINE=InnoDB",
+                    "CREATE TABLE IF NOT EXISTS secuencia ("
+                            + "nombre VARCHAR(50) NOT NULL PRIMARY KEY, "
+                            + "ultimo_id BIGINT NOT NULL"
+                            + ") ENGINE=InnoDB"),
+            new Migracion(2, "Índices de las consultas por reserva, visitante, cliente y fecha",
+                    new Indice("entrada", "idx_entrada_reserva_utilizada", "reserva_id, utilizada"),
+                    new Indice("entrada", "idx_entrada_visitante", "visitante_id"),
+                    new Indice("reserva", "idx_reserva_cliente", "cliente_id"),
+                    new Indice("reserva", "idx_reserva_fecha_estado", "fecha_visita, estado")));
+
+    /**
+     * Aplica las migraciones pendientes
+     *
+     * @param dataSource Origen de las conexiones (fuera de cualquier transacción)
+     * @return Número de migraciones aplicadas ahora
+     * @throws SQLException si una migración falla (las anteriores a ella quedan
+     *                      aplicadas y registradas)
+     */
+    public static int migrar(DataSource dataSource) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            bloquear(conn);
+            try {
+                crearTablaVersiones(conn);
+                Set<Integer> aplicadas = leerAplicadas(conn);
+
+                int nuevas = 0;
+                for (Migracion migracion : MIGRACIONES) {
+                    if (aplicadas.contains(migracion.version)) {
+                        continue;
+                    }
+                    System.out.println("Aplicando migración V" + migracion.version + ": " + migracion.descripcion);
+                    migracion.aplicar(conn);
+                    registrar(conn, migracion);
+                    nuevas++;
+                }
+                return nuevas;
+            } finally {
+                desbloquear(conn);
+            }
+        }
+    }
+
+    private static void bloquear(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, BLOQUEO);
+            stmt.setInt(2, ESPERA_BLOQUEO_SEG);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Otra instancia está migrando el esquema; se esperó "
+                            + ESPERA_BLOQUEO_SEG + " s");
+                }
+            }
+        }
+    }
+
+    private static void desbloquear(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, BLOQUEO);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            // El bloqueo se libera igualmente al cerrar la sesión
+        }
+    }
+
+    private static void crearTablaVersiones(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS esquema_version ("
+                    + "version INT NOT NULL PRIMARY KEY, "
+                    + "descripcion VARCHAR(200) NOT NULL, "
+                    + "fecha_aplicacion DATETIME NOT NULL"
+                    + ") ENGINE=InnoDB");
+        }
+    }
+
+    private static Set<Integer> leerAplicadas(Connection conn) throws SQLException {
+        Set<Integer> aplicadas = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT version FROM esquema_version");
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                aplicadas.add(rs.getInt(1));
+            }
+        }
+        return aplicadas;
+    }
+
+    private static void registrar(Connection conn, Migracion migracion) throws SQLException {
+        String sql = "INSERT INTO esquema_version (version, descripcion, fecha_aplicacion) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, migracion.version);
+            stmt.setString(2, migracion.descripcion);
+            stmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Paso de una migración
+     */
+    private interface Paso {
+        void aplicar(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Sentencia DDL que se ejecuta tal cual. Debe poder repetirse sin error
+     * (CREATE TABLE IF NOT EXISTS...) para no fallar sobre una base de datos
+     * creada a mano antes de existir las migraciones.
+     */
+    private static class Sentencia implements Paso {
+        private final String sql;
+
+        Sentencia(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public void aplicar(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(sql);
+            }
+        }
+    }
+
+    /**
+     * Índice secundario. MySQL no tiene CREATE INDEX IF NOT EXISTS, así que
+     * primero se consulta si ya existe uno con ese nombre.
+     */
+    private static class Indice implements Paso {
+        private final String tabla;
+        private final String nombre;
+        private final String columnas;
+
+        Indice(String tabla, String nombre, String columnas) {
+            this.tabla = tabla;
+            this.nombre = nombre;
+            this.columnas = columnas;
+        }
+
+        @Override
+        public void aplicar(Connection conn) throws SQLException {
+            String sql = "SELECT 1 FROM information_schema.statistics "
+                    + "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, tabla);
+                stmt.setString(2, nombre);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return;
+                    }
+                }
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE INDEX " + nombre + " ON " + tabla + " (" + columnas + ")");
+            }
+        }
+    }
+
+    /**
+     * Migración numerada del esquema
+     */
+    private static class Migracion {
+        private final int version;
+        private final String descripcion;
+        private final List<Paso> pasos;
+
+        Migracion(int version, String descripcion, String... sentencias) {
+            this(version, descripcion, Arrays.stream(sentencias).map(Sentencia::new).toArray(Paso[]::new));
+        }
+
+        Migracion(int version, String descripcion, Paso... pasos) {
+            this.version = version;
+            this.descripcion = descripcion;
+            this.pasos = Arrays.asList(pasos);
+        }
+
+        void aplicar(Connection conn) throws SQLException {
+            for (Paso paso : pasos) {
+                paso.aplicar(conn);
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package jurassicpark.connection;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Pool acotado de conexiones a MySQL expuesto como DataSource.
+ *
+ * Mantiene entre un mínimo y un máximo de conexiones físicas abiertas, valida
+ * cada conexión antes de prestarla, cierra las que llevan demasiado tiempo
+ * inactivas y limita la espera cuando todas están ocupadas. Cada conexión
+ * física guarda además sus sentencias preparadas (ver CacheSentencias).
+ */
+public class PoolConexiones implements DataSource {
+
+    private final String url;
+    private final String usuario;
+    private final String password;
+    private final int minimo;
+    private final int maximo;
+    private final long tiempoEsperaMs;
+    private final long tiempoInactividadMs;
+    private final int timeoutValidacionSeg;
+    private final int tamanoCacheSentencias;
+
+    // Conexiones libres (la primera es la usada más recientemente)
+    private final Deque<ConexionAgrupada> libres = new ArrayDeque<>();
+
+    // Permisos para prestar conexiones: nunca hay más de "maximo" prestadas
+    private final Semaphore permisos;
+
+    // Conexiones físicas abiertas (libres + prestadas)
+    private final AtomicInteger abiertas = new AtomicInteger();
+
+    private final ScheduledExecutorService mantenimiento;
+
+    // Estadísticas de la caché de sentencias de todas las conexiones
+    private final AtomicLong aciertosCache = new AtomicLong();
+    private final AtomicLong fallosCache = new AtomicLong();
+
+    private volatile boolean cerrado;
+
+    /**
+     * Constructor de la clase PoolConexiones
+     *
+     * @param url                   URL JDBC de la base de datos
+     * @param usuario               Usuario de la base de datos
+     * @param password              Contraseña del usuario
+     * @param minimo                Conexiones que se mantienen abiertas siempre
+     * @param maximo                Conexiones máximas abiertas a la vez
+     * @param tiempoEsperaMs        Espera máxima para obtener una conexión
+     * @param tiempoInactividadMs   Tiempo tras el que se cierra una conexión
+     *                              libre que sobra por encima del mínimo
+     * @param timeoutValidacionSeg  Tiempo máximo para validar una conexión
+     * @param tamanoCacheSentencias Sentencias preparadas guardadas por
+     *                              conexión (0 desactiva la caché)
+     */
+    public PoolConexiones(String url, String usuario, String password, int minimo, int maximo,
+            long tiempoEsperaMs, long tiempoInactividadMs, int timeoutValidacionSeg,
+            int tamanoCacheSentencias) {
+        if (minimo < 0 || maximo <= 0 || minimo > maximo) {
+            throw new IllegalArgumentException("Tamaño de pool inválido: mínimo=" + minimo + ", máximo=" + maximo);
+        }
+        this.url = url;
+        this.usuario = usuario;
+        this.password = password;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.tiempoEsperaMs = tiempoEsperaMs;
+        this.tiempoInactividadMs = tiempoInactividadMs;
+        this.timeoutValidacionSeg = timeoutValidacionSeg;
+        this.tamanoCacheSentencias = tamanoCacheSentencias;
+        this.permisos = new Semaphore(maximo, true);
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pool-conexiones-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = Math.max(1000, tiempoInactividadMs / 2);
+        mantenimiento.scheduleWithFixedDelay(this::mantener, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Abre las conexiones mínimas para que las primeras peticiones no paguen
+     * el coste de conexión
+     */
+    public void precalentar() {
+        try {
+            completarMinimo();
+        } catch (SQLException e) {
+            System.out.println("No se pudo precalentar el pool de conexiones: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+
+        try {
+            if (!permisos.tryAcquire(tiempoEsperaMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("No hay conexiones libres tras esperar " + tiempoEsperaMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión", e);
+        }
+
+        try {
+            // Reutilizar una conexión libre que siga siendo válida
+            ConexionAgrupada conexion;
+            while ((conexion = sacarLibre()) != null) {
+                if (conexion.esValida(timeoutValidacionSeg)) {
+                    return conexion.prestar();
+                }
+                descartar(conexion);
+            }
+
+            // No hay ninguna libre: abrimos una nueva
+            return abrir().prestar();
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("El pool usa siempre las credenciales configuradas");
+    }
+
+    /**
+     * Devuelve al pool una conexión prestada
+     *
+     * @param conexion Conexión que se devuelve
+     */
+    void devolver(ConexionAgrupada conexion) {
+        try {
+            Connection fisica = conexion.getFisica();
+            if (cerrado || fisica.isClosed()) {
+                conexion.liberar();
+                descartar(conexion);
+                return;
+            }
+
+            // Dejar la conexión como recién abierta para el siguiente préstamo
+            if (!fisica.getAutoCommit()) {
+                fisica.rollback();
+                fisica.setAutoCommit(true);
+            }
+
+            conexion.liberar();
+            synchronized (libres) {
+                libres.addFirst(conexion);
+            }
+        } catch (SQLException e) {
+            conexion.liberar();
+            descartar(conexion);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones libres y detiene el mantenimiento
+     */
+    public void cerrar() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        List<ConexionAgrupada> aCerrar;
+        synchronized (libres) {
+            aCerrar = new ArrayList<>(libres);
+            libres.clear();
+        }
+        for (ConexionAgrupada conexion : aCerrar) {
+            descartar(conexion);
+        }
+    }
+
+    /**
+     * Número de conexiones físicas abiertas (libres y prestadas)
+     *
+     * @return Conexiones abiertas
+     */
+    public int getConexionesAbiertas() {
+        return abiertas.get();
+    }
+
+    /**
+     * Número de conexiones libres esperando a ser prestadas
+     *
+     * @return Conexiones libres
+     */
+    public int getConexionesLibres() {
+        synchronized (libres) {
+            return libres.size();
+        }
+    }
+
+    /**
+     * Veces que un prepareStatement se sirvió desde la caché de sentencias
+     *
+     * @return Aciertos de la caché
+     */
+    public long getAciertosCacheSentencias() {
+        return aciertosCache.get();
+    }
+
+    /**
+     * Veces que un prepareStatement tuvo que preparar la sentencia de nuevo
+     *
+     * @return Fallos de la caché
+     */
+    public long getFallosCacheSentencias() {
+        return fallosCache.get();
+    }
+
+    void registrarAciertoCache() {
+        aciertosCache.incrementAndGet();
+    }
+
+    void registrarFalloCache() {
+        fallosCache.incrementAndGet();
+    }
+
+    private ConexionAgrupada sacarLibre() {
+        synchronized (libres) {
+            return libres.pollFirst();
+        }
+    }
+
+    private ConexionAgrupada abrir() throws SQLException {
+        Connection fisica = DriverManager.getConnection(url, usuario, password);
+        abiertas.incrementAndGet();
+        return new ConexionAgrupada(this, fisica, tamanoCacheSentencias);
+    }
+
+    private void descartar(ConexionAgrupada conexion) {
+        conexion.cerrarFisica();
+        abiertas.decrementAndGet();
+    }
+
+    /**
+     * Tarea periódica: cierra las conexiones libres inactivas que sobran por
+     * encima del mínimo y repone las que falten hasta llegar a él
+     */
+    private void mantener() {
+        long limite = System.currentTimeMillis() - tiempoInactividadMs;
+        List<ConexionAgrupada> caducadas = new ArrayList<>();
+
+        synchronized (libres) {
+            // Las más antiguas están al final de la cola
+            Iterator<ConexionAgrupada> it = libres.descendingIterator();
+            while (it.hasNext() && abiertas.get() - caducadas.size() > minimo) {
+                ConexionAgrupada conexion = it.next();
+                if (conexion.getUltimoUso() > limite) {
+                    break;
+                }
+                it.remove();
+                caducadas.add(conexion);
+            }
+        }
+
+        for (ConexionAgrupada conexion : caducadas) {
+            descartar(conexion);
+        }
+
+        try {
+            completarMinimo();
+        } catch (SQLException e) {
+            // Se reintentará en la próxima ejecución
+        }
+    }
+
+    private void completarMinimo() throws SQLException {
+        while (!cerrado && abiertas.get() < minimo) {
+            ConexionAgrupada conexion = abrir();
+            synchronized (libres) {
+                libres.addLast(conexion);
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("No es un envoltorio de " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+}
@@ -1,15 +1,22 @@
 package jurassicpark.controller;
 
+import jurassicpark.dao.Pagina;
+import jurassicpark.dao.PlanCarga;
 import jurassicpark.modelo.gestion.*;
 import jurassicpark.servicio.*;
 import jurassicpark.vista.ConsolaVista;
+import jurassicpark.util.Configuracion;
 import jurassicpark.util.MenuManager;
 import jurassicpark.util.InputValidator;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 
 /**
@@ -36,9 +43,15 @@ public class AppController {
     private List<Entrada> entradasActuales;
     private List<Visitante> visitantesActuales;
 
+    // Validador de los tornos: se crea la primera vez que se usa
+    private ValidadorAcceso validadorAcceso;
+
     // Scanner para entrada de datos
     private final Scanner scanner;
 
+    // Elementos que se muestran de cada vez en los listados
+    private final int tamanoPagina = Configuracion.getInt("jp.listado.pagina", 20);
+
     /**
      * Constructor de la clase AppController
      */
@@ -81,25 +94,38 @@ public class AppController {
             menuManager.mostrarMenuPrincipal();
             opcion = InputValidator.validarEnteroPositivo(scanner.nextLine(), -1);
 
-            switch (opcion) {
-                case 1 ->
-                    this.crearCliente();
-                case 2 ->
-                    this.crearReserva();
-                case 3 ->
-                    this.generarEntradas();
-                case 4 ->
-                    this.crearVisitantes();
-                case 5 ->
-                    this.asignarVisitantesAEntradas();
-                case 6 ->
-                    this.marcarEntradasComoUtilizadas();
-                case 0 ->
-                    this.vista.mostrarMensaje("¡Gracias por usar el sistema!");
-                default ->
-                    this.vista.mostrarError("Opción no válida");
+            // Cada opción es una operación: lo que cargue se carga una sola vez
+            UnidadDeTrabajo operacion = UnidadDeTrabajo.iniciarSinTransaccion();
+            try {
+                switch (opcion) {
+                    case 1 ->
+                        this.crearCliente();
+                    case 2 ->
+                        this.crearReserva();
+                    case 3 ->
+                        this.generarEntradas();
+                    case 4 ->
+                        this.crearVisitantes();
+                    case 5 ->
+                        this.asignarVisitantesAEntradas();
+                    case 6 ->
+                        this.marcarEntradasComoUtilizadas();
+                    case 7 ->
+                        this.controlarAcceso();
+                    case 0 ->
+                        this.vista.mostrarMensaje("¡Gracias por usar el sistema!");
+                    default ->
+                        this.vista.mostrarError("Opción no válida");
+                }
+            } finally {
+                operacion.close();
             }
         } while (opcion != 0);
+
+        // Escribe en la BD las entradas validadas que queden pendientes
+        if (validadorAcceso != null) {
+            validadorAcceso.close();
+        }
     }
 
     // Implementación de las opciones del menú
@@ -132,17 +158,12 @@ public class AppController {
         menuManager.mostrarSubmenu("CREAR RESERVA");
 
         // Mostrar lista de clientes disponibles
-        List<Cliente> clientes = clienteServicio.obtenerTodosLosClientes();
-        if (clientes.isEmpty()) {
+        vista.mostrarMensaje("\nClientes disponibles:");
+        if (!mostrarClientes()) {
             vista.mostrarError("No hay clientes registrados. Debe crear uno primero.");
             return;
         }
 
-        vista.mostrarMensaje("\nClientes disponibles:");
-        for (Cliente cliente : clientes) {
-            vista.mostrarMensaje(cliente.getId() + ". " + cliente.getNombreCompleto());
-        }
-
         // Seleccionar cliente
         vista.mostrarMensaje("\nSeleccione el ID del cliente: ");
         String idStr = scanner.nextLine();
@@ -170,6 +191,10 @@ public class AppController {
 
         Date fechaVisita = InputValidator.convertirAFecha(fechaStr);
         reservaActual = reservaServicio.crearReserva(clienteSeleccionado, fechaVisita);
+        if (reservaActual == null) {
+            vista.mostrarError("No se pudo crear la reserva.");
+            return;
+        }
         clienteActual = clienteSeleccionado;
         vista.mostrarMensaje("Reserva creada: #" + reservaActual.getId()
                 + " para cliente: " + clienteSeleccionado.getNombreCompleto()
@@ -183,18 +208,16 @@ public class AppController {
         menuManager.mostrarSubmenu("GENERAR ENTRADAS");
 
         // Mostrar lista de reservas disponibles
-        List<Reserva> reservas = reservaServicio.obtenerTodasLasReservas();
-        if (reservas.isEmpty()) {
+        vista.mostrarMensaje("\nReservas disponibles:");
+        boolean hayReservas = mostrarPaginado(
+                despuesDeId -> reservaServicio.obtenerPaginaResumenesReservas(despuesDeId, tamanoPagina),
+                reserva -> reserva.getId() + ". Cliente: " + reserva.getNombreCliente()
+                        + ", Fecha: " + reserva.getFechaVisita());
+        if (!hayReservas) {
             vista.mostrarError("No hay reservas registradas. Debe crear una primero.");
             return;
         }
 
-        vista.mostrarMensaje("\nReservas disponibles:");
-        for (Reserva reserva : reservas) {
-            vista.mostrarMensaje(reserva.getId() + ". Cliente: " + reserva.getCliente().getNombreCompleto()
-                    + ", Fecha: " + reserva.getFechaVisita());
-        }
-
         // Seleccionar reserva
         vista.mostrarMensaje("\nSeleccione el ID de la reserva: ");
         String idStr = scanner.nextLine();
@@ -204,7 +227,7 @@ public class AppController {
         }
 
         int idReserva = Integer.parseInt(idStr);
-        reservaActual = reservaServicio.buscarReservaPorId(idReserva);
+        reservaActual = reservaServicio.buscarReservaPorId(idReserva, PlanCarga.SOLO_CABECERA);
         if (reservaActual == null) {
             vista.mostrarError("Reserva no encontrada.");
             return;
@@ -226,11 +249,11 @@ public class AppController {
             return;
         }
 
-        entradasActuales = entradaServicio.generarEntradas(reservaActual, cantidad, precio);
-
-        // Guardar la reserva con las entradas en la base de datos
-        try {
+        // Generar las entradas y guardar la reserva en una sola transacción
+        try (UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar()) {
+            entradasActuales = entradaServicio.generarEntradas(reservaActual, cantidad, precio);
             reservaServicio.actualizarReserva(reservaActual);
+            unidad.confirmar();
             vista.mostrarMensaje("Se generaron " + cantidad + " entradas para la reserva #"
                     + reservaActual.getId() + " con precio unitario $" + precio);
         } catch (Exception e) {
@@ -244,26 +267,8 @@ public class AppController {
     private void crearVisitantes() {
         menuManager.mostrarSubmenu("CREAR VISITANTES");
 
-        // Obtener todas las reservas
-        List<Reserva> todasLasReservas = reservaServicio.obtenerTodasLasReservas();
-
-        List<Reserva> reservasDisponibles = new ArrayList<>();
-
-        // Filtrar reservas donde NINGUNA entrada tiene visitante asignado
-        for (Reserva reserva : todasLasReservas) {
-            if (!reserva.getEntradas().isEmpty()) {
-                boolean todasEntradasSinVisitantes = true;
-                for (Entrada entrada : reserva.getEntradas()) {
-                    if (entrada.tieneVisitanteAsignado()) {
-                        todasEntradasSinVisitantes = false;
-                        break;
-                    }
-                }
-                if (todasEntradasSinVisitantes) {
-                    reservasDisponibles.add(reserva);
-                }
-            }
-        }
+        // Reservas donde NINGUNA entrada tiene visitante asignado
+        List<ReservaResumen> reservasDisponibles = reservaServicio.obtenerResumenesSinVisitantes();
 
         if (reservasDisponibles.isEmpty()) {
             vista.mostrarError("No hay reservas con entradas disponibles para asignar visitantes.");
@@ -272,9 +277,9 @@ public class AppController {
 
         // Mostrar reservas disponibles
         vista.mostrarMensaje("\nReservas con entradas sin visitantes:");
-        for (Reserva reserva : reservasDisponibles) {
-            vista.mostrarMensaje(reserva.getId() + ". Cliente: " + reserva.getCliente().getNombreCompleto()
-                    + ", Entradas: " + reserva.getEntradas().size());
+        for (ReservaResumen reserva : reservasDisponibles) {
+            vista.mostrarMensaje(reserva.getId() + ". Cliente: " + reserva.getNombreCliente()
+                    + ", Entradas: " + reserva.getTotalEntradas());
         }
 
         // Seleccionar reserva
@@ -285,7 +290,7 @@ public class AppController {
             return;
         }
         int idReserva = Integer.parseInt(idStr);
-        Reserva reservaSeleccionada = reservaServicio.buscarReservaPorId(idReserva);
+        Reserva reservaSeleccionada = reservaServicio.buscarReservaPorId(idReserva, PlanCarga.CON_ENTRADAS);
 
         if (reservaSeleccionada == null || reservaSeleccionada.getEntradas().isEmpty()) {
             vista.mostrarError("Reserva no válida o sin entradas.");
@@ -295,7 +300,7 @@ public class AppController {
         // Verificamos que la reserva seleccionada está en la lista de reservas
         // disponibles
         boolean reservaEsValida = false;
-        for (Reserva r : reservasDisponibles) {
+        for (ReservaResumen r : reservasDisponibles) {
             if (r.getId() == reservaSeleccionada.getId()) {
                 reservaEsValida = true;
                 break;
@@ -307,15 +312,18 @@ public class AppController {
             return;
         }
 
+        // Las páginas de clientes se leen una sola vez aunque se muestren para
+        // cada visitante
+        Map<Integer, Pagina<Cliente>> paginasClientes = new HashMap<>();
+        IntFunction<Pagina<Cliente>> paginaClientes = despuesDeId -> paginasClientes.computeIfAbsent(
+                despuesDeId, id -> clienteServicio.obtenerPaginaClientes(id, tamanoPagina));
+
         // Inicializar lista de visitantes y obtener la cantidad de entradas
         List<Visitante> visitantes = new ArrayList<>();
         int cantidadEntradas = reservaSeleccionada.getEntradas().size();
 
         vista.mostrarMensaje("\nDebe crear " + cantidadEntradas + " visitantes para esta reserva.");
 
-        // Obtener la lista de clientes disponibles una sola vez
-        List<Cliente> clientes = clienteServicio.obtenerTodosLosClientes();
-
         // Crear cada visitante uno por uno
         for (int i = 0; i < cantidadEntradas; i++) {
             vista.mostrarMensaje("\n--- Visitante " + (i + 1) + " de " + cantidadEntradas + " ---");
@@ -328,9 +336,7 @@ public class AppController {
             if (reutilizarDatos) {
                 // Mostrar lista de clientes disponibles
                 vista.mostrarMensaje("\nClientes disponibles:");
-                for (Cliente cliente : clientes) {
-                    vista.mostrarMensaje(cliente.getId() + ". " + cliente.getNombreCompleto());
-                }
+                mostrarClientes(paginaClientes);
 
                 // Seleccionar cliente
                 vista.mostrarMensaje("\nSeleccione el ID del cliente a reutilizar: ");
@@ -360,11 +366,15 @@ public class AppController {
                     return;
                 }
 
-                // Crear visitante con los datos del cliente
-                Visitante visitante = visitanteServicio.crearVisitante(
+                // Crear visitante con los datos del cliente (se guardan todos al final)
+                Visitante visitante = visitanteServicio.prepararVisitante(
                         clienteSeleccionado.getNombre(),
                         clienteSeleccionado.getApellido(),
                         edad);
+                if (visitante == null) {
+                    vista.mostrarError("No se pudo crear el visitante.");
+                    return;
+                }
                 visitantes.add(visitante);
                 vista.mostrarMensaje(
                         "Visitante " + (i + 1) + " creado: " + visitante.getNombreCompleto() + " (" + edad + " años)");
@@ -388,25 +398,37 @@ public class AppController {
                     return;
                 }
 
-                Visitante visitante = visitanteServicio.crearVisitante(nombre, apellido, edad);
+                Visitante visitante = visitanteServicio.prepararVisitante(nombre, apellido, edad);
+                if (visitante == null) {
+                    vista.mostrarError("No se pudo crear el visitante.");
+                    return;
+                }
                 visitantes.add(visitante);
                 vista.mostrarMensaje(
                         "Visitante " + (i + 1) + " creado: " + visitante.getNombreCompleto() + " (" + edad + " años)");
             }
         }
 
-        // Asignar visitantes a las entradas
-        entradaServicio.asignarVisitantes(reservaSeleccionada,
-                reservaSeleccionada.getEntradas(),
-                visitantes);
+        // Guardar visitantes, asignarlos y actualizar la reserva en una sola
+        // transacción. El visitante i es el de la entrada i: si no se guardan
+        // todos no se asigna ninguno
+        try (UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar()) {
+            List<Visitante> guardados = visitanteServicio.guardarVisitantes(visitantes);
+            if (guardados.size() != visitantes.size()
+                    || !entradaServicio.asignarVisitantes(reservaSeleccionada,
+                            reservaSeleccionada.getEntradas(), visitantes)) {
+                vista.mostrarError("No se pudieron guardar todos los visitantes. No se ha asignado ninguno.");
+                return;
+            }
 
-        // Actualizar la reserva en la base de datos
-        try {
+            // Actualizar la reserva en la base de datos
             reservaServicio.actualizarReserva(reservaSeleccionada);
+            unidad.confirmar();
             vista.mostrarMensaje("\nSe han creado y asignado " + visitantes.size() + " visitantes a la reserva #"
                     + reservaSeleccionada.getId());
         } catch (Exception e) {
             vista.mostrarError("Error al guardar la asignación de visitantes: " + e.getMessage());
+            return;
         }
 
         // Guardar los visitantes creados
@@ -427,24 +449,8 @@ public class AppController {
         }
 
         // Mostrar lista de reservas con entradas sin visitantes asignados
-        List<Reserva> reservas = reservaServicio.obtenerTodasLasReservas();
-        List<Reserva> reservasConEntradasSinVisitantes = new ArrayList<>();
-
-        // Filtrar reservas donde NINGUNA entrada tiene visitante asignado
-        for (Reserva reserva : reservas) {
-            if (!reserva.getEntradas().isEmpty()) {
-                boolean todasEntradasSinVisitantes = true;
-                for (Entrada entrada : reserva.getEntradas()) {
-                    if (entrada.tieneVisitanteAsignado()) {
-                        todasEntradasSinVisitantes = false;
-                        break;
-                    }
-                }
-                if (todasEntradasSinVisitantes) {
-                    reservasConEntradasSinVisitantes.add(reserva);
-                }
-            }
-        }
+        // Reservas donde NINGUNA entrada tiene visitante asignado
+        List<ReservaResumen> reservasConEntradasSinVisitantes = reservaServicio.obtenerResumenesSinVisitantes();
 
         if (reservasConEntradasSinVisitantes.isEmpty()) {
             vista.mostrarError("No hay reservas con entradas disponibles para asignar visitantes.");
@@ -453,9 +459,9 @@ public class AppController {
 
         // Mostrar las reservas disponibles
         vista.mostrarMensaje("\nReservas con entradas sin visitantes asignados:");
-        for (Reserva reserva : reservasConEntradasSinVisitantes) {
-            vista.mostrarMensaje(reserva.getId() + ". Cliente: " + reserva.getCliente().getNombreCompleto()
-                    + ", Entradas: " + reserva.getEntradas().size());
+        for (ReservaResumen reserva : reservasConEntradasSinVisitantes) {
+            vista.mostrarMensaje(reserva.getId() + ". Cliente: " + reserva.getNombreCliente()
+                    + ", Entradas: " + reserva.getTotalEntradas());
         }
 
         // Seleccionar reserva
@@ -467,7 +473,7 @@ public class AppController {
         }
 
         int idReserva = Integer.parseInt(idStr);
-        Reserva reservaSeleccionada = reservaServicio.buscarReservaPorId(idReserva);
+        Reserva reservaSeleccionada = reservaServicio.buscarReservaPorId(idReserva, PlanCarga.SOLO_CABECERA);
         if (reservaSeleccionada == null) {
             vista.mostrarError("Reserva no encontrada.");
             return;
@@ -476,7 +482,7 @@ public class AppController {
         // Verificamos que la reserva seleccionada está en la lista de reservas
         // disponibles
         boolean reservaEsValida = false;
-        for (Reserva r : reservasConEntradasSinVisitantes) {
+        for (ReservaResumen r : reservasConEntradasSinVisitantes) {
             if (r.getId() == reservaSeleccionada.getId()) {
                 reservaEsValida = true;
                 break;
@@ -489,12 +495,7 @@ public class AppController {
         }
 
         // Obtener las entradas sin visitantes asignados
-        List<Entrada> entradasSinVisitantes = new ArrayList<>();
-        for (Entrada entrada : reservaSeleccionada.getEntradas()) {
-            if (!entrada.tieneVisitanteAsignado()) {
-                entradasSinVisitantes.add(entrada);
-            }
-        }
+        List<Entrada> entradasSinVisitantes = entradaServicio.obtenerEntradasSinVisitante(reservaSeleccionada);
 
         if (entradasSinVisitantes.isEmpty()) {
             vista.mostrarError("Esta reserva no tiene entradas sin visitantes asignados.");
@@ -571,26 +572,18 @@ public class AppController {
     private void marcarEntradasComoUtilizadas() {
         menuManager.mostrarSubmenu("MARCAR ENTRADAS COMO UTILIZADAS");
 
-        // Mostrar lista de reservas con entradas
-        List<Reserva> reservas = reservaServicio.obtenerTodasLasReservas();
-        List<Reserva> reservasConEntradas = new ArrayList<>();
-
-        // Filtrar reservas con entradas
-        for (Reserva reserva : reservas) {
-            if (!reserva.getEntradas().isEmpty()) {
-                reservasConEntradas.add(reserva);
-            }
-        }
+        // Mostrar lista de reservas con alguna entrada sin utilizar
+        List<ReservaResumen> reservasConEntradas = reservaServicio.obtenerResumenesConEntradasSinUtilizar();
 
         if (reservasConEntradas.isEmpty()) {
             vista.mostrarError("No hay reservas con entradas para marcar como utilizadas.");
             return;
         }
 
-        vista.mostrarMensaje("\nReservas con entradas:");
-        for (Reserva reserva : reservasConEntradas) {
-            vista.mostrarMensaje(reserva.getId() + ". Cliente: " + reserva.getCliente().getNombreCompleto()
-                    + ", Entradas: " + reserva.getEntradas().size());
+        vista.mostrarMensaje("\nReservas con entradas sin utilizar:");
+        for (ReservaResumen reserva : reservasConEntradas) {
+            vista.mostrarMensaje(reserva.getId() + ". Cliente: " + reserva.getNombreCliente()
+                    + ", Entradas sin utilizar: " + reserva.getEntradasSinUtilizar());
         }
 
         // Seleccionar reserva
@@ -602,16 +595,102 @@ public class AppController {
         }
 
         int idReserva = Integer.parseInt(idStr);
-        reservaActual = reservaServicio.buscarReservaPorId(idReserva);
+        reservaActual = reservaServicio.buscarReservaPorId(idReserva, PlanCarga.CON_ENTRADAS);
         if (reservaActual == null || reservaActual.getEntradas().isEmpty()) {
             vista.mostrarError("Reserva no encontrada o sin entradas.");
             return;
         }
 
-        // Marcar entradas como utilizadas
-        for (Entrada entrada : reservaActual.getEntradas()) {
-            entradaServicio.marcarEntradaComoUtilizada(entrada);
+        // Marcar de una vez las entradas que aún no están utilizadas
+        int marcadas = entradaServicio.marcarEntradasDeReservaComoUtilizadas(reservaActual);
+        vista.mostrarMensaje(marcadas + " entradas marcadas como utilizadas");
+    }
+
+    /**
+     * Opción 7: Control de acceso en los tornos con las entradas de hoy
+     */
+    private void controlarAcceso() {
+        menuManager.mostrarSubmenu("CONTROL DE ACCESO");
+
+        if (validadorAcceso == null) {
+            validadorAcceso = new ValidadorAcceso();
+        }
+        // Se carga cada vez para recoger las entradas vendidas desde la anterior
+        int validas = validadorAcceso.cargar(new Date());
+        if (validas < 0) {
+            vista.mostrarError("No se pudieron cargar las entradas de hoy.");
+            return;
+        }
+        vista.mostrarMensaje(validas + " entradas válidas para hoy");
+
+        while (true) {
+            vista.mostrarMensaje("\nID de la entrada (vacío para terminar): ");
+            String idStr = scanner.nextLine();
+            if (idStr.isBlank()) {
+                return;
+            }
+            if (!InputValidator.esNumero(idStr)) {
+                vista.mostrarError("ID inválido. Debe ser un número.");
+                continue;
+            }
+
+            switch (validadorAcceso.validar(Integer.parseInt(idStr))) {
+                case ACEPTADA ->
+                    vista.mostrarMensaje("Entrada aceptada. ¡Bienvenido!");
+                case YA_UTILIZADA ->
+                    vista.mostrarError("La entrada ya se ha utilizado.");
+                case NO_VALIDA ->
+                    vista.mostrarError("La entrada no es válida para hoy.");
+            }
+        }
+    }
+
+    /**
+     * Muestra los clientes página a página
+     *
+     * @return true si hay al menos un cliente
+     */
+    private boolean mostrarClientes() {
+        return mostrarClientes(despuesDeId -> clienteServicio.obtenerPaginaClientes(despuesDeId, tamanoPagina));
+    }
+
+    /**
+     * Muestra los clientes página a página
+     *
+     * @param pagina Obtiene la página que sigue al ID indicado
+     * @return true si hay al menos un cliente
+     */
+    private boolean mostrarClientes(IntFunction<Pagina<Cliente>> pagina) {
+        return mostrarPaginado(pagina, cliente -> cliente.getId() + ". " + cliente.getNombreCompleto());
+    }
+
+    /**
+     * Muestra un listado página a página, preguntando antes de cargar la
+     * siguiente. Solo se lee de la BD la página que se muestra.
+     *
+     * @param pagina  Obtiene la página que sigue al ID indicado
+     * @param formato Texto que se muestra para cada elemento
+     * @return true si el listado tiene al menos un elemento
+     */
+    private <T> boolean mostrarPaginado(IntFunction<Pagina<T>> pagina, Function<T, String> formato) {
+        Pagina<T> actual = pagina.apply(0);
+        if (actual.estaVacia()) {
+            return false;
+        }
+
+        while (true) {
+            for (T elemento : actual.getElementos()) {
+                vista.mostrarMensaje(formato.apply(elemento));
+            }
+            if (!actual.hayMas()) {
+                return true;
+            }
+
+            vista.mostrarMensaje("¿Mostrar más? (S/N): ");
+            if (!scanner.nextLine().toUpperCase().equals("S")) {
+                return true;
+            }
+            actual = pagina.apply(actual.getUltimoId());
         }
-        vista.mostrarMensaje("Entradas marcadas como utilizadas");
     }
 }
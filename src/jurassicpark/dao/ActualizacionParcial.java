@@ -0,0 +1,116 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.EntidadRastreada;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+
+/**
+ * UPDATE de una sola fila que escribe únicamente las columnas que han
+ * cambiado en la entidad (ver EntidadRastreada).
+ *
+ * Las columnas se añaden con si(), indicando si han cambiado; si al final no
+ * ha cambiado ninguna no se envía nada a la BD. guardar() decide entre el
+ * INSERT completo y esta actualización para el guardado de una entidad.
+ */
+final class ActualizacionParcial {
+
+    private final String tabla;
+    private final String columnaId;
+    private final List<String> columnas = new ArrayList<>();
+    private final List<Object> valores = new ArrayList<>();
+
+    /**
+     * Guarda una entidad: si es nueva con un único viaje a la BD aunque la
+     * fila ya exista (el INSERT ... ON DUPLICATE KEY UPDATE del DAO) y si se
+     * leyó o guardó antes solo con las columnas que han cambiado, o nada.
+     * Después la da por guardada y la deja en el MapaIdentidad.
+     *
+     * @param <T>        Tipo de entidad
+     * @param dataSource Origen de las conexiones
+     * @param tipo       Clase de la entidad
+     * @param entidad    Entidad a guardar
+     * @param id         Clave primaria de la fila
+     * @param sqlNueva   Sentencia de guardado completo
+     * @param asignador  Asignación de los parámetros de sqlNueva
+     * @param cambios    Actualización con las columnas cambiadas
+     * @return La entidad guardada
+     * @throws SQLException si hay error al guardar
+     */
+    static <T extends EntidadRastreada> T guardar(DataSource dataSource, Class<T> tipo, T entidad, int id,
+            String sqlNueva, EjecutorLotes.AsignadorParametros<T> asignador,
+            Supplier<ActualizacionParcial> cambios) throws SQLException {
+        if (entidad.esNueva()) {
+            try (Connection conn = dataSource.getConnection();
+                    PreparedStatement stmt = conn.prepareStatement(sqlNueva)) {
+                asignador.asignar(stmt, entidad);
+                stmt.executeUpdate();
+            }
+        } else {
+            cambios.get().ejecutar(dataSource, id);
+        }
+
+        SincronizacionTransaccion.marcarGuardada(entidad);
+        MapaIdentidad.actualizar(tipo, id, entidad);
+        return entidad;
+    }
+
+    /**
+     * @param tabla     Tabla a actualizar
+     * @param columnaId Columna de la clave primaria
+     */
+    ActualizacionParcial(String tabla, String columnaId) {
+        this.tabla = tabla;
+        this.columnaId = columnaId;
+    }
+
+    /**
+     * Añade la columna al UPDATE si ha cambiado
+     *
+     * @param cambiada Si el campo de la entidad ha cambiado
+     * @param columna  Columna de la tabla
+     * @param valor    Nuevo valor (null para NULL)
+     * @return Esta misma actualización
+     */
+    ActualizacionParcial si(boolean cambiada, String columna, Object valor) {
+        if (cambiada) {
+            columnas.add(columna);
+            valores.add(valor);
+        }
+        return this;
+    }
+
+    /**
+     * Ejecuta el UPDATE de la fila
+     *
+     * @param dataSource Origen de las conexiones
+     * @param id         Clave primaria de la fila
+     * @return Filas afectadas (0 si no había nada que escribir)
+     * @throws SQLException si hay error al actualizar
+     */
+    int ejecutar(DataSource dataSource, int id) throws SQLException {
+        if (columnas.isEmpty()) {
+            return 0;
+        }
+
+        StringBuilder sql = new StringBuilder("UPDATE ").append(tabla).append(" SET ");
+        for (int i = 0; i < columnas.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(columnas.get(i)).append(" = ?");
+        }
+        sql.append(" WHERE ").append(columnaId).append(" = ?");
+
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < valores.size(); i++) {
+                stmt.setObject(i + 1, valores.get(i));
+            }
+            stmt.setInt(valores.size() + 1, id);
+            return stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,656 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Cliente;
+import jurassicpark.modelo.gestion.Entrada;
+import jurassicpark.modelo.gestion.Reserva;
+import jurassicpark.modelo.gestion.Visitante;
+import jurassicpark.util.ListaPerezosa;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Almacén en memoria de las cuatro tablas, compartido por los DAOs del
+ * backend "memoria" (ver FabricaDAO).
+ *
+ * Guarda una copia de cada fila y no las entidades recibidas, de modo que,
+ * como en MySQL, los cambios de una entidad solo se ven al guardarla y cada
+ * lectura materializa entidades nuevas (una por operación gracias al
+ * MapaIdentidad). Las tablas están ordenadas por ID para paginar saltando
+ * directamente a la posición pedida, y hay índices secundarios de las
+ * entradas por reserva, de las reservas por cliente y de las reservas por
+ * fecha de visita.
+ *
+ * Igual que en la BD, la reserva de una entrada y el cliente de una reserva
+ * no cambian una vez insertadas, así que esos índices solo crecen. La fecha
+ * de visita sí puede cambiar: al actualizar la reserva se mueve de fecha en
+ * su índice.
+ *
+ * Con el backend "diario" cada cambio se anota además en un Diario, que lo
+ * reproduce al arrancar. El cambio solo llega a las tablas una vez anotado,
+ * así que lo que hay en memoria nunca va por delante del diario.
+ */
+public class AlmacenMemoria {
+
+    private final ConcurrentSkipListMap<Integer, FilaCliente> clientes = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Integer, FilaVisitante> visitantes = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Integer, FilaReserva> reservas = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Integer, FilaEntrada> entradas = new ConcurrentSkipListMap<>();
+
+    // Índices secundarios: reserva_id -> entradas y cliente_id -> reservas
+    private final ConcurrentMap<Integer, Set<Integer>> entradasPorReserva = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<Integer>> reservasPorCliente = new ConcurrentHashMap<>();
+
+    // fecha_visita -> reservas, ordenado para recorrer un intervalo de fechas
+    private final ConcurrentSkipListMap<Long, Set<Integer>> reservasPorFechaVisita = new ConcurrentSkipListMap<>();
+
+    // Equivalente al AUTO_INCREMENT y a la tabla secuencia
+    private final AtomicInteger ultimoIdCliente = new AtomicInteger();
+    private final ConcurrentMap<String, AtomicInteger> secuencias = new ConcurrentHashMap<>();
+
+    // null si los datos solo viven en memoria; sin diario las escrituras se
+    // ordenan con este cerrojo
+    private volatile Diario diario;
+    private final Object escritura = new Object();
+
+    void setDiario(Diario diario) {
+        this.diario = diario;
+    }
+
+    /**
+     * Aplica un cambio y, si hay diario, lo anota en él antes de aplicarlo:
+     * si no se puede anotar, el almacén no cambia. Los cambios se aplican de
+     * uno en uno (con diario, en el mismo orden en que se anotan).
+     *
+     * @param preparar Calcula la fila resultante sin tocar el almacén, o
+     *                 devuelve null si no cambia nada
+     * @param aplicar  Deja la fila en el almacén
+     * @return Fila resultante del cambio
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    private <F> F aplicar(Supplier<F> preparar, Consumer<F> aplicar) throws IOException {
+        Diario actual = diario;
+        if (actual != null) {
+            return actual.anotar(preparar, aplicar);
+        }
+        synchronized (escritura) {
+            F fila = preparar.get();
+            if (fila != null) {
+                aplicar.accept(fila);
+            }
+            return fila;
+        }
+    }
+
+    /**
+     * Aplica un cambio de varias filas y, si hay diario, las anota todas
+     * esperando una sola confirmación
+     *
+     * @param preparar Calcula las filas resultantes sin tocar el almacén
+     * @param aplicar  Deja cada fila en el almacén
+     * @return Filas resultantes del cambio
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    private <F> List<F> aplicarVarias(Supplier<List<F>> preparar, Consumer<F> aplicar) throws IOException {
+        Diario actual = diario;
+        if (actual != null) {
+            return actual.anotarVarias(preparar, aplicar);
+        }
+        synchronized (escritura) {
+            List<F> filas = preparar.get();
+            filas.forEach(aplicar);
+            return filas;
+        }
+    }
+
+    // --- Escritura ---
+
+    /**
+     * Inserta un cliente nuevo asignándole el siguiente ID
+     *
+     * @param cliente Cliente a insertar (se le asigna el ID)
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    void insertarCliente(Cliente cliente) throws IOException {
+        FilaCliente fila = aplicar(() -> new FilaCliente(ultimoIdCliente.get() + 1, cliente.getNombre(),
+                cliente.getApellido(), cliente.getEmail(), cliente.getTelefono()), this::restaurar);
+        cliente.setId(fila.id);
+    }
+
+    /**
+     * Sustituye los datos de un cliente ya insertado
+     *
+     * @param cliente Cliente a actualizar
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    void actualizarCliente(Cliente cliente) throws IOException {
+        if (!clientes.containsKey(cliente.getId())) {
+            throw new IllegalStateException("No existe el cliente " + cliente.getId());
+        }
+
+        FilaCliente fila = new FilaCliente(cliente);
+        aplicar(() -> fila, this::restaurar);
+    }
+
+    /**
+     * Inserta un visitante o sustituye sus datos si ya existe
+     *
+     * @param visitante Visitante a guardar
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    void guardarVisitante(Visitante visitante) throws IOException {
+        FilaVisitante fila = new FilaVisitante(visitante);
+        aplicar(() -> fila, this::restaurar);
+    }
+
+    /**
+     * Inserta una reserva o, si ya existe, actualiza su fecha de visita y su
+     * estado
+     *
+     * @param reserva Reserva a guardar
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    void guardarReserva(Reserva reserva) throws IOException {
+        int clienteId = reserva.getCliente().getId();
+        if (!clientes.containsKey(clienteId)) {
+            throw new IllegalStateException("No existe el cliente " + clienteId + " de la reserva " + reserva.getId());
+        }
+
+        FilaReserva nueva = new FilaReserva(reserva);
+        aplicar(() -> {
+            FilaReserva actual = reservas.get(nueva.id);
+            return (actual != null) ? FilaReserva.actualizar(actual, nueva) : nueva;
+        }, this::restaurar);
+    }
+
+    /**
+     * Inserta una entrada o, si ya existe, actualiza su visitante, si está
+     * utilizada y su precio
+     *
+     * @param entrada Entrada a guardar
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    void guardarEntrada(Entrada entrada) throws IOException {
+        int reservaId = entrada.getReservaId();
+        if (!reservas.containsKey(reservaId)) {
+            throw new IllegalStateException("No existe la reserva " + reservaId + " de la entrada " + entrada.getId());
+        }
+        int visitanteId = entrada.getVisitanteId();
+        if (visitanteId != 0 && !visitantes.containsKey(visitanteId)) {
+            throw new IllegalStateException("No existe el visitante " + visitanteId + " de la entrada " + entrada.getId());
+        }
+
+        FilaEntrada nueva = new FilaEntrada(entrada);
+        aplicar(() -> {
+            FilaEntrada actual = entradas.get(nueva.id);
+            return (actual != null) ? FilaEntrada.actualizar(actual, nueva) : nueva;
+        }, this::restaurar);
+    }
+
+    /**
+     * Marca una entrada como utilizada solo si aún no lo estaba. Es atómico:
+     * si dos hilos la marcan a la vez solo uno lo consigue.
+     *
+     * @param id ID de la entrada
+     * @return true si la ha marcado esta llamada, false si ya estaba
+     *         utilizada o no existe
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    boolean marcarEntradaUtilizada(int id) throws IOException {
+        return aplicar(() -> utilizada(id), this::restaurar) != null;
+    }
+
+    /**
+     * Marca como utilizadas las entradas indicadas que aún no lo estén, con
+     * una sola anotación en el diario
+     *
+     * @param ids IDs de las entradas
+     * @return IDs de las entradas marcadas por esta llamada
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    List<Integer> marcarEntradasUtilizadas(Collection<Integer> ids) throws IOException {
+        List<FilaEntrada> marcadas = aplicarVarias(() -> {
+            // Un ID repetido se marca una vez: la fila aún no está aplicada
+            Set<Integer> vistas = new HashSet<>();
+            List<FilaEntrada> filas = new ArrayList<>();
+            for (int id : ids) {
+                FilaEntrada fila = vistas.add(id) ? utilizada(id) : null;
+                if (fila != null) {
+                    filas.add(fila);
+                }
+            }
+            return filas;
+        }, this::restaurar);
+
+        List<Integer> resultado = new ArrayList<>(marcadas.size());
+        for (FilaEntrada fila : marcadas) {
+            resultado.add(fila.id);
+        }
+        return resultado;
+    }
+
+    /**
+     * Marca como utilizadas todas las entradas aún sin utilizar de una reserva
+     *
+     * @param reservaId ID de la reserva
+     * @return Número de entradas marcadas por esta llamada
+     * @throws IOException si no se pudo anotar en el diario
+     */
+    int marcarEntradasUtilizadasDeReserva(int reservaId) throws IOException {
+        return marcarEntradasUtilizadas(idsEntradas(reservaId)).size();
+    }
+
+    /**
+     * Fila de la entrada ya utilizada, si aún no lo estaba
+     *
+     * @param id ID de la entrada
+     * @return Fila nueva, o null si ya estaba utilizada o no existe
+     */
+    private FilaEntrada utilizada(int id) {
+        FilaEntrada actual = entradas.get(id);
+        if (actual == null || actual.utilizada) {
+            return null;
+        }
+        return new FilaEntrada(actual.id, actual.reservaId, actual.visitanteId, actual.precio,
+                actual.fechaEmision, true);
+    }
+
+    // --- Aplicación de filas ya resultantes: al guardar y al reproducir el diario ---
+
+    void restaurar(FilaCliente fila) {
+        clientes.put(fila.id, fila);
+        ultimoIdCliente.accumulateAndGet(fila.id, Math::max);
+    }
+
+    void restaurar(FilaVisitante fila) {
+        visitantes.put(fila.id, fila);
+    }
+
+    void restaurar(FilaReserva fila) {
+        FilaReserva anterior = reservas.put(fila.id, fila);
+        indexar(reservasPorCliente, fila.clienteId, fila.id);
+        indexar(reservasPorFechaVisita, fila.fechaVisita, fila.id);
+        if (anterior != null && anterior.fechaVisita != fila.fechaVisita) {
+            // Quien la encuentre aún en la fecha vieja ve en la fila que ya no es esa
+            reservasPorFechaVisita.computeIfPresent(anterior.fechaVisita, (f, ids) -> {
+                ids.remove(fila.id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    void restaurar(FilaEntrada fila) {
+        entradas.put(fila.id, fila);
+        indexar(entradasPorReserva, fila.reservaId, fila.id);
+    }
+
+    /**
+     * Contador de una secuencia de IDs, creado la primera vez que se pide.
+     * Como en MySQL, arranca desde el ID más alto de la tabla.
+     *
+     * @param nombre       Nombre de la secuencia
+     * @param tabla        Tabla de la entidad
+     * @param valorInicial Último ID que se considera usado si la tabla está vacía
+     * @return Contador con el último ID entregado
+     */
+    AtomicInteger secuencia(String nombre, String tabla, int valorInicial) {
+        return secuencias.computeIfAbsent(nombre, n -> new AtomicInteger(Math.max(valorInicial, ultimoId(tabla))));
+    }
+
+    private int ultimoId(String tabla) {
+        NavigableMap<Integer, ?> filas;
+        switch (tabla) {
+            case "cliente":
+                filas = clientes;
+                break;
+            case "visitante":
+                filas = visitantes;
+                break;
+            case "reserva":
+                filas = reservas;
+                break;
+            case "entrada":
+                filas = entradas;
+                break;
+            default:
+                throw new IllegalArgumentException("Tabla desconocida: " + tabla);
+        }
+        return filas.isEmpty() ? 0 : filas.lastKey();
+    }
+
+    private static <K> void indexar(ConcurrentMap<K, Set<Integer>> indice, K clave, int id) {
+        // La fila ya está en su tabla: quien la encuentre en el índice la ve
+        indice.computeIfAbsent(clave, c -> new ConcurrentSkipListSet<>()).add(id);
+    }
+
+    // --- Lectura con el MapaIdentidad ---
+
+    Cliente cliente(int id) {
+        Cliente existente = MapaIdentidad.buscar(Cliente.class, id);
+        if (existente != null) {
+            return existente;
+        }
+        FilaCliente fila = clientes.get(id);
+        return (fila != null) ? MapaIdentidad.registrar(Cliente.class, id, fila.crear()) : null;
+    }
+
+    Visitante visitante(int id) {
+        Visitante existente = MapaIdentidad.buscar(Visitante.class, id);
+        if (existente != null) {
+            return existente;
+        }
+        FilaVisitante fila = visitantes.get(id);
+        return (fila != null) ? MapaIdentidad.registrar(Visitante.class, id, fila.crear()) : null;
+    }
+
+    /**
+     * Materializa una reserva con su cliente. Sus entradas se crean ya si el
+     * plan las incluye, o la primera vez que se consulten si no.
+     *
+     * @param id   ID de la reserva
+     * @param plan Plan de carga
+     * @return Reserva, o null si no existe
+     */
+    Reserva reserva(int id, PlanCarga plan) {
+        Reserva existente = MapaIdentidad.buscar(Reserva.class, id);
+        if (existente != null) {
+            plan.completar(existente);
+            return existente;
+        }
+        FilaReserva fila = reservas.get(id);
+        if (fila == null) {
+            return null;
+        }
+
+        Reserva reserva = MapaIdentidad.registrar(Reserva.class, id, fila.crear(cliente(fila.clienteId)));
+        if (plan.incluyeEntradas()) {
+            reserva.setEntradas(entradasDe(reserva));
+        } else {
+            reserva.setEntradas(new ListaPerezosa<>(() -> entradasDe(reserva)));
+        }
+        return reserva;
+    }
+
+    /**
+     * Materializa una entrada con su reserva y su visitante
+     *
+     * @param id   ID de la entrada
+     * @param plan Plan de carga de la reserva
+     * @return Entrada, o null si no existe
+     */
+    Entrada entrada(int id, PlanCarga plan) {
+        Entrada existente = MapaIdentidad.buscar(Entrada.class, id);
+        if (existente != null) {
+            plan.completar(existente.getReserva());
+            return existente;
+        }
+        FilaEntrada fila = entradas.get(id);
+        if (fila == null) {
+            return null;
+        }
+
+        Reserva reserva = reserva(fila.reservaId, plan);
+        if (plan.incluyeEntradas()) {
+            // La reserva ya creó la entrada dentro de su lista
+            for (Entrada entrada : reserva.getEntradas()) {
+                if (entrada.getId() == id) {
+                    return entrada;
+                }
+            }
+        }
+        return MapaIdentidad.registrar(Entrada.class, id, fila.crear(reserva, visitante(fila.visitanteId)));
+    }
+
+    private List<Entrada> entradasDe(Reserva reserva) {
+        List<Entrada> resultado = new ArrayList<>();
+        for (int id : idsEntradas(reserva.getId())) {
+            Entrada entrada = MapaIdentidad.buscar(Entrada.class, id);
+            if (entrada == null) {
+                FilaEntrada fila = entradas.get(id);
+                entrada = MapaIdentidad.registrar(Entrada.class, id, fila.crear(reserva, visitante(fila.visitanteId)));
+            }
+            resultado.add(entrada);
+        }
+        return resultado;
+    }
+
+    // --- Lectura directa de filas ---
+
+    Set<Integer> idsEntradas(int reservaId) {
+        return entradasPorReserva.getOrDefault(reservaId, Collections.emptySet());
+    }
+
+    Set<Integer> idsReservasDeCliente(int clienteId) {
+        return reservasPorCliente.getOrDefault(clienteId, Collections.emptySet());
+    }
+
+    /**
+     * Reservas con la fecha de visita en [desde, hasta), por orden de fecha.
+     * Mientras se cambia la fecha de una reserva puede aparecer también en la
+     * vieja: hay que comprobar la fecha en su fila.
+     *
+     * @param desde Inicio del intervalo en ms, incluido
+     * @param hasta Fin del intervalo en ms, excluido
+     * @return IDs de las reservas
+     */
+    List<Integer> idsReservasPorFechaVisita(long desde, long hasta) {
+        List<Integer> ids = new ArrayList<>();
+        for (Set<Integer> reservasDelDia : reservasPorFechaVisita.subMap(desde, true, hasta, false).values()) {
+            ids.addAll(reservasDelDia);
+        }
+        return ids;
+    }
+
+    NavigableMap<Integer, FilaCliente> getClientes() {
+        return clientes;
+    }
+
+    NavigableMap<Integer, FilaVisitante> getVisitantes() {
+        return visitantes;
+    }
+
+    NavigableMap<Integer, FilaReserva> getReservas() {
+        return reservas;
+    }
+
+    NavigableMap<Integer, FilaEntrada> getEntradas() {
+        return entradas;
+    }
+
+    /**
+     * Recorre las entradas agrupadas por reserva sin registrarlas en el
+     * MapaIdentidad (cada reserva y su cliente se crean una vez por grupo)
+     *
+     * @return Stream de entradas
+     */
+    Stream<Entrada> streamEntradas() {
+        return reservas.values().stream().flatMap(filaReserva -> {
+            FilaCliente filaCliente = clientes.get(filaReserva.clienteId);
+            Reserva reserva = filaReserva.crear(filaCliente.crear());
+            List<Entrada> grupo = new ArrayList<>();
+            for (int id : idsEntradas(filaReserva.id)) {
+                FilaEntrada fila = entradas.get(id);
+                FilaVisitante filaVisitante = visitantes.get(fila.visitanteId);
+                grupo.add(fila.crear(reserva, (filaVisitante != null) ? filaVisitante.crear() : null));
+            }
+            reserva.setEntradas(grupo);
+            return grupo.stream();
+        });
+    }
+
+    /**
+     * Primeras filas de una tabla a continuación de un ID, en el sentido
+     * indicado
+     *
+     * @param tabla       Tabla ordenada por ID
+     * @param despuesDeId ID del último elemento de la página anterior
+     * @param cuantas     Número máximo de filas
+     * @param orden       Sentido del recorrido
+     * @return Filas encontradas
+     */
+    static <F> List<F> filasDespuesDe(NavigableMap<Integer, F> tabla, int despuesDeId, int cuantas, Orden orden) {
+        int inicio = orden.inicio(despuesDeId);
+        NavigableMap<Integer, F> resto = (orden == Orden.ASCENDENTE)
+                ? tabla.tailMap(inicio, false)
+                : tabla.headMap(inicio, false).descendingMap();
+
+        List<F> filas = new ArrayList<>(Math.min(cuantas, 64));
+        for (F fila : resto.values()) {
+            if (filas.size() == cuantas) {
+                break;
+            }
+            filas.add(fila);
+        }
+        return filas;
+    }
+
+    // --- Filas ---
+
+    static final class FilaCliente {
+        final int id;
+        final String nombre;
+        final String apellido;
+        final String email;
+        final String telefono;
+
+        FilaCliente(Cliente cliente) {
+            this(cliente.getId(), cliente.getNombre(), cliente.getApellido(), cliente.getEmail(),
+                    cliente.getTelefono());
+        }
+
+        FilaCliente(int id, String nombre, String apellido, String email, String telefono) {
+            this.id = id;
+            this.nombre = nombre;
+            this.apellido = apellido;
+            this.email = email;
+            this.telefono = telefono;
+        }
+
+        Cliente crear() {
+            Cliente cliente = new Cliente(id, nombre, apellido, email, telefono);
+            cliente.marcarGuardada();
+            return cliente;
+        }
+    }
+
+    static final class FilaVisitante {
+        final int id;
+        final String nombre;
+        final String apellido;
+        final int edad;
+
+        FilaVisitante(Visitante visitante) {
+            this(visitante.getId(), visitante.getNombre(), visitante.getApellido(), visitante.getEdad());
+        }
+
+        FilaVisitante(int id, String nombre, String apellido, int edad) {
+            this.id = id;
+            this.nombre = nombre;
+            this.apellido = apellido;
+            this.edad = edad;
+        }
+
+        Visitante crear() {
+            Visitante visitante = new Visitante(id, nombre, apellido, edad);
+            visitante.marcarGuardada();
+            return visitante;
+        }
+    }
+
+    static final class FilaReserva {
+        final int id;
+        final int clienteId;
+        final long fechaReserva;
+        final long fechaVisita;
+        final Reserva.EstadoReserva estado;
+
+        FilaReserva(Reserva reserva) {
+            this(reserva.getId(), reserva.getCliente().getId(), reserva.getFechaReserva().getTime(),
+                    reserva.getFechaVisita().getTime(), reserva.getEstado());
+        }
+
+        FilaReserva(int id, int clienteId, long fechaReserva, long fechaVisita,
+                Reserva.EstadoReserva estado) {
+            this.id = id;
+            this.clienteId = clienteId;
+            this.fechaReserva = fechaReserva;
+            this.fechaVisita = fechaVisita;
+            this.estado = estado;
+        }
+
+        /**
+         * Fila ya guardada con los datos que pueden cambiar tomados de la nueva
+         */
+        static FilaReserva actualizar(FilaReserva actual, FilaReserva nueva) {
+            return new FilaReserva(actual.id, actual.clienteId, actual.fechaReserva, nueva.fechaVisita,
+                    nueva.estado);
+        }
+
+        Reserva crear(Cliente cliente) {
+            Reserva reserva = new Reserva(id, cliente, new Date(fechaVisita));
+            reserva.setFechaReserva(new Date(fechaReserva));
+            reserva.setEstado(estado);
+            reserva.marcarGuardada();
+            return reserva;
+        }
+    }
+
+    static final class FilaEntrada {
+        final int id;
+        final int reservaId;
+        final int visitanteId;
+        final double precio;
+        final long fechaEmision;
+        final boolean utilizada;
+
+        FilaEntrada(Entrada entrada) {
+            this(entrada.getId(), entrada.getReservaId(), entrada.getVisitanteId(), entrada.getPrecio(),
+                    entrada.getFechaEmision().getTime(), entrada.isUtilizada());
+        }
+
+        FilaEntrada(int id, int reservaId, int visitanteId, double precio, long fechaEmision,
+                boolean utilizada) {
+            this.id = id;
+            this.reservaId = reservaId;
+            this.visitanteId = visitanteId;
+            this.precio = precio;
+            this.fechaEmision = fechaEmision;
+            this.utilizada = utilizada;
+        }
+
+        /**
+         * Fila ya guardada con los datos que pueden cambiar tomados de la nueva
+         */
+        static FilaEntrada actualizar(FilaEntrada actual, FilaEntrada nueva) {
+            return new FilaEntrada(actual.id, actual.reservaId, nueva.visitanteId, nueva.precio,
+                    actual.fechaEmision, nueva.utilizada);
+        }
+
+        Entrada crear(Reserva reserva, Visitante visitante) {
+            Entrada entrada = new Entrada(id, reserva, precio);
+            if (visitante != null) {
+                entrada.asignarVisitante(visitante);
+            }
+            if (utilizada) {
+                entrada.marcarComoUtilizada();
+            }
+            entrada.marcarGuardada();
+            return entrada;
+        }
+    }
+}
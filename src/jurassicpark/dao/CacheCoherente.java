@@ -0,0 +1,107 @@
+package jurassicpark.dao;
+
+import jurassicpark.connection.ConnectionJP;
+import jurassicpark.modelo.gestion.EntidadRastreada;
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+
+/**
+ * Lo que comparten los DAOs con caché (ClienteDAOCache, VisitanteDAOCache):
+ * servir las búsquedas por ID desde una CacheEntidades y descartar la copia
+ * de lo que se guarda cuando se confirma la transacción (ver
+ * SincronizacionTransaccion). Hasta entonces la caché sigue teniendo lo que
+ * está confirmado en la BD.
+ *
+ * @param <T> Tipo de entidad
+ */
+final class CacheCoherente<T extends EntidadRastreada> {
+
+    /**
+     * Operación del DAO decorado
+     *
+     * @param <A> Tipo del argumento
+     * @param <R> Tipo del resultado
+     */
+    interface Operacion<A, R> {
+        R ejecutar(A argumento) throws Exception;
+    }
+
+    private final Class<T> tipo;
+    private final CacheEntidades<T> cache;
+    private final ToIntFunction<T> id;
+
+    /**
+     * Constructor de la clase CacheCoherente
+     *
+     * @param tipo  Clase de la entidad, para el MapaIdentidad
+     * @param cache Caché compartida de esa entidad
+     * @param id    Lectura del ID de una entidad
+     */
+    CacheCoherente(Class<T> tipo, CacheEntidades<T> cache, ToIntFunction<T> id) {
+        this.tipo = tipo;
+        this.cache = cache;
+        this.id = id;
+    }
+
+    /**
+     * Guarda una entidad y descarta su copia al confirmar
+     */
+    T guardar(T entidad, Operacion<T, T> guardado) throws Exception {
+        try {
+            return guardado.ejecutar(entidad);
+        } finally {
+            invalidarAlConfirmar(entidad);
+        }
+    }
+
+    /**
+     * Guarda varias entidades y descarta sus copias al confirmar
+     */
+    ResultadoLote<T> guardarTodos(Collection<T> entidades, Operacion<Collection<T>, ResultadoLote<T>> guardado)
+            throws Exception {
+        try {
+            return guardado.ejecutar(entidades);
+        } finally {
+            for (T entidad : entidades) {
+                invalidarAlConfirmar(entidad);
+            }
+        }
+    }
+
+    /**
+     * Busca una entidad en el MapaIdentidad, luego en la caché y por último
+     * en el DAO decorado
+     */
+    T buscarPorId(int clave, Operacion<Integer, T> busqueda) throws Exception {
+        // Ya cargada en esta operación
+        T entidad = MapaIdentidad.buscar(tipo, clave);
+        if (entidad != null) {
+            return entidad;
+        }
+
+        // Copia nueva, solo para esta operación
+        entidad = cache.buscar(clave);
+        if (entidad != null) {
+            return MapaIdentidad.registrar(tipo, clave, entidad);
+        }
+
+        long generacion = cache.getGeneracion();
+        entidad = busqueda.ejecutar(clave);
+
+        // Dentro de una transacción podríamos estar leyendo cambios sin confirmar,
+        // y una entidad con cambios sin guardar no es lo que hay en la BD
+        if (entidad != null && !entidad.tieneCambios() && !ConnectionJP.getDataSource().hayTransaccion()) {
+            cache.guardar(clave, entidad, generacion);
+        }
+        return entidad;
+    }
+
+    CacheEntidades<T> getCache() {
+        return cache;
+    }
+
+    private void invalidarAlConfirmar(T entidad) {
+        // El ID se lee al confirmar: las nuevas no lo tienen hasta guardarse
+        SincronizacionTransaccion.alConfirmar(() -> cache.invalidar(id.applyAsInt(entidad)));
+    }
+}
@@ -0,0 +1,211 @@
+package jurassicpark.dao;
+
+import jurassicpark.util.Configuracion;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caché compartida (de segundo nivel) de entidades indexadas por ID.
+ *
+ * A diferencia del MapaIdentidad, que vive lo que dura una operación, esta
+ * caché se comparte entre operaciones e hilos. Está acotada en tamaño
+ * (expulsa la entrada menos usada recientemente) y cada entrada caduca tras
+ * un tiempo de vida. Se configura por tipo de entidad con las claves
+ * jp.cache.&lt;tipo&gt;.tamano (0 la desactiva) y jp.cache.&lt;tipo&gt;.ttl.ms.
+ *
+ * Las entidades son mutables, así que la caché no guarda la instancia que
+ * recibe sino una instantánea inmutable de sus datos, y cada acierto crea una
+ * entidad nueva a partir de ella: ningún hilo ni operación ve los cambios de
+ * otro antes de que se guarden.
+ *
+ * Una lectura de la BD puede terminar después de que otro hilo haya
+ * modificado la fila y descartado su copia; para que no se vuelva a guardar
+ * la versión antigua, quien lee toma antes getGeneracion() y guardar() no
+ * hace nada si desde entonces se ha descartado alguna entidad.
+ *
+ * @param <T> Tipo de entidad guardada
+ */
+public class CacheEntidades<T> {
+
+    private final String nombre;
+    private final int capacidad;
+    private final long ttlMs;
+    private final Function<T, Supplier<T>> instantanea;
+
+    // Orden de acceso: la primera entrada es la menos usada recientemente
+    private final LinkedHashMap<Integer, Elemento<T>> elementos = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Cambia con cada entidad descartada
+    private long generacion;
+
+    // Estadísticas
+    private long aciertos;
+    private long fallos;
+    private long expulsiones;
+
+    /**
+     * Constructor de la clase CacheEntidades
+     *
+     * @param nombre      Nombre de la caché (para las estadísticas)
+     * @param capacidad   Número máximo de entidades guardadas
+     * @param ttlMs       Tiempo de vida de cada entidad (0 o menos: sin límite)
+     * @param instantanea Copia inmutable de una entidad, que crea una entidad
+     *                    nueva con sus datos cada vez que se le pide
+     */
+    public CacheEntidades(String nombre, int capacidad, long ttlMs, Function<T, Supplier<T>> instantanea) {
+        this.nombre = nombre;
+        this.capacidad = capacidad;
+        this.ttlMs = ttlMs;
+        this.instantanea = instantanea;
+    }
+
+    /**
+     * Crea la caché de un tipo de entidad con los valores configurados
+     *
+     * @param tipo             Tipo de entidad (cliente, visitante...)
+     * @param capacidadDefecto Capacidad si no está configurada
+     * @param ttlDefectoMs     Tiempo de vida si no está configurado
+     * @param instantanea      Copia inmutable de una entidad
+     * @return Caché creada, o null si está desactivada
+     */
+    static <T> CacheEntidades<T> desdeConfiguracion(String tipo, int capacidadDefecto, long ttlDefectoMs,
+            Function<T, Supplier<T>> instantanea) {
+        int capacidad = Configuracion.getInt("jp.cache." + tipo + ".tamano", capacidadDefecto);
+        if (capacidad <= 0) {
+            return null;
+        }
+        long ttlMs = Configuracion.getLong("jp.cache." + tipo + ".ttl.ms", ttlDefectoMs);
+        return new CacheEntidades<>(tipo, capacidad, ttlMs, instantanea);
+    }
+
+    /**
+     * Busca una entidad que no haya caducado
+     *
+     * @param id ID de la entidad
+     * @return Entidad nueva creada con los datos guardados, o null
+     */
+    synchronized T buscar(int id) {
+        Elemento<T> elemento = elementos.get(id);
+        if (elemento == null) {
+            fallos++;
+            return null;
+        }
+        if (elemento.caducada(System.currentTimeMillis())) {
+            elementos.remove(id);
+            expulsiones++;
+            fallos++;
+            return null;
+        }
+        aciertos++;
+        return elemento.fila.get();
+    }
+
+    /**
+     * Marca que hay que tomar antes de leer de la BD una entidad que luego se
+     * va a guardar en la caché
+     *
+     * @return Generación actual
+     */
+    synchronized long getGeneracion() {
+        return generacion;
+    }
+
+    /**
+     * Guarda una copia de una entidad leída de la base de datos, salvo que se
+     * haya descartado alguna entidad después de empezar a leerla
+     *
+     * @param id         ID de la entidad
+     * @param entidad    Entidad leída
+     * @param generacion Valor de getGeneracion() antes de leerla
+     */
+    synchronized void guardar(int id, T entidad, long generacion) {
+        if (generacion != this.generacion) {
+            return;
+        }
+        long caducidad = (ttlMs > 0) ? System.currentTimeMillis() + ttlMs : Long.MAX_VALUE;
+        elementos.put(id, new Elemento<>(instantanea.apply(entidad), caducidad));
+
+        Iterator<Map.Entry<Integer, Elemento<T>>> it = elementos.entrySet().iterator();
+        while (elementos.size() > capacidad && it.hasNext()) {
+            it.next();
+            it.remove();
+            expulsiones++;
+        }
+    }
+
+    /**
+     * Descarta una entidad (por ejemplo, porque se acaba de modificar)
+     *
+     * @param id ID de la entidad
+     */
+    synchronized void invalidar(int id) {
+        elementos.remove(id);
+        generacion++;
+    }
+
+    /**
+     * Descarta todas las entidades guardadas
+     */
+    public synchronized void vaciar() {
+        elementos.clear();
+        generacion++;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public synchronized int getTamano() {
+        return elementos.size();
+    }
+
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    public synchronized long getFallos() {
+        return fallos;
+    }
+
+    public synchronized long getExpulsiones() {
+        return expulsiones;
+    }
+
+    /**
+     * Proporción de búsquedas servidas desde la caché
+     *
+     * @return Tasa de aciertos entre 0 y 1
+     */
+    public synchronized double getTasaAciertos() {
+        long total = aciertos + fallos;
+        return (total == 0) ? 0 : (double) aciertos / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Caché %s: %d entidades, %d aciertos, %d fallos (%.1f%%), %d expulsiones",
+                nombre, elementos.size(), aciertos, fallos, getTasaAciertos() * 100, expulsiones);
+    }
+
+    /**
+     * Instantánea de una entidad junto a su caducidad
+     */
+    private static class Elemento<T> {
+
+        private final Supplier<T> fila;
+        private final long caducidad;
+
+        Elemento(Supplier<T> fila, long caducidad) {
+            this.fila = fila;
+            this.caducidad = caducidad;
+        }
+
+        boolean caducada(long ahora) {
+            return ahora >= caducidad;
+        }
+    }
+}
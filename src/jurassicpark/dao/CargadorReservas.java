@@ -0,0 +1,492 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Cliente;
+import jurassicpark.modelo.gestion.Entrada;
+import jurassicpark.modelo.gestion.Reserva;
+import jurassicpark.modelo.gestion.Visitante;
+import jurassicpark.util.ListaPerezosa;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.sql.DataSource;
+
+/**
+ * Carga reservas con su cliente y sus entradas (con su visitante) usando un
+ * número fijo de consultas, sin importar cuántas filas haya.
+ *
+ * Primero se leen las reservas junto a su cliente con un JOIN y después todas
+ * sus entradas junto a su visitante con otro. El grafo se monta en memoria con
+ * mapas por ID, de modo que cada cliente, reserva y visitante se crea una sola
+ * vez. Si hay un MapaIdentidad abierto se reutilizan las instancias que ya
+ * tenga.
+ *
+ * Las asociaciones también pueden quedar perezosas: las entradas de las
+ * reservas, la reserva de cada entrada y su visitante se leen la primera vez
+ * que se consultan. La carga se hace de una vez (con IN) para todos los
+ * objetos de este cargador que estén pendientes, no para cada uno por
+ * separado.
+ *
+ * Un cargador parcial lee solo parte de las entradas de cada reserva: las
+ * reservas y entradas que crea no se registran en el MapaIdentidad, para que
+ * nadie reciba después una reserva con la lista de entradas incompleta, ni
+ * toman del mapa las entradas de esas reservas. Si la reserva ya estaba en
+ * el mapa completa, sus entradas se comparten como en cualquier carga.
+ */
+class CargadorReservas {
+
+    // LEFT JOIN: una reserva sin cliente no se descarta en silencio, es un error
+    private static final String SQL_RESERVAS = "SELECT r.idreserva, r.cliente_id, r.fecha_reserva, "
+            + "r.fecha_visita, r.estado, c.idcliente, c.nombre, c.apellido, c.email, c.telefono "
+            + "FROM reserva r LEFT JOIN cliente c ON c.idcliente = r.cliente_id ";
+
+    // v.idvisitante es NULL si visitante_id no apunta a ninguna fila
+    private static final String SQL_ENTRADAS = "SELECT e.identrada, e.reserva_id, e.visitante_id, "
+            + "e.precio, e.utilizada, v.idvisitante, v.nombre AS visitante_nombre, "
+            + "v.apellido AS visitante_apellido, v.edad "
+            + "FROM entrada e LEFT JOIN visitante v ON v.idvisitante = e.visitante_id ";
+
+    private static final String SQL_ENTRADAS_SIN_VISITANTE = "SELECT e.identrada, e.reserva_id, e.visitante_id, "
+            + "e.precio, e.utilizada FROM entrada e ";
+
+    private static final String SQL_VISITANTES = "SELECT idvisitante, nombre AS visitante_nombre, "
+            + "apellido AS visitante_apellido, edad FROM visitante ";
+
+    // IDs como máximo en cada consulta con IN
+    private static final int BLOQUE_IN = 500;
+
+    private final boolean parcial;
+
+    private final Map<Integer, Cliente> clientes = new HashMap<>();
+    private final Map<Integer, Reserva> reservas = new LinkedHashMap<>();
+    // Reservas ya materializadas en la operación: tienen (o cargarán) todas
+    // sus entradas, así que no se les añade ninguna
+    private final Set<Integer> reutilizadas = new HashSet<>();
+    private final Map<Integer, Visitante> visitantes = new HashMap<>();
+    private final Map<Integer, Entrada> conocidas = new HashMap<>();
+    private final List<Entrada> entradas = new ArrayList<>();
+
+    // Carga perezosa: origen de las conexiones y lo que queda por leer
+    private DataSource dataSource;
+    private boolean visitantesPerezosos;
+    private final Set<Integer> reservasSinEntradas = new LinkedHashSet<>();
+    private final Set<Integer> reservasPendientes = new LinkedHashSet<>();
+    private final Set<Integer> visitantesPendientes = new LinkedHashSet<>();
+
+    /**
+     * Constructor de un cargador que lee todas las entradas de cada reserva
+     */
+    CargadorReservas() {
+        this(false);
+    }
+
+    /**
+     * Constructor de la clase CargadorReservas
+     *
+     * @param parcial true si solo se van a leer algunas entradas de cada
+     *                reserva
+     */
+    CargadorReservas(boolean parcial) {
+        this.parcial = parcial;
+    }
+
+    /**
+     * Hace que los visitantes de las entradas no se lean con ellas sino la
+     * primera vez que se consulte alguno
+     *
+     * @param dataSource Origen de las conexiones de la carga posterior
+     * @return Este cargador
+     */
+    CargadorReservas conVisitantesPerezosos(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.visitantesPerezosos = true;
+        return this;
+    }
+
+    /**
+     * Carga las reservas (con su cliente) que cumplen el filtro
+     *
+     * @param conn       Conexión a la base de datos
+     * @param filtro     Cláusulas WHERE / ORDER BY sobre reserva r y cliente c
+     * @param parametros Valores de los parámetros del filtro
+     * @throws SQLException si hay error en la consulta o una reserva no
+     *                      tiene cliente
+     */
+    void cargarReservas(Connection conn, String filtro, Object... parametros) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_RESERVAS + filtro)) {
+            asignar(stmt, parametros);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int reservaId = rs.getInt("idreserva");
+                    if (reservas.containsKey(reservaId)) {
+                        continue;
+                    }
+
+                    // Ya materializada en esta operación: se reutiliza tal cual
+                    Reserva existente = MapaIdentidad.buscar(Reserva.class, reservaId);
+                    if (existente != null) {
+                        reservas.put(reservaId, existente);
+                        reutilizadas.add(reservaId);
+                        continue;
+                    }
+
+                    Cliente cliente = obtenerCliente(rs);
+                    Date fechaVisita = new Date(rs.getTimestamp("fecha_visita").getTime());
+
+                    Reserva reserva = new Reserva(reservaId, cliente, fechaVisita);
+
+                    // Establecer la fecha de reserva desde la BD
+                    reserva.setFechaReserva(new Date(rs.getTimestamp("fecha_reserva").getTime()));
+                    reserva.setEstado(Reserva.EstadoReserva.valueOf(rs.getString("estado")));
+                    reserva.marcarGuardada();
+
+                    reservas.put(reservaId, parcial ? reserva : MapaIdentidad.registrar(Reserva.class, reservaId, reserva));
+                    reservasSinEntradas.add(reservaId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Carga las entradas que cumplen el filtro y las añade a su reserva. Las
+     * entradas de reservas no cargadas se ignoran.
+     *
+     * @param conn       Conexión a la base de datos
+     * @param filtro     Cláusulas JOIN / WHERE / ORDER BY sobre entrada e
+     * @param parametros Valores de los parámetros del filtro
+     * @throws SQLException si hay error en la consulta
+     */
+    void cargarEntradas(Connection conn, String filtro, Object... parametros) throws SQLException {
+        reservasSinEntradas.clear();
+        if (reservas.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(sqlEntradas() + filtro)) {
+            asignar(stmt, parametros);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Reserva reserva = reservas.get(rs.getInt("reserva_id"));
+                    if (reserva == null) {
+                        continue;
+                    }
+
+                    Entrada entrada = leerEntrada(rs, reserva);
+
+                    if (!reutilizadas.contains(reserva.getId())) {
+                        reserva.agregarEntrada(entrada);
+                    }
+                    entradas.add(entrada);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deja sin leer las entradas de las reservas cargadas: se leerán las de
+     * todas ellas la primera vez que se consulten las de cualquiera
+     *
+     * @param dataSource Origen de las conexiones de la carga posterior
+     */
+    void entradasPerezosas(DataSource dataSource) {
+        this.dataSource = dataSource;
+        if (reservasSinEntradas.isEmpty()) {
+            return;
+        }
+
+        LoteEntradas lote = new LoteEntradas(new ArrayList<>(reservasSinEntradas));
+        reservasSinEntradas.clear();
+        for (Integer reservaId : lote.reservaIds) {
+            reservas.get(reservaId).setEntradas(new ListaPerezosa<>(() -> lote.entradasDe(reservaId)));
+        }
+    }
+
+    /**
+     * Carga las entradas que cumplen el filtro sin cargar su reserva: se
+     * leerán las reservas de todas ellas la primera vez que se consulte la de
+     * cualquiera
+     *
+     * @param conn       Conexión a la base de datos
+     * @param dataSource Origen de las conexiones de la carga posterior
+     * @param filtro     Cláusulas WHERE / ORDER BY sobre entrada e
+     * @param parametros Valores de los parámetros del filtro
+     * @throws SQLException si hay error en la consulta
+     */
+    void cargarEntradasSueltas(Connection conn, DataSource dataSource, String filtro, Object... parametros)
+            throws SQLException {
+        this.dataSource = dataSource;
+
+        try (PreparedStatement stmt = conn.prepareStatement(sqlEntradas() + filtro)) {
+            asignar(stmt, parametros);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int reservaId = rs.getInt("reserva_id");
+                    Reserva reserva = reservas.get(reservaId);
+                    if (reserva == null) {
+                        reserva = MapaIdentidad.buscar(Reserva.class, reservaId);
+                    }
+                    if (reserva == null) {
+                        reservasPendientes.add(reservaId);
+                    }
+                    entradas.add(leerEntrada(rs, reserva));
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene las reservas cargadas en el orden en que se leyeron
+     *
+     * @return Lista de reservas
+     */
+    List<Reserva> getReservas() {
+        return new ArrayList<>(reservas.values());
+    }
+
+    /**
+     * Obtiene las entradas cargadas en el orden en que se leyeron
+     *
+     * @return Lista de entradas
+     */
+    List<Entrada> getEntradas() {
+        return new ArrayList<>(entradas);
+    }
+
+    private String sqlEntradas() {
+        return visitantesPerezosos ? SQL_ENTRADAS_SIN_VISITANTE : SQL_ENTRADAS;
+    }
+
+    /**
+     * Crea la entrada de la fila actual, o reutiliza la que ya se conoce
+     *
+     * @param rs      Resultado posicionado en la fila de la entrada
+     * @param reserva Reserva de la entrada (null si se carga más tarde)
+     * @return Entrada de la fila
+     * @throws SQLException si hay error al leer la fila
+     */
+    private Entrada leerEntrada(ResultSet rs, Reserva reserva) throws SQLException {
+        int entradaId = rs.getInt("identrada");
+        // La entrada de una reserva parcial no se comparte: la del mapa
+        // apunta a la reserva completa y esta no la incluiría en su lista
+        boolean compartida = !parcial || esDelMapa(reserva);
+        Entrada entrada = conocidas.get(entradaId);
+        if (entrada == null && compartida) {
+            entrada = MapaIdentidad.buscar(Entrada.class, entradaId);
+        }
+        if (entrada == null) {
+            entrada = new Entrada(entradaId, reserva, rs.getDouble("precio"));
+            if (reserva == null) {
+                int reservaId = rs.getInt("reserva_id");
+                entrada.setReservaPerezosa(reservaId, () -> reservaDe(reservaId));
+            }
+
+            if (rs.getBoolean("utilizada")) {
+                entrada.marcarComoUtilizada();
+            }
+
+            int visitanteId = rs.getInt("visitante_id");
+            if (!rs.wasNull()) {
+                Visitante visitante = visitantes.get(visitanteId);
+                if (visitante == null) {
+                    visitante = MapaIdentidad.buscar(Visitante.class, visitanteId);
+                }
+                if (visitante != null) {
+                    entrada.asignarVisitante(visitante);
+                } else if (visitantesPerezosos) {
+                    visitantesPendientes.add(visitanteId);
+                    entrada.setVisitantePerezoso(visitanteId, () -> visitanteDe(visitanteId));
+                } else {
+                    // El visitante viene en la misma fila (LEFT JOIN); si no
+                    // hay fila unida, la entrada se queda sin visitante
+                    rs.getInt("idvisitante");
+                    if (!rs.wasNull()) {
+                        entrada.asignarVisitante(registrarVisitante(visitanteId, rs));
+                    }
+                }
+            }
+
+            entrada.marcarGuardada();
+            if (compartida) {
+                entrada = MapaIdentidad.registrar(Entrada.class, entradaId, entrada);
+            }
+        }
+        conocidas.put(entradaId, entrada);
+        return entrada;
+    }
+
+    private static boolean esDelMapa(Reserva reserva) {
+        return reserva != null && MapaIdentidad.buscar(Reserva.class, reserva.getId()) == reserva;
+    }
+
+    private Cliente obtenerCliente(ResultSet rs) throws SQLException {
+        int clienteId = rs.getInt("cliente_id");
+        rs.getInt("idcliente");
+        if (rs.wasNull()) {
+            throw new SQLException("No se encontró el cliente asociado a la reserva " + rs.getInt("idreserva"));
+        }
+        Cliente cliente = clientes.get(clienteId);
+        if (cliente == null) {
+            cliente = MapaIdentidad.buscar(Cliente.class, clienteId);
+        }
+        if (cliente == null) {
+            Cliente leido = new Cliente(
+                    clienteId,
+                    rs.getString("nombre"),
+                    rs.getString("apellido"),
+                    rs.getString("email"),
+                    rs.getString("telefono"));
+            leido.marcarGuardada();
+            cliente = MapaIdentidad.registrar(Cliente.class, clienteId, leido);
+        }
+        clientes.put(clienteId, cliente);
+        return cliente;
+    }
+
+    private Visitante registrarVisitante(int visitanteId, ResultSet rs) throws SQLException {
+        Visitante leido = new Visitante(
+                visitanteId,
+                rs.getString("visitante_nombre"),
+                rs.getString("visitante_apellido"),
+                rs.getInt("edad"));
+        leido.marcarGuardada();
+        Visitante visitante = MapaIdentidad.registrar(Visitante.class, visitanteId, leido);
+        visitantes.put(visitanteId, visitante);
+        return visitante;
+    }
+
+    /**
+     * Carga perezosa de la reserva de una entrada suelta: lee de una vez
+     * todas las reservas pendientes de este cargador
+     */
+    private Reserva reservaDe(int reservaId) {
+        if (!reservas.containsKey(reservaId) && !reservasPendientes.isEmpty()) {
+            List<Integer> ids = new ArrayList<>(reservasPendientes);
+            reservasPendientes.clear();
+            try (Connection conn = dataSource.getConnection()) {
+                for (List<Integer> bloque : bloques(ids)) {
+                    cargarReservas(conn, "WHERE r.idreserva IN (" + marcadores(bloque.size()) + ")",
+                            bloque.toArray());
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error al cargar las reservas: " + e.getMessage(), e);
+            }
+            // Sus entradas, cuando se pidan, reutilizan las ya leídas
+            entradasPerezosas(dataSource);
+        }
+        return reservas.get(reservaId);
+    }
+
+    /**
+     * Carga perezosa del visitante de una entrada: lee de una vez todos los
+     * visitantes pendientes de este cargador
+     */
+    private Visitante visitanteDe(int visitanteId) {
+        if (!visitantes.containsKey(visitanteId) && !visitantesPendientes.isEmpty()) {
+            List<Integer> ids = new ArrayList<>(visitantesPendientes);
+            visitantesPendientes.clear();
+            try (Connection conn = dataSource.getConnection()) {
+                for (List<Integer> bloque : bloques(ids)) {
+                    String sql = SQL_VISITANTES + "WHERE idvisitante IN (" + marcadores(bloque.size()) + ")";
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        asignar(stmt, bloque.toArray());
+
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                int id = rs.getInt("idvisitante");
+                                Visitante existente = MapaIdentidad.buscar(Visitante.class, id);
+                                if (existente != null) {
+                                    visitantes.put(id, existente);
+                                } else {
+                                    registrarVisitante(id, rs);
+                                }
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error al cargar los visitantes: " + e.getMessage(), e);
+            }
+        }
+        return visitantes.get(visitanteId);
+    }
+
+    private static List<List<Integer>> bloques(List<Integer> ids) {
+        List<List<Integer>> bloques = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += BLOQUE_IN) {
+            bloques.add(ids.subList(i, Math.min(i + BLOQUE_IN, ids.size())));
+        }
+        return bloques;
+    }
+
+    private static String marcadores(int cantidad) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cantidad; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    private static void asignar(PreparedStatement stmt, Object[] parametros) throws SQLException {
+        for (int i = 0; i < parametros.length; i++) {
+            stmt.setObject(i + 1, parametros[i]);
+        }
+    }
+
+    /**
+     * Reservas cuyas entradas se dejaron sin leer a la vez. La primera que se
+     * consulta lee las entradas de todas.
+     */
+    private class LoteEntradas {
+
+        private final List<Integer> reservaIds;
+        private Map<Integer, List<Entrada>> porReserva;
+
+        LoteEntradas(List<Integer> reservaIds) {
+            this.reservaIds = reservaIds;
+        }
+
+        List<Entrada> entradasDe(int reservaId) {
+            if (porReserva == null) {
+                porReserva = new HashMap<>();
+                try (Connection conn = dataSource.getConnection()) {
+                    for (List<Integer> bloque : bloques(reservaIds)) {
+                        leer(conn, bloque);
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error al cargar las entradas: " + e.getMessage(), e);
+                }
+            }
+            List<Entrada> lista = porReserva.remove(reservaId);
+            return (lista != null) ? lista : new ArrayList<>();
+        }
+
+        private void leer(Connection conn, List<Integer> bloque) throws SQLException {
+            String sql = sqlEntradas() + "WHERE e.reserva_id IN (" + marcadores(bloque.size())
+                    + ") ORDER BY e.identrada";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                asignar(stmt, bloque.toArray());
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int reservaId = rs.getInt("reserva_id");
+                        Entrada entrada = leerEntrada(rs, reservas.get(reservaId));
+                        porReserva.computeIfAbsent(reservaId, id -> new ArrayList<>()).add(entrada);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Cliente;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * IClienteDAO que sirve las búsquedas por ID desde una CacheEntidades y
+ * delega el resto en otro DAO. La coherencia con lo guardado la lleva
+ * CacheCoherente.
+ */
+public class ClienteDAOCache implements IClienteDAO {
+
+    private final IClienteDAO delegado;
+    private final CacheCoherente<Cliente> cache;
+
+    /**
+     * Constructor de la clase ClienteDAOCache
+     *
+     * @param delegado DAO que accede a la base de datos
+     * @param cache    Caché compartida de clientes
+     */
+    public ClienteDAOCache(IClienteDAO delegado, CacheEntidades<Cliente> cache) {
+        this.delegado = delegado;
+        this.cache = new CacheCoherente<>(Cliente.class, cache, Cliente::getId);
+    }
+
+    @Override
+    public Cliente guardar(Cliente cliente) throws Exception {
+        return cache.guardar(cliente, delegado::guardar);
+    }
+
+    @Override
+    public ResultadoLote<Cliente> guardarTodos(Collection<Cliente> clientes) throws Exception {
+        return cache.guardarTodos(clientes, delegado::guardarTodos);
+    }
+
+    @Override
+    public Cliente buscarPorId(int id) throws Exception {
+        return cache.buscarPorId(id, delegado::buscarPorId);
+    }
+
+    @Override
+    public List<Cliente> buscarTodos() throws Exception {
+        return delegado.buscarTodos();
+    }
+
+    @Override
+    public Stream<Cliente> streamTodos() throws Exception {
+        return delegado.streamTodos();
+    }
+
+    @Override
+    public Pagina<Cliente> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        return delegado.buscarPagina(despuesDeId, limite, orden);
+    }
+
+    public CacheEntidades<Cliente> getCache() {
+        return cache.getCache();
+    }
+}
@@ -0,0 +1,85 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Cliente;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Implementación de IClienteDAO sobre el AlmacenMemoria
+ */
+public class ClienteDAOMemoria implements IClienteDAO {
+
+    private final AlmacenMemoria almacen;
+
+    /**
+     * Constructor de la clase ClienteDAOMemoria
+     *
+     * @param almacen Almacén con las tablas en memoria
+     */
+    public ClienteDAOMemoria(AlmacenMemoria almacen) {
+        this.almacen = almacen;
+    }
+
+    @Override
+    public Cliente guardar(Cliente cliente) throws Exception {
+        // Como con AUTO_INCREMENT, un cliente nuevo recibe aquí su ID
+        if (cliente.esNueva()) {
+            almacen.insertarCliente(cliente);
+        } else if (cliente.tieneCambios()) {
+            almacen.actualizarCliente(cliente);
+        } else {
+            return cliente;
+        }
+        cliente.marcarGuardada();
+        MapaIdentidad.actualizar(Cliente.class, cliente.getId(), cliente);
+        return cliente;
+    }
+
+    @Override
+    public ResultadoLote<Cliente> guardarTodos(Collection<Cliente> clientes) throws Exception {
+        ResultadoLote<Cliente> resultado = new ResultadoLote<>();
+        int indice = 0;
+        for (Cliente cliente : clientes) {
+            try {
+                guardar(cliente);
+                resultado.agregarGuardado(cliente);
+            } catch (RuntimeException e) {
+                resultado.agregarFallo(indice, cliente, e);
+            }
+            indice++;
+        }
+        return resultado;
+    }
+
+    @Override
+    public Cliente buscarPorId(int id) throws Exception {
+        return almacen.cliente(id);
+    }
+
+    @Override
+    public List<Cliente> buscarTodos() throws Exception {
+        List<Cliente> clientes = new ArrayList<>();
+        for (int id : almacen.getClientes().keySet()) {
+            clientes.add(almacen.cliente(id));
+        }
+        return clientes;
+    }
+
+    @Override
+    public Stream<Cliente> streamTodos() throws Exception {
+        // Como en MySQL, los clientes recorridos no se registran en el MapaIdentidad
+        return almacen.getClientes().values().stream().map(AlmacenMemoria.FilaCliente::crear);
+    }
+
+    @Override
+    public Pagina<Cliente> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        List<Cliente> clientes = new ArrayList<>();
+        for (AlmacenMemoria.FilaCliente fila : AlmacenMemoria.filasDespuesDe(almacen.getClientes(), despuesDeId,
+                limite + 1, orden)) {
+            clientes.add(almacen.cliente(fila.id));
+        }
+        return Pagina.de(clientes, limite, Cliente::getId);
+    }
+}
@@ -7,7 +7,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
 import java.sql.SQLException;
 
 /**
@@ -15,50 +20,70 @@ import java.sql.SQLException;
  */
 public class ClienteDAOMySQL implements IClienteDAO {
 
-    private ConnectionJP connectionJP;
+    // INSERT nuevo (sin idcliente, ya que es AUTO_INCREMENT)
+    private static final String SQL_INSERTAR = "INSERT INTO cliente (nombre, apellido, email, telefono) VALUES (?, ?, ?, ?)";
+
+    private DataSource dataSource;
 
     /**
      * Constructor de la clase ClienteDAOMySQL
      */
     public ClienteDAOMySQL() {
-        this.connectionJP = new ConnectionJP();
+        this(ConnectionJP.getDataSource());
+    }
+
+    /**
+     * Constructor de la clase ClienteDAOMySQL con un origen de conexiones
+     * concreto
+     *
+     * @param dataSource Origen de las conexiones
+     */
+    ClienteDAOMySQL(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     @Override
     public Cliente guardar(Cliente cliente) throws Exception {
+        if (!cliente.esNueva()) {
+            // Ya existe: solo las columnas que han cambiado, o nada
+            actualizar(cliente);
+            SincronizacionTransaccion.marcarGuardada(cliente);
+            return cliente;
+        }
+
         Connection conn = null;
         PreparedStatement stmt = null;
-        // Comentado para probar si funciona sin generatedKeys
-        // ResultSet generatedKeys = null;
+        ResultSet generatedKeys = null;
 
         try {
-            conn = connectionJP.getConnection();
+            conn = dataSource.getConnection();
 
-            // INSERT nuevo (sin idcliente, ya que es AUTO_INCREMENT)
-            String insertSql = "INSERT INTO cliente (nombre, apellido, email, telefono) VALUES (?, ?, ?, ?)";
             // Esto es clave. Le indico a JDBC que, tras ejecutar la instrucción,
             // me devuelva cualquier columna con valor generado automáticamente
             // (la clave primaria auto‐incremental que antes generaba desde Java y cuya
-            // creación delego ahora en MySQL).
+            // creación delego ahora en MySQL). Sin ella el cliente no sabría su ID
+            // y un segundo guardado lo insertaría otra vez.
+            stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS);
 
-            // Comentado para probar si funciona sin generatedKeys
-            // stmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
-
-            // Versión sin retorno de claves generadas
-            stmt = conn.prepareStatement(insertSql);
-
-            stmt.setString(1, cliente.getNombre());
-            stmt.setString(2, cliente.getApellido());
-            stmt.setString(3, cliente.getEmail());
-            stmt.setString(4, cliente.getTelefono());
+            asignarParametros(stmt, cliente);
 
             stmt.executeUpdate();
 
-         
+            generatedKeys = stmt.getGeneratedKeys();
+            if (generatedKeys.next()) {
+                cliente.setId(generatedKeys.getInt(1));
+                SincronizacionTransaccion.marcarGuardada(cliente);
+                MapaIdentidad.actualizar(Cliente.class, cliente.getId(), cliente);
+            }
 
             return cliente;
         } finally {
-         
+            if (generatedKeys != null) {
+                try {
+                    generatedKeys.close();
+                } catch (SQLException e) {
+                }
+            }
             if (stmt != null) {
                 try {
                     stmt.close();
@@ -74,24 +99,99 @@ public class ClienteDAOMySQL implements IClienteDAO {
         }
     }
 
+    @Override
+    public ResultadoLote<Cliente> guardarTodos(Collection<Cliente> clientes) throws Exception {
+        // Los ya existentes con cambios no caben en el INSERT del lote: se
+        // actualizan antes uno a uno. Los nuevos se insertan en lote y reciben
+        // el ID que les genera la BD.
+        Map<Integer, Exception> fallidos = new LinkedHashMap<>();
+        List<Cliente> resto = new ArrayList<>(clientes.size());
+        List<Integer> posiciones = new ArrayList<>(clientes.size());
+        int indice = 0;
+        for (Cliente cliente : clientes) {
+            if (!cliente.esNueva() && cliente.tieneCambios()) {
+                try {
+                    actualizar(cliente);
+                    SincronizacionTransaccion.marcarGuardada(cliente);
+                } catch (SQLException e) {
+                    fallidos.put(indice++, e);
+                    continue;
+                }
+            }
+            resto.add(cliente);
+            posiciones.add(indice++);
+        }
+
+        // Los índices del lote se refieren a resto: se traducen a posiciones
+        // de la colección recibida
+        ResultadoLote<Cliente> lote = EjecutorLotes.ejecutar(dataSource, SQL_INSERTAR, resto,
+                Cliente::esNueva, this::asignarParametros, Cliente::setId);
+        ResultadoLote<Cliente> resultado = new ResultadoLote<>();
+        for (Cliente cliente : lote.getGuardados()) {
+            if (cliente.esNueva()) {
+                SincronizacionTransaccion.marcarGuardada(cliente);
+                MapaIdentidad.actualizar(Cliente.class, cliente.getId(), cliente);
+            }
+            resultado.agregarGuardado(cliente);
+        }
+        List<Cliente> lista = new ArrayList<>(clientes);
+        for (Map.Entry<Integer, Exception> fallo : fallidos.entrySet()) {
+            resultado.agregarFallo(fallo.getKey(), lista.get(fallo.getKey()), fallo.getValue());
+        }
+        for (Map.Entry<Integer, Exception> fallo : lote.getFallos().entrySet()) {
+            resultado.agregarFallo(posiciones.get(fallo.getKey()), lote.getFallido(fallo.getKey()),
+                    fallo.getValue());
+        }
+        return resultado;
+    }
+
+    /**
+     * Escribe las columnas que han cambiado de un cliente ya existente
+     *
+     * @param cliente Cliente leído o guardado antes
+     * @throws SQLException si hay error al actualizar
+     */
+    private void actualizar(Cliente cliente) throws SQLException {
+        new ActualizacionParcial("cliente", "idcliente")
+                .si(cliente.haCambiado(Cliente.CAMPO_NOMBRE), "nombre", cliente.getNombre())
+                .si(cliente.haCambiado(Cliente.CAMPO_APELLIDO), "apellido", cliente.getApellido())
+                .si(cliente.haCambiado(Cliente.CAMPO_EMAIL), "email", cliente.getEmail())
+                .si(cliente.haCambiado(Cliente.CAMPO_TELEFONO), "telefono", cliente.getTelefono())
+                .ejecutar(dataSource, cliente.getId());
+    }
+
+    /**
+     * Asigna los parámetros de SQL_INSERTAR para un cliente
+     *
+     * @param stmt    Sentencia a completar
+     * @param cliente Cliente a guardar
+     * @throws SQLException si hay error al asignar los parámetros
+     */
+    private void asignarParametros(PreparedStatement stmt, Cliente cliente) throws SQLException {
+        stmt.setString(1, cliente.getNombre());
+        stmt.setString(2, cliente.getApellido());
+        stmt.setString(3, cliente.getEmail());
+        stmt.setString(4, cliente.getTelefono());
+    }
+
     @Override
     public Cliente buscarPorId(int id) throws Exception {
+        // Ya cargado en esta operación
+        Cliente existente = MapaIdentidad.buscar(Cliente.class, id);
+        if (existente != null) {
+            return existente;
+        }
+
         String sql = "SELECT * FROM cliente WHERE idcliente = ?";
 
-        try (Connection conn = connectionJP.getConnection();
+        try (Connection conn = dataSource.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setInt(1, id);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Cliente cliente = new Cliente(
-                            rs.getInt("idcliente"),
-                            rs.getString("nombre"),
-                            rs.getString("apellido"),
-                            rs.getString("email"),
-                            rs.getString("telefono"));
-                    return cliente;
+                    return mapear(rs);
                 }
                 return null;
             }
@@ -103,20 +203,73 @@ public class ClienteDAOMySQL implements IClienteDAO {
         List<Cliente> clientes = new ArrayList<>();
         String sql = "SELECT * FROM cliente";
 
-        try (Connection conn = connectionJP.getConnection();
+        try (Connection conn = dataSource.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql);
                 ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                Cliente cliente = new Cliente(
-                        rs.getInt("idcliente"),
-                        rs.getString("nombre"),
-                        rs.getString("apellido"),
-                        rs.getString("email"),
-                        rs.getString("telefono"));
-                clientes.add(cliente);
+                clientes.add(mapear(rs));
             }
             return clientes;
         }
     }
+
+    @Override
+    public Stream<Cliente> streamTodos() throws Exception {
+        // Conexión propia del pool: queda ocupada mientras dure el recorrido.
+        // Los clientes no se registran en el MapaIdentidad para no acumularlos.
+        return LectorStream.abrir(ConnectionJP.getPool(), "SELECT * FROM cliente ORDER BY idcliente",
+                ClienteDAOMySQL::crear);
+    }
+
+    @Override
+    public Pagina<Cliente> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        // Recorre el índice de la clave primaria desde el último ID visto
+        String sql = "SELECT * FROM cliente WHERE " + orden.despuesDe("idcliente")
+                + " ORDER BY idcliente " + orden.getSql() + " LIMIT ?";
+
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, orden.inicio(despuesDeId));
+            stmt.setInt(2, limite + 1);
+
+            List<Cliente> clientes = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    clientes.add(mapear(rs));
+                }
+            }
+            return Pagina.de(clientes, limite, Cliente::getId);
+        }
+    }
+
+    /**
+     * Crea el cliente de la fila actual, o reutiliza el que ya se cargó en
+     * esta operación
+     * 
+     * @param rs Resultado posicionado en la fila del cliente
+     * @return Cliente de la fila
+     * @throws SQLException si hay error al leer la fila
+     */
+    private Cliente mapear(ResultSet rs) throws SQLException {
+        int id = rs.getInt("idcliente");
+        Cliente existente = MapaIdentidad.buscar(Cliente.class, id);
+        if (existente != null) {
+            return existente;
+        }
+
+        return MapaIdentidad.registrar(Cliente.class, id, crear(rs));
+    }
+
+    private static Cliente crear(ResultSet rs) throws SQLException {
+        Cliente cliente = new Cliente(
+                rs.getInt("idcliente"),
+                rs.getString("nombre"),
+                rs.getString("apellido"),
+                rs.getString("email"),
+                rs.getString("telefono"));
+        cliente.marcarGuardada();
+        return cliente;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Reserva;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formato binario de las filas del AlmacenMemoria, común al Diario y a la
+ * Instantanea.
+ *
+ * Los números van en big-endian y los textos como longitud (int, -1 para
+ * null) seguida de sus bytes UTF-8. Las reservas (25 bytes) y las entradas
+ * (29 bytes) tienen siempre el mismo tamaño.
+ */
+final class CodecFilas {
+
+    static final byte CLIENTE = 1;
+    static final byte VISITANTE = 2;
+    static final byte RESERVA = 3;
+    static final byte ENTRADA = 4;
+
+    private static final Reserva.EstadoReserva[] ESTADOS = Reserva.EstadoReserva.values();
+
+    private CodecFilas() {
+    }
+
+    static byte tipo(Object fila) {
+        if (fila instanceof AlmacenMemoria.FilaCliente) {
+            return CLIENTE;
+        } else if (fila instanceof AlmacenMemoria.FilaVisitante) {
+            return VISITANTE;
+        } else if (fila instanceof AlmacenMemoria.FilaReserva) {
+            return RESERVA;
+        }
+        return ENTRADA;
+    }
+
+    static byte[] codificar(Object fila) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream salida = new DataOutputStream(bytes);
+
+        if (fila instanceof AlmacenMemoria.FilaCliente) {
+            AlmacenMemoria.FilaCliente cliente = (AlmacenMemoria.FilaCliente) fila;
+            salida.writeInt(cliente.id);
+            escribirTexto(salida, cliente.nombre);
+            escribirTexto(salida, cliente.apellido);
+            escribirTexto(salida, cliente.email);
+            escribirTexto(salida, cliente.telefono);
+        } else if (fila instanceof AlmacenMemoria.FilaVisitante) {
+            AlmacenMemoria.FilaVisitante visitante = (AlmacenMemoria.FilaVisitante) fila;
+            salida.writeInt(visitante.id);
+            escribirTexto(salida, visitante.nombre);
+            escribirTexto(salida, visitante.apellido);
+            salida.writeInt(visitante.edad);
+        } else if (fila instanceof AlmacenMemoria.FilaReserva) {
+            AlmacenMemoria.FilaReserva reserva = (AlmacenMemoria.FilaReserva) fila;
+            salida.writeInt(reserva.id);
+            salida.writeInt(reserva.clienteId);
+            salida.writeLong(reserva.fechaReserva);
+            salida.writeLong(reserva.fechaVisita);
+            salida.writeByte(reserva.estado.ordinal());
+        } else {
+            AlmacenMemoria.FilaEntrada entrada = (AlmacenMemoria.FilaEntrada) fila;
+            salida.writeInt(entrada.id);
+            salida.writeInt(entrada.reservaId);
+            salida.writeInt(entrada.visitanteId);
+            salida.writeDouble(entrada.precio);
+            salida.writeLong(entrada.fechaEmision);
+            salida.writeBoolean(entrada.utilizada);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Lee una fila en la posición actual de los datos y la restaura en el
+     * almacén
+     *
+     * @param tipo    Tipo de fila
+     * @param datos   Datos posicionados al inicio de la fila (avanzan hasta
+     *                su final)
+     * @param almacen Almacén donde se restaura
+     */
+    static void restaurar(byte tipo, ByteBuffer datos, AlmacenMemoria almacen) {
+        switch (tipo) {
+            case CLIENTE:
+                almacen.restaurar(new AlmacenMemoria.FilaCliente(datos.getInt(), leerTexto(datos),
+                        leerTexto(datos), leerTexto(datos), leerTexto(datos)));
+                break;
+            case VISITANTE:
+                almacen.restaurar(new AlmacenMemoria.FilaVisitante(datos.getInt(), leerTexto(datos),
+                        leerTexto(datos), datos.getInt()));
+                break;
+            case RESERVA:
+                almacen.restaurar(new AlmacenMemoria.FilaReserva(datos.getInt(), datos.getInt(),
+                        datos.getLong(), datos.getLong(), ESTADOS[datos.get()]));
+                break;
+            case ENTRADA:
+                almacen.restaurar(new AlmacenMemoria.FilaEntrada(datos.getInt(), datos.getInt(), datos.getInt(),
+                        datos.getDouble(), datos.getLong(), datos.get() != 0));
+                break;
+            default:
+                throw new IllegalStateException("Tipo de fila desconocido: " + tipo);
+        }
+    }
+
+    private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        if (texto == null) {
+            salida.writeInt(-1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    private static String leerTexto(ByteBuffer datos) {
+        int longitud = datos.getInt();
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        datos.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
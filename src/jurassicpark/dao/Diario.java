@@ -0,0 +1,547 @@
+package jurassicpark.dao;
+
+import jurassicpark.util.Configuracion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Diario de solo anexado que hace persistente el AlmacenMemoria del backend
+ * "diario" (ver FabricaDAO).
+ *
+ * Cada guardado se anota como un registro binario con la fila resultante al
+ * final de un fichero proyectado en memoria: escribir es copiar unos bytes,
+ * sin viajes a ninguna base de datos. Formato del fichero (ver CodecFilas
+ * para el de cada fila):
+ *
+ * <pre>
+ * cabecera: MAGIA (int) VERSION (int) generación (long)
+ * registro: longitud (int) crc32c (int) tipo (byte) fila (longitud bytes)
+ * </pre>
+ *
+ * Un registro con longitud 0 marca el final. Al abrir el diario se carga la
+ * Instantanea y se reproducen los registros posteriores a ella hasta el
+ * primero incompleto o con el CRC incorrecto (un guardado interrumpido por
+ * una caída), que se descarta junto con todo lo que haya detrás.
+ *
+ * Confirmación en grupo: quien guarda espera a que su registro esté en disco,
+ * pero los force() los hace un único hilo, y cada uno confirma de una vez
+ * todos los registros anotados mientras se hacía el anterior.
+ *
+ * Compactación: como cada registro lleva la fila completa, solo cuenta el
+ * último de cada ID. Cuando los registros ocupan más que la última
+ * instantánea (y al menos jp.diario.instantanea.minimo bytes) se escribe una
+ * instantánea nueva y el diario empieza otra generación vacía. Se comprueba
+ * cada jp.diario.instantanea.ms y al cerrar.
+ *
+ * Si la aplicación cae entre escribir la instantánea y vaciar el diario, al
+ * arrancar la generación de la instantánea es mayor que la del diario y sus
+ * registros, ya incluidos en ella, se descartan.
+ */
+public class Diario implements AutoCloseable {
+
+    private static final int MAGIA = 0x4A504431; // "JPD1"
+    private static final int VERSION = 2;
+    private static final int CABECERA = 16;
+    private static final int CABECERA_REGISTRO = 9;
+    private static final int TAMANO_INICIAL = 4 * 1024 * 1024;
+
+    private final Path ruta;
+    private final Path rutaInstantanea;
+    private final AlmacenMemoria almacen;
+    private final long instantaneaMinima;
+
+    // Protege el fichero y las posiciones; los que esperan confirmación lo sueltan
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition hayPendientes = cerrojo.newCondition();
+    private final Condition hayConfirmados = cerrojo.newCondition();
+
+    private FileChannel canal;
+    private MappedByteBuffer mapa;
+    private long generacion;    // cambia con cada instantánea, que reinicia las posiciones
+    private int escrito;        // fin del último registro anotado
+    private int confirmado;     // hasta dónde está ya en disco
+    private long tamanoInstantanea;
+    private IOException errorDisco;
+    private boolean cerrado;
+
+    private final Thread confirmador;
+    private final ScheduledExecutorService instantaneas;
+
+    private Diario(Path ruta, Path rutaInstantanea, AlmacenMemoria almacen) {
+        this.ruta = ruta;
+        this.rutaInstantanea = rutaInstantanea;
+        this.almacen = almacen;
+        this.instantaneaMinima = Configuracion.getLong("jp.diario.instantanea.minimo", 16L * 1024 * 1024);
+
+        this.confirmador = new Thread(this::confirmar, "diario-confirmacion");
+        this.confirmador.setDaemon(true);
+
+        this.instantaneas = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "diario-instantanea");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Abre (o crea) el diario, carga en el almacén la instantánea y los
+     * registros posteriores, y lo deja anotando los guardados del almacén
+     *
+     * @param ruta            Fichero del diario
+     * @param rutaInstantanea Fichero de la instantánea
+     * @param almacen         Almacén vacío que se rellena
+     * @return Diario abierto
+     * @throws IOException si los ficheros no se pueden leer o no corresponden
+     */
+    static Diario abrir(Path ruta, Path rutaInstantanea, AlmacenMemoria almacen) throws IOException {
+        Diario diario = new Diario(ruta, rutaInstantanea, almacen);
+        long generacionInstantanea = Instantanea.cargar(rutaInstantanea, almacen);
+        if (generacionInstantanea >= 0) {
+            diario.tamanoInstantanea = Files.size(rutaInstantanea);
+        }
+        diario.abrirFichero(generacionInstantanea);
+        almacen.setDiario(diario);
+
+        diario.confirmador.start();
+        long periodo = Configuracion.getLong("jp.diario.instantanea.ms", 60000);
+        if (periodo > 0) {
+            diario.instantaneas.scheduleWithFixedDelay(diario::tomarInstantaneaSiConviene, periodo, periodo,
+                    TimeUnit.MILLISECONDS);
+        }
+        return diario;
+    }
+
+    /**
+     * Anota un cambio en el diario y después lo aplica al almacén. Vuelve
+     * cuando el registro está en disco.
+     *
+     * Si el registro no se puede anotar (diario cerrado, lleno o con un error
+     * de disco anterior) el almacén no cambia.
+     *
+     * @param preparar Calcula la fila resultante sin aplicarla, o devuelve
+     *                 null si no cambia nada y no hay que anotarla
+     * @param aplicar  Aplica al almacén la fila ya anotada
+     * @return Fila resultante del cambio
+     * @throws IOException si el registro no se pudo escribir
+     */
+    <F> F anotar(Supplier<F> preparar, Consumer<F> aplicar) throws IOException {
+        cerrojo.lock();
+        try {
+            comprobarEscribible();
+
+            // Con el cerrojo tomado nadie cambia el almacén entre preparar y
+            // aplicar, y los registros quedan en el orden de los cambios
+            F fila = preparar.get();
+            if (fila == null) {
+                return null;
+            }
+            anexar(fila);
+            aplicar.accept(fila);
+            esperarConfirmacion();
+            return fila;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Anota un cambio que afecta a varias filas y las aplica todas, esperando
+     * una sola vez a que estén en disco. O se anotan todas o ninguna.
+     *
+     * @param preparar Calcula las filas resultantes sin aplicarlas (vacía si
+     *                 no cambia nada)
+     * @param aplicar  Aplica al almacén cada fila ya anotada
+     * @return Filas resultantes del cambio
+     * @throws IOException si los registros no se pudieron escribir
+     */
+    <F> List<F> anotarVarias(Supplier<List<F>> preparar, Consumer<F> aplicar) throws IOException {
+        cerrojo.lock();
+        try {
+            comprobarEscribible();
+
+            List<F> filas = preparar.get();
+            if (filas.isEmpty()) {
+                return filas;
+            }
+            int inicio = escrito;
+            try {
+                for (F fila : filas) {
+                    anexar(fila);
+                }
+            } catch (IOException | RuntimeException e) {
+                // El confirmador aún no los ha visto: se borran los ya anexados
+                descartarDesde(inicio);
+                throw e;
+            }
+            filas.forEach(aplicar);
+            esperarConfirmacion();
+            return filas;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Comprueba, con el cerrojo tomado, que se pueden anotar cambios. Tras un
+     * error de disco el confirmador se ha parado y nada más llegaría a disco.
+     */
+    private void comprobarEscribible() throws IOException {
+        if (cerrado) {
+            throw new IOException("El diario está cerrado");
+        }
+        if (errorDisco != null) {
+            throw new IOException("El diario no admite cambios tras un error de disco", errorDisco);
+        }
+    }
+
+    /**
+     * Espera, con el cerrojo tomado, a que el confirmador lleve a disco todo
+     * lo anotado hasta ahora
+     */
+    private void esperarConfirmacion() throws IOException {
+        int fin = escrito;
+        long miGeneracion = generacion;
+        hayPendientes.signal();
+        while (confirmado < fin && generacion == miGeneracion && errorDisco == null) {
+            hayConfirmados.awaitUninterruptibly();
+        }
+        if (errorDisco != null) {
+            throw new IOException("No se pudo confirmar el diario en disco", errorDisco);
+        }
+    }
+
+    /**
+     * Escribe una instantánea si los registros de la generación actual ya
+     * ocupan más que la anterior
+     */
+    void tomarInstantaneaSiConviene() {
+        cerrojo.lock();
+        try {
+            if (!cerrado && escrito >= instantaneaMinima && escrito >= tamanoInstantanea) {
+                tomarInstantanea();
+            }
+        } catch (IOException e) {
+            System.out.println("No se pudo escribir la instantánea del diario: " + e.getMessage());
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Escribe una instantánea de todo el almacén y empieza una generación
+     * nueva y vacía del diario
+     *
+     * @throws IOException si hay error al escribir los ficheros
+     */
+    public void tomarInstantanea() throws IOException {
+        cerrojo.lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            rotar();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Tamaño ocupado por los registros de la generación actual
+     *
+     * @return Bytes escritos, incluida la cabecera
+     */
+    public int getTamano() {
+        cerrojo.lock();
+        try {
+            return escrito;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Confirma lo pendiente, escribe una instantánea (si hay registros nuevos)
+     * y cierra el fichero. Los guardados posteriores fallan.
+     */
+    @Override
+    public void close() {
+        cerrojo.lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            hayPendientes.signalAll();
+        } finally {
+            cerrojo.unlock();
+        }
+
+        instantaneas.shutdownNow();
+        try {
+            confirmador.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        cerrojo.lock();
+        try {
+            // Así el siguiente arranque solo tiene que cargar la instantánea
+            if (escrito > CABECERA && errorDisco == null) {
+                rotar();
+            }
+            canal.close();
+        } catch (IOException e) {
+            System.out.println("Error al cerrar el diario: " + e.getMessage());
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // --- Apertura y reproducción ---
+
+    private void abrirFichero(long generacionInstantanea) throws IOException {
+        if (!Files.exists(ruta) || Files.size(ruta) == 0) {
+            if (generacionInstantanea > 0) {
+                throw new IOException("Falta el diario " + ruta + " que sigue a la instantánea");
+            }
+            reiniciar(Math.max(generacionInstantanea, 0));
+            return;
+        }
+
+        canal = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(TAMANO_INICIAL, canal.size()));
+        if (mapa.getInt(0) != MAGIA) {
+            throw new IOException(ruta + " no es un diario de Jurassic Park");
+        }
+        if (mapa.getInt(4) != VERSION) {
+            throw new IOException("Versión de diario no soportada: " + mapa.getInt(4));
+        }
+
+        long generacionDiario = mapa.getLong(8);
+        if (generacionInstantanea > generacionDiario) {
+            // Caída justo después de escribir la instantánea: ya lo incluye todo
+            reiniciar(generacionInstantanea);
+            return;
+        }
+        if (generacionInstantanea < 0 && generacionDiario > 0) {
+            throw new IOException("Falta la instantánea " + rutaInstantanea + " de la que parte el diario " + ruta);
+        }
+        if (generacionInstantanea >= 0 && generacionInstantanea < generacionDiario) {
+            throw new IOException("La instantánea " + rutaInstantanea + " no corresponde al diario " + ruta
+                    + " (generaciones " + generacionInstantanea + " y " + generacionDiario + ")");
+        }
+
+        generacion = generacionDiario;
+        escrito = reproducir();
+        confirmado = escrito;
+    }
+
+    /**
+     * Sustituye el diario por uno vacío de la generación indicada
+     *
+     * @param nuevaGeneracion Generación del nuevo diario
+     * @throws IOException si hay error al escribir el fichero
+     */
+    private void reiniciar(long nuevaGeneracion) throws IOException {
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        try (FileChannel nuevo = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+            cabecera.putInt(MAGIA).putInt(VERSION).putLong(nuevaGeneracion).flip();
+            while (cabecera.hasRemaining()) {
+                nuevo.write(cabecera);
+            }
+            nuevo.force(true);
+        }
+        Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (canal != null) {
+            canal.close();
+        }
+        canal = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, TAMANO_INICIAL);
+        generacion = nuevaGeneracion;
+        escrito = CABECERA;
+        confirmado = CABECERA;
+    }
+
+    /**
+     * Escribe la instantánea y vacía el diario (con el cerrojo tomado)
+     */
+    private void rotar() throws IOException {
+        // Todo lo anotado queda confirmado antes de cambiar de generación
+        mapa.force();
+        confirmado = escrito;
+        hayConfirmados.signalAll();
+
+        long siguiente = generacion + 1;
+        tamanoInstantanea = Instantanea.escribir(rutaInstantanea, almacen, siguiente);
+        reiniciar(siguiente);
+    }
+
+    /**
+     * Aplica al almacén todos los registros válidos del diario
+     *
+     * @return Posición tras el último registro válido
+     */
+    private int reproducir() {
+        int limite = mapa.capacity();
+        int posicion = CABECERA;
+        boolean interrumpido = false;
+
+        while (posicion + CABECERA_REGISTRO <= limite) {
+            int longitud = mapa.getInt(posicion);
+            if (longitud == 0) {
+                break;
+            }
+            int inicio = posicion + CABECERA_REGISTRO;
+            if (longitud < 0 || inicio + longitud > limite) {
+                interrumpido = true;
+                break;
+            }
+
+            byte tipo = mapa.get(posicion + 8);
+            ByteBuffer datos = mapa.duplicate();
+            datos.position(inicio).limit(inicio + longitud);
+            if (crc(tipo, datos.duplicate()) != mapa.getInt(posicion + 4)) {
+                interrumpido = true;
+                break;
+            }
+
+            CodecFilas.restaurar(tipo, datos, almacen);
+            posicion = inicio + longitud;
+        }
+
+        if (interrumpido) {
+            // Lo que siga al registro roto no se llegó a confirmar: se borra para
+            // que los nuevos registros no se mezclen con restos
+            for (int i = posicion; i < limite; i++) {
+                mapa.put(i, (byte) 0);
+            }
+            mapa.force();
+        }
+        return posicion;
+    }
+
+    // --- Escritura ---
+
+    /**
+     * Anota una fila al final del diario (con el cerrojo tomado)
+     */
+    private void anexar(Object fila) throws IOException {
+        byte tipo = CodecFilas.tipo(fila);
+        byte[] datos = CodecFilas.codificar(fila);
+        int fin = escrito + CABECERA_REGISTRO + datos.length;
+        asegurarCapacidad(fin);
+
+        ByteBuffer destino = mapa.duplicate();
+        destino.position(escrito);
+        destino.putInt(datos.length)
+                .putInt(crc(tipo, ByteBuffer.wrap(datos)))
+                .put(tipo)
+                .put(datos);
+        escrito = fin;
+    }
+
+    /**
+     * Borra los registros anotados desde la posición indicada (con el
+     * cerrojo tomado y antes de que el confirmador los vea)
+     */
+    private void descartarDesde(int posicion) {
+        for (int i = posicion; i < escrito; i++) {
+            mapa.put(i, (byte) 0);
+        }
+        escrito = posicion;
+    }
+
+    private void asegurarCapacidad(long fin) throws IOException {
+        if (fin <= mapa.capacity()) {
+            return;
+        }
+        long nueva = Math.max(fin, 2L * mapa.capacity());
+        if (nueva > Integer.MAX_VALUE) {
+            nueva = Integer.MAX_VALUE;
+            if (fin > nueva) {
+                throw new IOException("El diario ha llegado a 2 GB sin poder escribir una instantánea");
+            }
+        }
+        // Al proyectar más allá del final el fichero crece (con ceros)
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, nueva);
+    }
+
+    private static int crc(byte tipo, ByteBuffer datos) {
+        CRC32C crc = new CRC32C();
+        crc.update(tipo);
+        crc.update(datos);
+        return (int) crc.getValue();
+    }
+
+    // --- Confirmación en grupo ---
+
+    /**
+     * Hilo confirmador: lleva a disco todo lo anotado desde el último force()
+     */
+    private void confirmar() {
+        while (true) {
+            MappedByteBuffer objetivo;
+            int desde;
+            int hasta;
+            long miGeneracion;
+
+            cerrojo.lock();
+            try {
+                while (escrito == confirmado && !cerrado) {
+                    hayPendientes.awaitUninterruptibly();
+                }
+                if (escrito == confirmado) {
+                    return;
+                }
+                objetivo = mapa;
+                desde = confirmado;
+                hasta = escrito;
+                miGeneracion = generacion;
+            } finally {
+                cerrojo.unlock();
+            }
+
+            // Sin el cerrojo: mientras tanto se siguen anotando registros
+            IOException error = null;
+            try {
+                objetivo.force(desde, hasta - desde);
+            } catch (RuntimeException e) {
+                error = new IOException(e.getMessage(), e);
+            }
+
+            cerrojo.lock();
+            try {
+                if (error != null) {
+                    errorDisco = error;
+                } else if (generacion == miGeneracion && hasta > confirmado) {
+                    confirmado = hasta;
+                }
+                hayConfirmados.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package jurassicpark.dao;
+
+import jurassicpark.util.Configuracion;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import javax.sql.DataSource;
+
+/**
+ * Ejecuta una misma sentencia para muchos elementos usando lotes JDBC dentro
+ * de una única transacción.
+ *
+ * Si un lote falla se deshace solo ese lote y se reintenta fila a fila, de
+ * modo que las filas correctas se guardan y cada fila incorrecta queda
+ * registrada con su error en el ResultadoLote. El tamaño del lote se
+ * configura con jp.lote.tamano.
+ *
+ * Los elementos que no necesitan escribirse (entidades sin cambios) se
+ * cuentan como guardados sin enviar nada a la BD. En los INSERT con clave
+ * AUTO_INCREMENT se puede recoger la clave generada para cada elemento.
+ */
+class EjecutorLotes {
+
+    private static final int TAMANO_LOTE = Math.max(1, Configuracion.getInt("jp.lote.tamano", 100));
+
+    /**
+     * Asigna los parámetros de la sentencia para un elemento
+     *
+     * @param <T> Tipo de entidad
+     */
+    interface AsignadorParametros<T> {
+        void asignar(PreparedStatement stmt, T elemento) throws SQLException;
+    }
+
+    /**
+     * Recibe la clave que la BD ha generado al insertar un elemento
+     *
+     * @param <T> Tipo de entidad
+     */
+    interface AsignadorClave<T> {
+        void asignar(T elemento, int clave);
+    }
+
+    /**
+     * Guarda todos los elementos con la sentencia indicada
+     *
+     * @param dataSource Origen de las conexiones
+     * @param sql        Sentencia a ejecutar para cada elemento
+     * @param elementos  Elementos a guardar
+     * @param asignador  Asignación de parámetros por elemento
+     * @return Elementos guardados y fallidos
+     * @throws SQLException si falla la conexión o la transacción
+     */
+    static <T> ResultadoLote<T> ejecutar(DataSource dataSource, String sql, Collection<T> elementos,
+            AsignadorParametros<T> asignador) throws SQLException {
+        return ejecutar(dataSource, sql, elementos, elemento -> true, asignador);
+    }
+
+    /**
+     * Guarda con la sentencia indicada los elementos pendientes; el resto se
+     * da por guardado tal cual
+     *
+     * @param dataSource Origen de las conexiones
+     * @param sql        Sentencia a ejecutar para cada elemento pendiente
+     * @param elementos  Elementos a guardar
+     * @param pendiente  Indica si un elemento hay que escribirlo
+     * @param asignador  Asignación de parámetros por elemento
+     * @return Elementos guardados y fallidos
+     * @throws SQLException si falla la conexión o la transacción
+     */
+    static <T> ResultadoLote<T> ejecutar(DataSource dataSource, String sql, Collection<T> elementos,
+            Predicate<? super T> pendiente, AsignadorParametros<T> asignador) throws SQLException {
+        return ejecutar(dataSource, sql, elementos, pendiente, asignador, null);
+    }
+
+    /**
+     * Inserta con la sentencia indicada los elementos pendientes y entrega a
+     * cada uno la clave que le ha generado la BD (AUTO_INCREMENT)
+     *
+     * @param dataSource Origen de las conexiones
+     * @param sql        INSERT a ejecutar para cada elemento pendiente
+     * @param elementos  Elementos a guardar
+     * @param pendiente  Indica si un elemento hay que escribirlo
+     * @param asignador  Asignación de parámetros por elemento
+     * @param clave      Recibe la clave generada de cada elemento insertado
+     *                   (null si no hace falta)
+     * @return Elementos guardados y fallidos
+     * @throws SQLException si falla la conexión o la transacción
+     */
+    static <T> ResultadoLote<T> ejecutar(DataSource dataSource, String sql, Collection<T> elementos,
+            Predicate<? super T> pendiente, AsignadorParametros<T> asignador, AsignadorClave<T> clave)
+            throws SQLException {
+        ResultadoLote<T> resultado = new ResultadoLote<>();
+        if (elementos.isEmpty()) {
+            return resultado;
+        }
+        if (elementos.stream().noneMatch(pendiente)) {
+            // Nada que escribir: ni siquiera hace falta una conexión
+            for (T elemento : elementos) {
+                resultado.agregarGuardado(elemento);
+            }
+            return resultado;
+        }
+
+        try (Connection conn = dataSource.getConnection()) {
+            // Si ya hay una transacción en curso la dejamos en manos de quien la abrió
+            boolean transaccionPropia = conn.getAutoCommit();
+            if (transaccionPropia) {
+                conn.setAutoCommit(false);
+            }
+
+            try (PreparedStatement stmt = (clave != null)
+                    ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql)) {
+                List<T> lote = new ArrayList<>(Math.min(TAMANO_LOTE, elementos.size()));
+                int inicio = 0;
+                for (T elemento : elementos) {
+                    lote.add(elemento);
+                    if (lote.size() == TAMANO_LOTE) {
+                        ejecutarLote(conn, stmt, lote, inicio, pendiente, asignador, clave, resultado);
+                        inicio += lote.size();
+                        lote.clear();
+                    }
+                }
+                if (!lote.isEmpty()) {
+                    ejecutarLote(conn, stmt, lote, inicio, pendiente, asignador, clave, resultado);
+                }
+
+                if (transaccionPropia) {
+                    conn.commit();
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (transaccionPropia) {
+                    conn.rollback();
+                }
+                throw e;
+            } finally {
+                if (transaccionPropia) {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    private static <T> void ejecutarLote(Connection conn, PreparedStatement stmt, List<T> lote, int inicio,
+            Predicate<? super T> pendiente, AsignadorParametros<T> asignador, AsignadorClave<T> clave,
+            ResultadoLote<T> resultado) throws SQLException {
+        // Los elementos sin cambios siguen en el lote para conservar el orden
+        // de los guardados, pero no se envían
+        Savepoint inicioLote = conn.setSavepoint();
+        try {
+            List<T> enviados = new ArrayList<>(lote.size());
+            for (T elemento : lote) {
+                if (pendiente.test(elemento)) {
+                    asignador.asignar(stmt, elemento);
+                    stmt.addBatch();
+                    enviados.add(elemento);
+                }
+            }
+            stmt.executeBatch();
+            conn.releaseSavepoint(inicioLote);
+            asignarClaves(stmt, enviados, clave);
+            for (T elemento : lote) {
+                resultado.agregarGuardado(elemento);
+            }
+        } catch (BatchUpdateException e) {
+            // Deshacer el lote y repetirlo fila a fila para saber cuáles fallan
+            conn.rollback(inicioLote);
+            stmt.clearBatch();
+            for (int i = 0; i < lote.size(); i++) {
+                T elemento = lote.get(i);
+                if (!pendiente.test(elemento)) {
+                    resultado.agregarGuardado(elemento);
+                    continue;
+                }
+                Savepoint inicioFila = conn.setSavepoint();
+                try {
+                    asignador.asignar(stmt, elemento);
+                    stmt.executeUpdate();
+                    asignarClaves(stmt, List.of(elemento), clave);
+                    conn.releaseSavepoint(inicioFila);
+                    resultado.agregarGuardado(elemento);
+                } catch (SQLException errorFila) {
+                    conn.rollback(inicioFila);
+                    resultado.agregarFallo(inicio + i, elemento, errorFila);
+                }
+            }
+        }
+    }
+
+    /**
+     * Entrega a los elementos enviados, en el mismo orden, las claves
+     * generadas por la última ejecución de la sentencia
+     */
+    private static <T> void asignarClaves(PreparedStatement stmt, List<T> enviados, AsignadorClave<T> clave)
+            throws SQLException {
+        if (clave == null || enviados.isEmpty()) {
+            return;
+        }
+        try (ResultSet claves = stmt.getGeneratedKeys()) {
+            for (T elemento : enviados) {
+                if (!claves.next()) {
+                    throw new SQLException("La BD no ha devuelto la clave de todas las filas insertadas");
+                }
+                clave.asignar(elemento, claves.getInt(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Entrada;
+import jurassicpark.modelo.gestion.Reserva;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Implementación de IEntradaDAO sobre el AlmacenMemoria
+ */
+public class EntradaDAOMemoria implements IEntradaDAO {
+
+    private final AlmacenMemoria almacen;
+
+    /**
+     * Constructor de la clase EntradaDAOMemoria
+     *
+     * @param almacen Almacén con las tablas en memoria
+     */
+    public EntradaDAOMemoria(AlmacenMemoria almacen) {
+        this.almacen = almacen;
+    }
+
+    @Override
+    public Entrada guardar(Entrada entrada) throws Exception {
+        // Sin cambios desde que se leyó o guardó: no hay nada que anotar
+        if (!entrada.necesitaGuardarse()) {
+            return entrada;
+        }
+        almacen.guardarEntrada(entrada);
+        entrada.marcarGuardada();
+        MapaIdentidad.actualizar(Entrada.class, entrada.getId(), entrada);
+        return entrada;
+    }
+
+    @Override
+    public ResultadoLote<Entrada> guardarTodas(Collection<Entrada> entradas) throws Exception {
+        ResultadoLote<Entrada> resultado = new ResultadoLote<>();
+        int indice = 0;
+        for (Entrada entrada : entradas) {
+            try {
+                guardar(entrada);
+                resultado.agregarGuardado(entrada);
+            } catch (RuntimeException e) {
+                resultado.agregarFallo(indice, entrada, e);
+            }
+            indice++;
+        }
+        return resultado;
+    }
+
+    @Override
+    public boolean marcarComoUtilizada(int id) throws Exception {
+        return almacen.marcarEntradaUtilizada(id);
+    }
+
+    @Override
+    public int marcarComoUtilizadasPorReserva(int reservaId) throws Exception {
+        return almacen.marcarEntradasUtilizadasDeReserva(reservaId);
+    }
+
+    @Override
+    public List<Integer> marcarComoUtilizadas(Collection<Integer> ids) throws Exception {
+        return almacen.marcarEntradasUtilizadas(ids);
+    }
+
+    @Override
+    public void recorrerEstadosPorFechaVisita(Date desde, Date hasta, ConsumidorEstado consumidor)
+            throws Exception {
+        for (int reservaId : almacen.idsReservasPorFechaVisita(desde.getTime(), hasta.getTime())) {
+            AlmacenMemoria.FilaReserva reserva = almacen.getReservas().get(reservaId);
+            if (reserva.fechaVisita < desde.getTime() || reserva.fechaVisita >= hasta.getTime()
+                    || reserva.estado == Reserva.EstadoReserva.CANCELADA) {
+                continue;
+            }
+            for (int id : almacen.idsEntradas(reserva.id)) {
+                consumidor.aceptar(id, almacen.getEntradas().get(id).utilizada);
+            }
+        }
+    }
+
+    @Override
+    public Entrada buscarPorId(int id) throws Exception {
+        return buscarPorId(id, PlanCarga.SOLO_CABECERA);
+    }
+
+    @Override
+    public Entrada buscarPorId(int id, PlanCarga plan) throws Exception {
+        return almacen.entrada(id, plan);
+    }
+
+    @Override
+    public List<Entrada> buscarTodas() throws Exception {
+        return materializar(almacen.getEntradas().keySet());
+    }
+
+    @Override
+    public Stream<Entrada> streamTodas() throws Exception {
+        return almacen.streamEntradas();
+    }
+
+    @Override
+    public Pagina<Entrada> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (AlmacenMemoria.FilaEntrada fila : AlmacenMemoria.filasDespuesDe(almacen.getEntradas(), despuesDeId,
+                limite + 1, orden)) {
+            ids.add(fila.id);
+        }
+        return Pagina.de(materializar(ids), limite, Entrada::getId);
+    }
+
+    @Override
+    public List<Entrada> buscarPorReserva(int reservaId) throws Exception {
+        return buscarPorReserva(reservaId, fila -> true);
+    }
+
+    @Override
+    public List<Entrada> buscarSinVisitantePorReserva(int reservaId) throws Exception {
+        return buscarPorReserva(reservaId, fila -> fila.visitanteId == 0);
+    }
+
+    /**
+     * Entradas de una reserva que cumplen una condición, comprobada sobre las
+     * filas antes de materializar nada
+     *
+     * @param reservaId ID de la reserva
+     * @param condicion Condición sobre la fila de la entrada
+     * @return Entradas que la cumplen, ordenadas por ID
+     */
+    private List<Entrada> buscarPorReserva(int reservaId, Predicate<AlmacenMemoria.FilaEntrada> condicion) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id : almacen.idsEntradas(reservaId)) {
+            if (condicion.test(almacen.getEntradas().get(id))) {
+                ids.add(id);
+            }
+        }
+        return materializar(ids);
+    }
+
+    private List<Entrada> materializar(Collection<Integer> ids) {
+        List<Entrada> entradas = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            entradas.add(almacen.entrada(id, PlanCarga.SOLO_CABECERA));
+        }
+        return entradas;
+    }
+}
@@ -1,6 +1,7 @@
 package jurassicpark.dao;
 
 import jurassicpark.connection.ConnectionJP;
+import jurassicpark.modelo.gestion.Cliente;
 import jurassicpark.modelo.gestion.Entrada;
 import jurassicpark.modelo.gestion.Reserva;
 import jurassicpark.modelo.gestion.Visitante;
@@ -8,244 +9,352 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
 
 /**
  * Implementación de IEntradaDAO para MySQL
  */
 public class EntradaDAOMySQL implements IEntradaDAO {
 
-    private ConnectionJP connectionJP;
-    private IReservaDAO reservaDAO;
+    // Si la entrada ya existe solo se actualizan el visitante y si está
+    // utilizada (MySQL no reescribe la fila si no cambian)
+    private static final String SQL_GUARDAR = "INSERT INTO entrada "
+            + "(identrada, reserva_id, visitante_id, precio, fecha_emision, utilizada) "
+            + "VALUES (?, ?, ?, ?, ?, ?) AS nueva "
+            + "ON DUPLICATE KEY UPDATE visitante_id = nueva.visitante_id, utilizada = nueva.utilizada";
+
+    // Condicionales: solo cambian las filas aún sin utilizar, así que el
+    // número de filas afectadas dice cuántas ha marcado esta sentencia
+    private static final String SQL_MARCAR_UTILIZADA = "UPDATE entrada SET utilizada = 1 "
+            + "WHERE identrada = ? AND utilizada = 0";
+    private static final String SQL_MARCAR_UTILIZADAS_RESERVA = "UPDATE entrada SET utilizada = 1 "
+            + "WHERE reserva_id = ? AND utilizada = 0";
+
+    // Estado de las entradas válidas para un día: usa idx_reserva_fecha_estado
+    private static final String SQL_ESTADOS_FECHA = "SELECT e.identrada, e.utilizada "
+            + "FROM reserva r JOIN entrada e ON e.reserva_id = r.idreserva "
+            + "WHERE r.fecha_visita >= ? AND r.fecha_visita < ? AND r.estado <> 'CANCELADA'";
+
+    // Recorrido completo agrupado por reserva: cada reserva se lee junto a su
+    // primera entrada y se reutiliza para las siguientes
+    private static final String SQL_STREAM = "SELECT e.identrada, e.reserva_id, e.precio, e.utilizada, "
+            + "r.cliente_id, r.fecha_reserva, r.fecha_visita, r.estado, "
+            + "c.nombre, c.apellido, c.email, c.telefono, "
+            + "e.visitante_id, v.idvisitante, v.nombre AS visitante_nombre, "
+            + "v.apellido AS visitante_apellido, v.edad "
+            + "FROM entrada e JOIN reserva r ON r.idreserva = e.reserva_id "
+            + "JOIN cliente c ON c.idcliente = r.cliente_id "
+            + "LEFT JOIN visitante v ON v.idvisitante = e.visitante_id "
+            + "ORDER BY e.reserva_id, e.identrada";
+
+    private DataSource dataSource;
 
     /**
      * Constructor de la clase EntradaDAOMySQL
      */
     public EntradaDAOMySQL() {
-        this.connectionJP = new ConnectionJP();
-        this.reservaDAO = new ReservaDAOMySQL();
+        this(ConnectionJP.getDataSource());
+    }
+
+    /**
+     * Constructor de la clase EntradaDAOMySQL con un origen de conexiones
+     * concreto
+     *
+     * @param dataSource Origen de las conexiones
+     */
+    EntradaDAOMySQL(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     @Override
     public Entrada guardar(Entrada entrada) throws Exception {
-        Connection conn = null;
-        PreparedStatement stmt = null;
+        return ActualizacionParcial.guardar(dataSource, Entrada.class, entrada, entrada.getId(), SQL_GUARDAR,
+                this::asignarParametros, () -> new ActualizacionParcial("entrada", "identrada")
+                        .si(entrada.haCambiado(Entrada.CAMPO_VISITANTE), "visitante_id",
+                                entrada.tieneVisitanteAsignado() ? entrada.getVisitanteId() : null)
+                        .si(entrada.haCambiado(Entrada.CAMPO_UTILIZADA), "utilizada", entrada.isUtilizada())
+                        .si(entrada.haCambiado(Entrada.CAMPO_PRECIO), "precio", entrada.getPrecio()));
+    }
 
-        try {
-            conn = connectionJP.getConnection();
+    @Override
+    public ResultadoLote<Entrada> guardarTodas(Collection<Entrada> entradas) throws Exception {
+        ResultadoLote<Entrada> resultado = EjecutorLotes.ejecutar(dataSource, SQL_GUARDAR, entradas,
+                Entrada::necesitaGuardarse, this::asignarParametros);
+        for (Entrada entrada : resultado.getGuardados()) {
+            SincronizacionTransaccion.marcarGuardada(entrada);
+            MapaIdentidad.actualizar(Entrada.class, entrada.getId(), entrada);
+        }
+        return resultado;
+    }
 
-            // Verificar si la entrada ya existe
-            String checkSql = "SELECT COUNT(*) FROM entrada WHERE identrada = ?";
-            stmt = conn.prepareStatement(checkSql);
-            stmt.setInt(1, entrada.getId());
+    /**
+     * Asigna los parámetros de SQL_GUARDAR para una entrada
+     *
+     * @param stmt    Sentencia a completar
+     * @param entrada Entrada a guardar
+     * @throws SQLException si hay error al asignar los parámetros
+     */
+    private void asignarParametros(PreparedStatement stmt, Entrada entrada) throws SQLException {
+        stmt.setInt(1, entrada.getId());
+        stmt.setInt(2, entrada.getReservaId());
+        // visitante puede ser null (los IDs se leen sin cargar las asociaciones)
+        if (entrada.tieneVisitanteAsignado()) {
+            stmt.setInt(3, entrada.getVisitanteId());
+        } else {
+            stmt.setNull(3, java.sql.Types.INTEGER);
+        }
+        stmt.setDouble(4, entrada.getPrecio());
+        stmt.setTimestamp(5, new Timestamp(entrada.getFechaEmision().getTime()));
+        stmt.setBoolean(6, entrada.isUtilizada());
+    }
 
-            ResultSet rs = stmt.executeQuery();
-            boolean existe = false;
-            if (rs.next()) {
-                existe = rs.getInt(1) > 0;
-            }
-            rs.close();
-            stmt.close();
-
-            // Según exista o no, hacemos INSERT o UPDATE
-            if (existe) {
-                // Obtener el estado actual de la entrada para no cambiar datos innecesariamente
-                String getEntrySql = "SELECT visitante_id, utilizada FROM entrada WHERE identrada = ?";
-                stmt = conn.prepareStatement(getEntrySql);
-                stmt.setInt(1, entrada.getId());
-                rs = stmt.executeQuery();
-
-                Integer currentVisitanteId = null;
-                boolean currentUtilizada = false;
-
-                if (rs.next()) {
-                    if (!rs.wasNull()) {
-                        currentVisitanteId = rs.getInt("visitante_id");
-                    }
-                    currentUtilizada = rs.getBoolean("utilizada");
-                }
-                rs.close();
-                stmt.close();
-
-                // Determinar si ha cambiado el visitante
-                boolean visitanteChanged = (entrada.getVisitante() != null
-                        && (currentVisitanteId == null || !currentVisitanteId.equals(entrada.getVisitante().getId())))
-                        ||
-                        (entrada.getVisitante() == null && currentVisitanteId != null);
-
-                // Determinar si ha cambiado utilizada
-                boolean utilizadaChanged = currentUtilizada != entrada.isUtilizada();
-
-                // Solo actualizamos lo que ha cambiado
-                if (visitanteChanged) {
-                    // UPDATE para asignar visitante
-                    String updateSql = "UPDATE entrada SET visitante_id = ? WHERE identrada = ?";
-                    stmt = conn.prepareStatement(updateSql);
-
-                    if (entrada.getVisitante() != null) {
-                        stmt.setInt(1, entrada.getVisitante().getId());
-                    } else {
-                        stmt.setNull(1, java.sql.Types.INTEGER);
-                    }
-                    stmt.setInt(2, entrada.getId());
+    @Override
+    public boolean marcarComoUtilizada(int id) throws Exception {
+        return actualizarUtilizadas(SQL_MARCAR_UTILIZADA, id) == 1;
+    }
 
-                    stmt.executeUpdate();
-                    stmt.close();
-                }
+    @Override
+    public int marcarComoUtilizadasPorReserva(int reservaId) throws Exception {
+        return actualizarUtilizadas(SQL_MARCAR_UTILIZADAS_RESERVA, reservaId);
+    }
 
-                if (utilizadaChanged) {
-                    // UPDATE para marcar como utilizada (esto se hará desde la opción 6 del menú)
-                    String updateSql = "UPDATE entrada SET utilizada = ? WHERE identrada = ?";
-                    stmt = conn.prepareStatement(updateSql);
+    @Override
+    public List<Integer> marcarComoUtilizadas(Collection<Integer> ids) throws Exception {
+        List<Integer> marcadas = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return marcadas;
+        }
 
-                    stmt.setBoolean(1, entrada.isUtilizada());
-                    stmt.setInt(2, entrada.getId());
+        // Un lote de la sentencia condicional: el recuento de cada una dice si
+        // esa entrada la ha marcado este lote
+        try (Connection conn = dataSource.getConnection()) {
+            // Todo o nada: si el lote falla a medias, quien lo reintente
+            // volvería a contar como ya utilizadas las que sí se marcaron. Si
+            // ya hay una transacción en curso la dejamos en manos de quien la
+            // abrió.
+            boolean transaccionPropia = conn.getAutoCommit();
+            if (transaccionPropia) {
+                conn.setAutoCommit(false);
+            }
 
-                    stmt.executeUpdate();
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_MARCAR_UTILIZADA)) {
+                for (int id : ids) {
+                    stmt.setInt(1, id);
+                    stmt.addBatch();
                 }
-            } else {
-                // INSERT nuevo
-                String insertSql = "INSERT INTO entrada (identrada, reserva_id, visitante_id, precio, fecha_emision, utilizada) VALUES (?, ?, ?, ?, ?, ?)";
-                stmt = conn.prepareStatement(insertSql);
-
-                stmt.setInt(1, entrada.getId());
-                stmt.setInt(2, entrada.getReserva().getId());
-                // visitante puede ser null
-                if (entrada.getVisitante() != null) {
-                    stmt.setInt(3, entrada.getVisitante().getId());
-                } else {
-                    stmt.setNull(3, java.sql.Types.INTEGER);
+                int[] filas = stmt.executeBatch();
+                if (transaccionPropia) {
+                    conn.commit();
                 }
-                stmt.setDouble(4, entrada.getPrecio());
-                stmt.setTimestamp(5, new Timestamp(entrada.getFechaEmision().getTime()));
-                stmt.setBoolean(6, entrada.isUtilizada());
-
-                stmt.executeUpdate();
-            }
 
-            return entrada;
-        } finally {
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
+                int i = 0;
+                for (int id : ids) {
+                    // Sin recuento (SUCCESS_NO_INFO) no se sabe: se da por marcada
+                    if (filas[i] > 0 || filas[i] == Statement.SUCCESS_NO_INFO) {
+                        marcadas.add(id);
+                    }
+                    i++;
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (transaccionPropia) {
+                    conn.rollback();
+                }
+                throw e;
+            } finally {
+                if (transaccionPropia) {
+                    conn.setAutoCommit(true);
+                }
             }
         }
+        return marcadas;
     }
 
-    @Override
-    public Entrada buscarPorId(int id) throws Exception {
-        String sql = "SELECT * FROM entrada WHERE identrada = ?";
-
-        try (Connection conn = connectionJP.getConnection();
+    private int actualizarUtilizadas(String sql, int id) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-
             stmt.setInt(1, id);
+            return stmt.executeUpdate();
+        }
+    }
 
+    @Override
+    public void recorrerEstadosPorFechaVisita(Date desde, Date hasta, ConsumidorEstado consumidor)
+            throws Exception {
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(SQL_ESTADOS_FECHA)) {
+            stmt.setTimestamp(1, new Timestamp(desde.getTime()));
+            stmt.setTimestamp(2, new Timestamp(hasta.getTime()));
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    int reservaId = rs.getInt("reserva_id");
-                    Reserva reserva = reservaDAO.buscarPorId(reservaId);
-
-                    if (reserva == null) {
-                        throw new Exception("No se encontró la reserva asociada a la entrada");
-                    }
+                while (rs.next()) {
+                    consumidor.aceptar(rs.getInt(1), rs.getBoolean(2));
+                }
+            }
+        }
+    }
 
-                    Entrada entrada = new Entrada(
-                            rs.getInt("identrada"),
-                            reserva,
-                            rs.getDouble("precio"));
+    @Override
+    public Entrada buscarPorId(int id) throws Exception {
+        return buscarPorId(id, PlanCarga.SOLO_CABECERA);
+    }
 
-                    if (rs.getBoolean("utilizada")) {
-                        entrada.marcarComoUtilizada();
-                    }
+    @Override
+    public Entrada buscarPorId(int id, PlanCarga plan) throws Exception {
+        // Ya cargada en esta operación: solo falta lo que pida el plan
+        Entrada existente = MapaIdentidad.buscar(Entrada.class, id);
+        if (existente != null) {
+            if (plan.incluyeEntradas()) {
+                plan.completar(existente.getReserva());
+            }
+            return existente;
+        }
 
-                    // Visitante se asignará más tarde si corresponde
+        try (Connection conn = dataSource.getConnection()) {
+            CargadorReservas cargador = new CargadorReservas();
+            if (!plan.incluyeVisitantes()) {
+                cargador.conVisitantesPerezosos(dataSource);
+            }
 
-                    return entrada;
+            if (plan.incluyeEntradas()) {
+                // La entrada dentro del grafo de su reserva: dos consultas
+                String reservaDeLaEntrada = "(SELECT reserva_id FROM entrada WHERE identrada = ?)";
+                cargador.cargarReservas(conn, "WHERE r.idreserva = " + reservaDeLaEntrada, id);
+                cargador.cargarEntradas(conn, "WHERE e.reserva_id = " + reservaDeLaEntrada
+                        + " ORDER BY e.identrada", id);
+                for (Entrada entrada : cargador.getEntradas()) {
+                    if (entrada.getId() == id) {
+                        return entrada;
+                    }
                 }
                 return null;
             }
+
+            // Solo la fila de la entrada; la reserva se lee al consultarla
+            cargador.cargarEntradasSueltas(conn, dataSource, "WHERE e.identrada = ?", id);
+            List<Entrada> entradas = cargador.getEntradas();
+            return entradas.isEmpty() ? null : entradas.get(0);
         }
     }
 
     @Override
     public List<Entrada> buscarTodas() throws Exception {
-        List<Entrada> entradas = new ArrayList<>();
-        String sql = "SELECT * FROM entrada";
-
-        try (Connection conn = connectionJP.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql);
-                ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                int reservaId = rs.getInt("reserva_id");
-                Reserva reserva = reservaDAO.buscarPorId(reservaId);
-
-                if (reserva == null) {
-                    continue; // Saltamos esta entrada si no encontramos la reserva
-                }
+        // Una consulta para las entradas; sus reservas se leen todas juntas
+        // (una sola vez cada una) la primera vez que se consulte alguna
+        try (Connection conn = dataSource.getConnection()) {
+            CargadorReservas cargador = new CargadorReservas();
+            cargador.cargarEntradasSueltas(conn, dataSource, "ORDER BY e.identrada");
+            return cargador.getEntradas();
+        }
+    }
 
-                Entrada entrada = new Entrada(
-                        rs.getInt("identrada"),
-                        reserva,
-                        rs.getDouble("precio"));
+    @Override
+    public List<Entrada> buscarSinVisitantePorReserva(int reservaId) throws Exception {
+        return buscarPorReserva(reservaId, "e.visitante_id IS NULL");
+    }
 
-                if (rs.getBoolean("utilizada")) {
-                    entrada.marcarComoUtilizada();
-                }
+    /**
+     * Obtiene las entradas de una reserva que cumplen una condición, leyendo
+     * de la BD solo esas filas
+     *
+     * @param reservaId ID de la reserva
+     * @param condicion Condición SQL sobre entrada e
+     * @return Entradas que cumplen la condición (vacía si no existe la reserva)
+     * @throws SQLException si hay error en la consulta
+     */
+    private List<Entrada> buscarPorReserva(int reservaId, String condicion) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            CargadorReservas cargador = new CargadorReservas(true);
+            cargador.cargarReservas(conn, "WHERE r.idreserva = ?", reservaId);
+            cargador.cargarEntradas(conn, "WHERE e.reserva_id = ? AND " + condicion + " ORDER BY e.identrada",
+                    reservaId);
+            return cargador.getEntradas();
+        }
+    }
 
-                // Visitante se asignará más tarde si corresponde
+    @Override
+    public Stream<Entrada> streamTodas() throws Exception {
+        // Conexión propia del pool: queda ocupada mientras dure el recorrido
+        return LectorStream.abrir(ConnectionJP.getPool(), SQL_STREAM, new MapeadorEntradas());
+    }
 
-                entradas.add(entrada);
-            }
-            return entradas;
+    @Override
+    public Pagina<Entrada> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        // Solo las entradas de la página; sus reservas se leen al consultarlas
+        try (Connection conn = dataSource.getConnection()) {
+            CargadorReservas cargador = new CargadorReservas();
+            cargador.cargarEntradasSueltas(conn, dataSource, "WHERE " + orden.despuesDe("e.identrada")
+                    + " ORDER BY e.identrada " + orden.getSql() + " LIMIT ?",
+                    orden.inicio(despuesDeId), limite + 1);
+            return Pagina.de(cargador.getEntradas(), limite, Entrada::getId);
         }
     }
 
     @Override
     public List<Entrada> buscarPorReserva(int reservaId) throws Exception {
-        List<Entrada> entradas = new ArrayList<>();
-        String sql = "SELECT * FROM entrada WHERE reserva_id = ?";
+        try (Connection conn = dataSource.getConnection()) {
+            CargadorReservas cargador = new CargadorReservas();
+            cargador.cargarReservas(conn, "WHERE r.idreserva = ?", reservaId);
 
-        try (Connection conn = connectionJP.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, reservaId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                Reserva reserva = reservaDAO.buscarPorId(reservaId);
-
-                if (reserva == null) {
-                    throw new Exception("No se encontró la reserva");
-                }
+            if (cargador.getReservas().isEmpty()) {
+                throw new Exception("No se encontró la reserva");
+            }
 
-                while (rs.next()) {
-                    Entrada entrada = new Entrada(
-                            rs.getInt("identrada"),
-                            reserva,
-                            rs.getDouble("precio"));
+            cargador.cargarEntradas(conn, "WHERE e.reserva_id = ? ORDER BY e.identrada", reservaId);
+            return cargador.getEntradas();
+        }
+    }
 
-                    if (rs.getBoolean("utilizada")) {
-                        entrada.marcarComoUtilizada();
-                    }
+    /**
+     * Convierte las filas de SQL_STREAM en entradas. Solo guarda la reserva de
+     * la fila anterior, de modo que la memoria no crece con el recorrido. Las
+     * reservas llevan solo la cabecera: sus entradas no se añaden a la lista.
+     */
+    private static class MapeadorEntradas implements LectorStream.MapeadorFila<Entrada> {
+
+        private Reserva reservaActual;
+
+        @Override
+        public Entrada mapear(ResultSet rs) throws SQLException {
+            int reservaId = rs.getInt("reserva_id");
+            if (reservaActual == null || reservaActual.getId() != reservaId) {
+                Cliente cliente = new Cliente(
+                        rs.getInt("cliente_id"),
+                        rs.getString("nombre"),
+                        rs.getString("apellido"),
+                        rs.getString("email"),
+                        rs.getString("telefono"));
+                cliente.marcarGuardada();
+                reservaActual = new Reserva(reservaId, cliente,
+                        new Date(rs.getTimestamp("fecha_visita").getTime()));
+                reservaActual.setFechaReserva(new Date(rs.getTimestamp("fecha_reserva").getTime()));
+                reservaActual.setEstado(Reserva.EstadoReserva.valueOf(rs.getString("estado")));
+                reservaActual.marcarGuardada();
+            }
 
-                    // Visitante se asignará más tarde si corresponde
+            Entrada entrada = new Entrada(rs.getInt("identrada"), reservaActual, rs.getDouble("precio"));
+            if (rs.getBoolean("utilizada")) {
+                entrada.marcarComoUtilizada();
+            }
 
-                    entradas.add(entrada);
-                }
-                return entradas;
+            // Sin fila unida (v.idvisitante NULL) la entrada se queda sin visitante
+            int visitanteId = rs.getInt("idvisitante");
+            if (!rs.wasNull()) {
+                Visitante visitante = new Visitante(
+                        visitanteId,
+                        rs.getString("visitante_nombre"),
+                        rs.getString("visitante_apellido"),
+                        rs.getInt("edad"));
+                visitante.marcarGuardada();
+                entrada.asignarVisitante(visitante);
             }
+            entrada.marcarGuardada();
+            return entrada;
         }
     }
-}
\ No newline at end of file
+}
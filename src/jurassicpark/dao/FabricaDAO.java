@@ -0,0 +1,132 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Cliente;
+import jurassicpark.modelo.gestion.Visitante;
+import jurassicpark.util.Configuracion;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Crea los DAOs y generadores de IDs que usan los servicios según la
+ * configuración.
+ *
+ * La clave jp.dao.backend elige dónde se guardan los datos: "mysql" (por
+ * defecto), "memoria", que no necesita base de datos y pierde los datos al
+ * salir (ver AlmacenMemoria), o "diario", que además anota cada guardado en
+ * el fichero jp.diario.fichero y guarda instantáneas en jp.diario.instantanea
+ * (ver Diario). Con MySQL, si la caché de un tipo de entidad está activa (ver
+ * CacheEntidades), su DAO se envuelve en el DAO con caché correspondiente.
+ * Todas las instancias comparten la misma caché por tipo.
+ */
+public class FabricaDAO {
+
+    private static final String BACKEND = Configuracion.getString("jp.dao.backend", "mysql");
+
+    private static final AlmacenMemoria ALMACEN = crearAlmacen();
+
+    // Las cachés guardan las mismas filas inmutables que el AlmacenMemoria
+    private static final CacheEntidades<Cliente> CACHE_CLIENTES = CacheEntidades.desdeConfiguracion(
+            "cliente", 10000, 600000, cliente -> new AlmacenMemoria.FilaCliente(cliente)::crear);
+    private static final CacheEntidades<Visitante> CACHE_VISITANTES = CacheEntidades.desdeConfiguracion(
+            "visitante", 10000, 600000, visitante -> new AlmacenMemoria.FilaVisitante(visitante)::crear);
+
+    private FabricaDAO() {
+    }
+
+    /**
+     * Crea el almacén de los backends que no usan MySQL
+     *
+     * @return Almacén, o null con el backend mysql
+     */
+    private static AlmacenMemoria crearAlmacen() {
+        switch (BACKEND) {
+            case "memoria":
+                return new AlmacenMemoria();
+            case "diario":
+                AlmacenMemoria almacen = new AlmacenMemoria();
+                Path ruta = Paths.get(Configuracion.getString("jp.diario.fichero", "jurassicpark.diario"));
+                Path instantanea = Paths.get(Configuracion.getString("jp.diario.instantanea",
+                        "jurassicpark.instantanea"));
+                try {
+                    Diario diario = Diario.abrir(ruta, instantanea, almacen);
+                    Runtime.getRuntime().addShutdownHook(new Thread(diario::close, "diario-cierre"));
+                } catch (IOException e) {
+                    throw new IllegalStateException("No se pudo abrir el diario " + ruta + ": " + e.getMessage(), e);
+                }
+                return almacen;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Indica si los DAOs trabajan contra MySQL (y por tanto hay conexiones,
+     * transacciones y esquema que migrar)
+     *
+     * @return true con el backend mysql
+     */
+    public static boolean usaBaseDeDatos() {
+        return ALMACEN == null;
+    }
+
+    public static IClienteDAO crearClienteDAO() {
+        if (ALMACEN != null) {
+            return new ClienteDAOMemoria(ALMACEN);
+        }
+        IClienteDAO dao = new ClienteDAOMySQL();
+        return (CACHE_CLIENTES != null) ? new ClienteDAOCache(dao, CACHE_CLIENTES) : dao;
+    }
+
+    public static IVisitanteDAO crearVisitanteDAO() {
+        if (ALMACEN != null) {
+            return new VisitanteDAOMemoria(ALMACEN);
+        }
+        IVisitanteDAO dao = new VisitanteDAOMySQL();
+        return (CACHE_VISITANTES != null) ? new VisitanteDAOCache(dao, CACHE_VISITANTES) : dao;
+    }
+
+    public static IReservaDAO crearReservaDAO() {
+        return (ALMACEN != null) ? new ReservaDAOMemoria(ALMACEN) : new ReservaDAOMySQL();
+    }
+
+    public static IEntradaDAO crearEntradaDAO() {
+        return (ALMACEN != null) ? new EntradaDAOMemoria(ALMACEN) : new EntradaDAOMySQL();
+    }
+
+    /**
+     * Crea el generador de IDs de una secuencia
+     *
+     * @param secuencia    Nombre de la secuencia
+     * @param tabla        Tabla de la entidad
+     * @param columnaId    Columna de la clave primaria de la tabla
+     * @param valorInicial Último ID que se considera usado si la tabla está vacía
+     * @return Generador de IDs
+     */
+    public static IGeneradorIds crearGeneradorIds(String secuencia, String tabla, String columnaId,
+            int valorInicial) {
+        if (ALMACEN != null) {
+            return new GeneradorIdsMemoria(ALMACEN.secuencia(secuencia, tabla, valorInicial));
+        }
+        return new GeneradorIdsMySQL(secuencia, tabla, columnaId, valorInicial);
+    }
+
+    /**
+     * Caché compartida de clientes
+     *
+     * @return Caché de clientes, o null si está desactivada
+     */
+    public static CacheEntidades<Cliente> getCacheClientes() {
+        return CACHE_CLIENTES;
+    }
+
+    /**
+     * Caché compartida de visitantes
+     *
+     * @return Caché de visitantes, o null si está desactivada
+     */
+    public static CacheEntidades<Visitante> getCacheVisitantes() {
+        return CACHE_VISITANTES;
+    }
+}
@@ -0,0 +1,26 @@
+package jurassicpark.dao;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementación de IGeneradorIds para el backend en memoria: reparte IDs de
+ * un contador compartido por todos los generadores de la misma secuencia
+ */
+public class GeneradorIdsMemoria implements IGeneradorIds {
+
+    private final AtomicInteger ultimoId;
+
+    /**
+     * Constructor de la clase GeneradorIdsMemoria
+     *
+     * @param ultimoId Contador con el último ID entregado
+     */
+    public GeneradorIdsMemoria(AtomicInteger ultimoId) {
+        this.ultimoId = ultimoId;
+    }
+
+    @Override
+    public int siguienteId() {
+        return ultimoId.incrementAndGet();
+    }
+}
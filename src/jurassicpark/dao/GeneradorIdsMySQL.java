@@ -0,0 +1,139 @@
+package jurassicpark.dao;
+
+import jurassicpark.connection.ConnectionJP;
+import jurassicpark.util.Configuracion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+/**
+ * Implementación de IGeneradorIds con bloques reservados en la tabla
+ * secuencia de MySQL (algoritmo hi-lo).
+ *
+ * Cada bloque se reserva con un único UPDATE atómico, así que varias
+ * instancias de la aplicación nunca reciben el mismo rango. Los IDs del bloque
+ * se reparten en memoria con un AtomicLong, sin bloqueos ni consultas, y solo
+ * se vuelve a la BD cuando el bloque se agota. El tamaño del bloque se
+ * configura con jp.ids.bloque. La tabla secuencia la crea MigradorEsquema.
+ */
+public class GeneradorIdsMySQL implements IGeneradorIds {
+
+    private static final int TAMANO_BLOQUE = Math.max(1, Configuracion.getInt("jp.ids.bloque", 50));
+
+    private final DataSource dataSource;
+    private final String secuencia;
+    private final String tabla;
+    private final String columnaId;
+    private final int valorInicial;
+
+    private volatile Bloque actual;
+
+    /**
+     * Constructor de la clase GeneradorIdsMySQL
+     * 
+     * @param secuencia    Nombre de la secuencia en la tabla secuencia
+     * @param tabla        Tabla de la entidad (para arrancar la secuencia desde
+     *                     su ID más alto)
+     * @param columnaId    Columna de la clave primaria de la tabla
+     * @param valorInicial Último ID que se considera usado si la tabla está vacía
+     */
+    public GeneradorIdsMySQL(String secuencia, String tabla, String columnaId, int valorInicial) {
+        // Los bloques se reservan fuera de cualquier transacción en curso para no
+        // bloquear la fila de la secuencia hasta que esta termine
+        this.dataSource = ConnectionJP.getPool();
+        this.secuencia = secuencia;
+        this.tabla = tabla;
+        this.columnaId = columnaId;
+        this.valorInicial = valorInicial;
+    }
+
+    @Override
+    public int siguienteId() throws Exception {
+        while (true) {
+            Bloque bloque = actual;
+            if (bloque != null) {
+                long id = bloque.siguiente.getAndIncrement();
+                if (id <= bloque.ultimo) {
+                    return (int) id;
+                }
+            }
+
+            // Bloque agotado: solo un hilo reserva el siguiente
+            synchronized (this) {
+                if (actual == bloque) {
+                    actual = reservarBloque();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserva en la BD un nuevo rango de IDs para esta secuencia
+     * 
+     * @return Bloque reservado
+     * @throws SQLException si hay error al reservar el bloque
+     */
+    private Bloque reservarBloque() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            long ultimo = avanzar(conn);
+            if (ultimo < 0) {
+                // Primera vez: la secuencia arranca desde el ID más alto de la tabla
+                String inicializarSql = "INSERT IGNORE INTO secuencia (nombre, ultimo_id) "
+                        + "SELECT ?, GREATEST(COALESCE(MAX(" + columnaId + "), 0), ?) FROM " + tabla;
+                try (PreparedStatement stmt = conn.prepareStatement(inicializarSql)) {
+                    stmt.setString(1, secuencia);
+                    stmt.setInt(2, valorInicial);
+                    stmt.executeUpdate();
+                }
+                ultimo = avanzar(conn);
+            }
+
+            if (ultimo < 0) {
+                throw new SQLException("No se pudo inicializar la secuencia " + secuencia);
+            }
+            return new Bloque(ultimo - TAMANO_BLOQUE + 1, ultimo);
+        }
+    }
+
+    /**
+     * Avanza la secuencia un bloque completo con un UPDATE atómico
+     * 
+     * @param conn Conexión a la base de datos
+     * @return Último ID del bloque reservado, o -1 si la secuencia no existe
+     * @throws SQLException si hay error en la actualización
+     */
+    private long avanzar(Connection conn) throws SQLException {
+        // LAST_INSERT_ID(expr) guarda el nuevo valor para esta conexión
+        String avanzarSql = "UPDATE secuencia SET ultimo_id = LAST_INSERT_ID(ultimo_id + ?) WHERE nombre = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(avanzarSql)) {
+            stmt.setInt(1, TAMANO_BLOQUE);
+            stmt.setString(2, secuencia);
+            if (stmt.executeUpdate() == 0) {
+                return -1;
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT LAST_INSERT_ID()");
+                ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Rango de IDs reservado [siguiente, ultimo]
+     */
+    private static class Bloque {
+        private final AtomicLong siguiente;
+        private final long ultimo;
+
+        Bloque(long primero, long ultimo) {
+            this.siguiente = new AtomicLong(primero);
+            this.ultimo = ultimo;
+        }
+    }
+}
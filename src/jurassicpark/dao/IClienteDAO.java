@@ -1,7 +1,9 @@
 package jurassicpark.dao;
 
 import jurassicpark.modelo.gestion.Cliente;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interfaz para el acceso a datos de Cliente
@@ -16,6 +18,14 @@ public interface IClienteDAO {
      */
     Cliente guardar(Cliente cliente) throws Exception;
 
+    /**
+     * Guarda varios clientes en una sola operación
+     * 
+     * @param clientes Clientes a guardar
+     * @return Elementos guardados y los que fallaron con su error
+     */
+    ResultadoLote<Cliente> guardarTodos(Collection<Cliente> clientes) throws Exception;
+
     /**
      * Busca un cliente por su ID
      * 
@@ -30,4 +40,24 @@ public interface IClienteDAO {
      * @return Lista de clientes
      */
     List<Cliente> buscarTodos() throws Exception;
+
+    /**
+     * Recorre todos los clientes sin cargarlos a la vez en memoria. Usa una
+     * conexión propia (fuera de la transacción actual) que se libera al
+     * cerrar el Stream, por lo que debe cerrarse siempre.
+     * 
+     * @return Stream de clientes ordenados por ID
+     */
+    Stream<Cliente> streamTodos() throws Exception;
+
+    /**
+     * Obtiene una página de clientes ordenados por ID
+     * 
+     * @param despuesDeId ID del último elemento de la página anterior (0 para
+     *                    la primera página)
+     * @param limite      Número máximo de elementos de la página
+     * @param orden       Sentido del recorrido
+     * @return Página de clientes
+     */
+    Pagina<Cliente> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception;
 }
\ No newline at end of file
@@ -2,13 +2,23 @@ package jurassicpark.dao;
 
 import jurassicpark.modelo.gestion.Entrada;
 import jurassicpark.modelo.gestion.Reserva;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interfaz para el acceso a datos de Entrada
  */
 public interface IEntradaDAO {
 
+    /**
+     * Recibe el estado de cada entrada recorrida, sin crear objetos Entrada
+     */
+    interface ConsumidorEstado {
+        void aceptar(int entradaId, boolean utilizada);
+    }
+
     /**
      * Guarda una entrada en la base de datos
      * 
@@ -17,6 +27,55 @@ public interface IEntradaDAO {
      */
     Entrada guardar(Entrada entrada) throws Exception;
 
+    /**
+     * Guarda varias entradas en una sola operación
+     * 
+     * @param entradas Entradas a guardar
+     * @return Elementos guardados y los que fallaron con su error
+     */
+    ResultadoLote<Entrada> guardarTodas(Collection<Entrada> entradas) throws Exception;
+
+    /**
+     * Marca una entrada como utilizada si aún no lo está, con una sola
+     * sentencia condicional: si dos tornos leen a la vez la misma entrada solo
+     * uno de ellos la marca
+     * 
+     * @param id ID de la entrada
+     * @return true si la ha marcado esta llamada, false si ya estaba utilizada
+     *         o no existe
+     */
+    boolean marcarComoUtilizada(int id) throws Exception;
+
+    /**
+     * Marca como utilizadas todas las entradas aún sin utilizar de una
+     * reserva (entrada de un grupo), con una sola sentencia
+     * 
+     * @param reservaId ID de la reserva
+     * @return Número de entradas marcadas por esta llamada
+     */
+    int marcarComoUtilizadasPorReserva(int reservaId) throws Exception;
+
+    /**
+     * Marca como utilizadas varias entradas sueltas en un solo viaje a la BD,
+     * cada una con la misma sentencia condicional que marcarComoUtilizada.
+     * Si falla no queda marcada ninguna.
+     * 
+     * @param ids IDs de las entradas
+     * @return IDs de las entradas marcadas por esta llamada (las demás ya
+     *         estaban utilizadas o no existen)
+     */
+    List<Integer> marcarComoUtilizadas(Collection<Integer> ids) throws Exception;
+
+    /**
+     * Recorre el estado de las entradas de las reservas no canceladas con
+     * visita en el intervalo indicado, sin materializarlas
+     * 
+     * @param desde      Inicio del intervalo (incluido)
+     * @param hasta      Fin del intervalo (excluido)
+     * @param consumidor Recibe el ID y si está utilizada cada entrada
+     */
+    void recorrerEstadosPorFechaVisita(Date desde, Date hasta, ConsumidorEstado consumidor) throws Exception;
+
     /**
      * Busca una entrada por su ID
      * 
@@ -25,6 +84,15 @@ public interface IEntradaDAO {
      */
     Entrada buscarPorId(int id) throws Exception;
 
+    /**
+     * Busca una entrada por su ID leyendo a la vez las asociaciones del plan
+     * 
+     * @param id   ID de la entrada
+     * @param plan Asociaciones que se leen junto a ella
+     * @return Entrada encontrada o null
+     */
+    Entrada buscarPorId(int id, PlanCarga plan) throws Exception;
+
     /**
      * Obtiene todas las entradas
      * 
@@ -32,6 +100,26 @@ public interface IEntradaDAO {
      */
     List<Entrada> buscarTodas() throws Exception;
 
+    /**
+     * Recorre todas las entradas sin cargarlas a la vez en memoria. Usa una
+     * conexión propia (fuera de la transacción actual) que se libera al
+     * cerrar el Stream, por lo que debe cerrarse siempre.
+     * 
+     * @return Stream de entradas agrupadas por reserva
+     */
+    Stream<Entrada> streamTodas() throws Exception;
+
+    /**
+     * Obtiene una página de entradas ordenadas por ID
+     * 
+     * @param despuesDeId ID del último elemento de la página anterior (0 para
+     *                    la primera página)
+     * @param limite      Número máximo de elementos de la página
+     * @param orden       Sentido del recorrido
+     * @return Página de entradas
+     */
+    Pagina<Entrada> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception;
+
     /**
      * Obtiene todas las entradas de una reserva
      * 
@@ -39,4 +127,12 @@ public interface IEntradaDAO {
      * @return Lista de entradas de la reserva
      */
     List<Entrada> buscarPorReserva(int reservaId) throws Exception;
+
+    /**
+     * Obtiene las entradas de una reserva que no tienen visitante asignado
+     * 
+     * @param reservaId ID de la reserva
+     * @return Lista de entradas sin visitante
+     */
+    List<Entrada> buscarSinVisitantePorReserva(int reservaId) throws Exception;
 }
\ No newline at end of file
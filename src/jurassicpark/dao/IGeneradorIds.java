@@ -0,0 +1,14 @@
+package jurassicpark.dao;
+
+/**
+ * Interfaz para la generación de IDs de nuevas entidades
+ */
+public interface IGeneradorIds {
+
+    /**
+     * Obtiene un ID que no se ha entregado antes
+     * 
+     * @return Siguiente ID libre
+     */
+    int siguienteId() throws Exception;
+}
@@ -1,6 +1,8 @@
 package jurassicpark.dao;
 
 import jurassicpark.modelo.gestion.Reserva;
+import jurassicpark.modelo.gestion.ReservaResumen;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -16,6 +18,14 @@ public interface IReservaDAO {
      */
     Reserva guardar(Reserva reserva) throws Exception;
 
+    /**
+     * Guarda varias reservas en una sola operación
+     * 
+     * @param reservas Reservas a guardar
+     * @return Elementos guardados y los que fallaron con su error
+     */
+    ResultadoLote<Reserva> guardarTodas(Collection<Reserva> reservas) throws Exception;
+
     /**
      * Busca una reserva por su ID
      * 
@@ -24,6 +34,15 @@ public interface IReservaDAO {
      */
     Reserva buscarPorId(int id) throws Exception;
 
+    /**
+     * Busca una reserva por su ID leyendo a la vez las asociaciones del plan
+     * 
+     * @param id   ID de la reserva
+     * @param plan Asociaciones que se leen junto a ella
+     * @return Reserva encontrada o null
+     */
+    Reserva buscarPorId(int id, PlanCarga plan) throws Exception;
+
     /**
      * Obtiene todas las reservas
      * 
@@ -31,6 +50,50 @@ public interface IReservaDAO {
      */
     List<Reserva> buscarTodas() throws Exception;
 
+    /**
+     * Obtiene una página de reservas ordenadas por ID
+     * 
+     * @param despuesDeId ID del último elemento de la página anterior (0 para
+     *                    la primera página)
+     * @param limite      Número máximo de elementos de la página
+     * @param orden       Sentido del recorrido
+     * @return Página de reservas
+     */
+    Pagina<Reserva> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception;
+
+    /**
+     * Obtiene el resumen de todas las reservas (cliente y recuento de
+     * entradas) sin cargar las reservas completas
+     * 
+     * @return Lista de resúmenes ordenados por ID de reserva
+     */
+    List<ReservaResumen> buscarResumenes() throws Exception;
+
+    /**
+     * Obtiene el resumen de las reservas que tienen entradas y ninguna de
+     * ellas tiene visitante asignado
+     * 
+     * @return Lista de resúmenes ordenados por ID de reserva
+     */
+    List<ReservaResumen> buscarResumenesSinVisitantes() throws Exception;
+
+    /**
+     * Obtiene el resumen de las reservas con alguna entrada sin utilizar
+     * 
+     * @return Lista de resúmenes ordenados por ID de reserva
+     */
+    List<ReservaResumen> buscarResumenesConEntradasSinUtilizar() throws Exception;
+
+    /**
+     * Obtiene una página de resúmenes de reservas ordenados por ID
+     * 
+     * @param despuesDeId ID de la última reserva de la página anterior (0 para
+     *                    la primera página)
+     * @param limite      Número máximo de resúmenes de la página
+     * @return Página de resúmenes
+     */
+    Pagina<ReservaResumen> buscarPaginaResumenes(int despuesDeId, int limite) throws Exception;
+
     /**
      * Obtiene todas las reservas de un cliente
      * 
@@ -1,7 +1,9 @@
 package jurassicpark.dao;
 
 import jurassicpark.modelo.gestion.Visitante;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interfaz para el acceso a datos de Visitante
@@ -16,6 +18,14 @@ public interface IVisitanteDAO {
      */
     Visitante guardar(Visitante visitante) throws Exception;
 
+    /**
+     * Guarda varios visitantes en una sola operación
+     * 
+     * @param visitantes Visitantes a guardar
+     * @return Elementos guardados y los que fallaron con su error
+     */
+    ResultadoLote<Visitante> guardarTodos(Collection<Visitante> visitantes) throws Exception;
+
     /**
      * Busca un visitante por su ID
      * 
@@ -30,4 +40,24 @@ public interface IVisitanteDAO {
      * @return Lista de visitantes
      */
     List<Visitante> buscarTodos() throws Exception;
+
+    /**
+     * Recorre todos los visitantes sin cargarlos a la vez en memoria. Usa una
+     * conexión propia (fuera de la transacción actual) que se libera al
+     * cerrar el Stream, por lo que debe cerrarse siempre.
+     * 
+     * @return Stream de visitantes ordenados por ID
+     */
+    Stream<Visitante> streamTodos() throws Exception;
+
+    /**
+     * Obtiene una página de visitantes ordenados por ID
+     * 
+     * @param despuesDeId ID del último elemento de la página anterior (0 para
+     *                    la primera página)
+     * @param limite      Número máximo de elementos de la página
+     * @param orden       Sentido del recorrido
+     * @return Página de visitantes
+     */
+    Pagina<Visitante> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception;
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package jurassicpark.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.zip.CRC32C;
+
+/**
+ * Instantánea binaria de todas las filas del AlmacenMemoria.
+ *
+ * El Diario la escribe cada vez que empieza una nueva generación del fichero
+ * de registros, de modo que al arrancar basta con cargar la instantánea y
+ * reproducir los pocos registros anotados después: el tiempo de arranque
+ * depende del tamaño de los datos y no de cuánto tiempo lleve el parque
+ * abierto. Formato (ver CodecFilas para el de cada fila):
+ *
+ * <pre>
+ * cabecera: MAGIA (int) VERSION (int) generación del diario (long)
+ *           clientes, visitantes, reservas, entradas (4 int) crc32c del cuerpo (int)
+ * cuerpo:   las filas de cada tabla seguidas, en ese orden
+ * </pre>
+ *
+ * Se escribe en un fichero temporal que sustituye al anterior con un rename
+ * atómico, así que siempre hay una instantánea completa. Se lee proyectando
+ * el fichero en memoria, sin copiarlo antes a ningún búfer.
+ */
+final class Instantanea {
+
+    private static final int MAGIA = 0x4A505331; // "JPS1"
+    private static final int VERSION = 1;
+    private static final int CABECERA = 36;
+
+    private Instantanea() {
+    }
+
+    /**
+     * Escribe la instantánea de todo el almacén. Nadie debe modificarlo
+     * mientras tanto.
+     *
+     * @param ruta       Fichero de la instantánea
+     * @param almacen    Almacén a volcar
+     * @param generacion Generación del diario que empieza tras la instantánea
+     * @return Tamaño del fichero escrito
+     * @throws IOException si hay error al escribir
+     */
+    static long escribir(Path ruta, AlmacenMemoria almacen, long generacion) throws IOException {
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        long tamano;
+
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            canal.position(CABECERA);
+            ByteBuffer bloque = ByteBuffer.allocate(64 * 1024);
+            volcar(canal, bloque, crc, almacen.getClientes().values());
+            volcar(canal, bloque, crc, almacen.getVisitantes().values());
+            volcar(canal, bloque, crc, almacen.getReservas().values());
+            volcar(canal, bloque, crc, almacen.getEntradas().values());
+            escribirBloque(canal, bloque, crc);
+            tamano = canal.position();
+
+            // La cabecera, con los recuentos y el CRC, al final
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+            cabecera.putInt(MAGIA).putInt(VERSION).putLong(generacion)
+                    .putInt(almacen.getClientes().size())
+                    .putInt(almacen.getVisitantes().size())
+                    .putInt(almacen.getReservas().size())
+                    .putInt(almacen.getEntradas().size())
+                    .putInt((int) crc.getValue());
+            cabecera.flip();
+            while (cabecera.hasRemaining()) {
+                canal.write(cabecera, CABECERA - cabecera.remaining());
+            }
+            canal.force(true);
+        }
+
+        Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return tamano;
+    }
+
+    /**
+     * Carga la instantánea en un almacén vacío
+     *
+     * @param ruta    Fichero de la instantánea
+     * @param almacen Almacén donde se cargan las filas
+     * @return Generación del diario que sigue a la instantánea, o -1 si no hay
+     *         instantánea
+     * @throws IOException si el fichero no se puede leer o está dañado
+     */
+    static long cargar(Path ruta, AlmacenMemoria almacen) throws IOException {
+        if (!Files.exists(ruta)) {
+            return -1;
+        }
+
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            if (canal.size() < CABECERA) {
+                throw new IOException("La instantánea " + ruta + " está incompleta");
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+
+            if (mapa.getInt() != MAGIA) {
+                throw new IOException(ruta + " no es una instantánea de Jurassic Park");
+            }
+            int version = mapa.getInt();
+            if (version != VERSION) {
+                throw new IOException("Versión de instantánea no soportada: " + version);
+            }
+            long generacion = mapa.getLong();
+            int[] filas = { mapa.getInt(), mapa.getInt(), mapa.getInt(), mapa.getInt() };
+            int crcEsperado = mapa.getInt();
+
+            CRC32C crc = new CRC32C();
+            crc.update(mapa.duplicate());
+            if ((int) crc.getValue() != crcEsperado) {
+                throw new IOException("La instantánea " + ruta + " está dañada (CRC incorrecto)");
+            }
+
+            byte[] tipos = { CodecFilas.CLIENTE, CodecFilas.VISITANTE, CodecFilas.RESERVA, CodecFilas.ENTRADA };
+            for (int t = 0; t < tipos.length; t++) {
+                for (int i = 0; i < filas[t]; i++) {
+                    CodecFilas.restaurar(tipos[t], mapa, almacen);
+                }
+            }
+            return generacion;
+        }
+    }
+
+    private static void volcar(FileChannel canal, ByteBuffer bloque, CRC32C crc, Collection<?> filas)
+            throws IOException {
+        for (Object fila : filas) {
+            byte[] datos = CodecFilas.codificar(fila);
+            if (bloque.remaining() < datos.length) {
+                escribirBloque(canal, bloque, crc);
+            }
+            if (bloque.remaining() < datos.length) {
+                // Fila mayor que el bloque: se escribe aparte
+                bloque.put(datos, 0, bloque.remaining());
+                escribirBloque(canal, bloque, crc);
+                ByteBuffer resto = ByteBuffer.wrap(datos, bloque.capacity(), datos.length - bloque.capacity());
+                crc.update(resto.duplicate());
+                while (resto.hasRemaining()) {
+                    canal.write(resto);
+                }
+            } else {
+                bloque.put(datos);
+            }
+        }
+    }
+
+    private static void escribirBloque(FileChannel canal, ByteBuffer bloque, CRC32C crc) throws IOException {
+        bloque.flip();
+        crc.update(bloque.duplicate());
+        while (bloque.hasRemaining()) {
+            canal.write(bloque);
+        }
+        bloque.clear();
+    }
+}
@@ -0,0 +1,100 @@
+package jurassicpark.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
+
+/**
+ * Recorre el resultado de una consulta como un Stream sin cargarlo entero en
+ * memoria.
+ *
+ * La consulta se ejecuta en modo streaming de MySQL (fetchSize =
+ * Integer.MIN_VALUE): el servidor envía las filas según se leen y cada fila se
+ * convierte en objeto solo cuando el Stream la pide. La conexión queda ocupada
+ * hasta que se cierra el Stream, así que debe usarse siempre con
+ * try-with-resources.
+ */
+class LectorStream {
+
+    /**
+     * Convierte la fila actual de un ResultSet en un objeto
+     *
+     * @param <T> Tipo del objeto
+     */
+    @FunctionalInterface
+    interface MapeadorFila<T> {
+        T mapear(ResultSet rs) throws SQLException;
+    }
+
+    private LectorStream() {
+    }
+
+    /**
+     * Ejecuta la consulta y devuelve sus filas como Stream
+     *
+     * @param dataSource Origen de la conexión (se devuelve al cerrar el Stream)
+     * @param sql        Consulta sin parámetros
+     * @param mapeador   Conversión de cada fila
+     * @return Stream de objetos que hay que cerrar al terminar
+     * @throws SQLException si la consulta no se puede ejecutar
+     */
+    static <T> Stream<T> abrir(DataSource dataSource, String sql, MapeadorFila<T> mapeador) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        PreparedStatement stmt = null;
+        ResultSet rs;
+        try {
+            // Con estos tres argumentos la sentencia no pasa por la caché del pool
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            rs = stmt.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            cerrar(null, stmt, conn);
+            throw e;
+        }
+
+        PreparedStatement sentencia = stmt;
+        Spliterator<T> filas = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> accion) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    accion.accept(mapeador.mapear(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error al leer la consulta: " + e.getMessage(), e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(filas, false).onClose(() -> cerrar(rs, sentencia, conn));
+    }
+
+    private static void cerrar(ResultSet rs, PreparedStatement stmt, Connection conn) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        } catch (SQLException e) {
+            /* ignorar */ }
+        try {
+            if (stmt != null) {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            /* ignorar */ }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            /* ignorar */ }
+    }
+}
@@ -0,0 +1,96 @@
+package jurassicpark.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mapa de identidad (caché de primer nivel) de la operación en curso.
+ *
+ * Mientras hay un ámbito abierto en el hilo actual, los DAOs registran aquí
+ * cada entidad que cargan o guardan y la consultan antes de ir a la BD, de
+ * modo que cada fila se materializa una sola vez por operación y todas las
+ * búsquedas devuelven la misma instancia. Los ámbitos se pueden anidar: el
+ * mapa se descarta al cerrar el más exterior.
+ */
+public class MapaIdentidad {
+
+    private static final ThreadLocal<MapaIdentidad> ACTUAL = new ThreadLocal<>();
+
+    private final Map<Class<?>, Map<Integer, Object>> entidades = new HashMap<>();
+    private int aperturas;
+
+    private MapaIdentidad() {
+    }
+
+    /**
+     * Abre un ámbito en el hilo actual (o se une al que ya esté abierto)
+     */
+    public static void abrir() {
+        MapaIdentidad mapa = ACTUAL.get();
+        if (mapa == null) {
+            mapa = new MapaIdentidad();
+            ACTUAL.set(mapa);
+        }
+        mapa.aperturas++;
+    }
+
+    /**
+     * Cierra el ámbito abierto con abrir(). Al cerrar el más exterior se
+     * descartan todas las entidades registradas.
+     */
+    public static void cerrar() {
+        MapaIdentidad mapa = ACTUAL.get();
+        if (mapa != null && --mapa.aperturas == 0) {
+            ACTUAL.remove();
+        }
+    }
+
+    /**
+     * Busca una entidad en el mapa del ámbito actual
+     * 
+     * @param tipo Clase de la entidad
+     * @param id   ID de la entidad
+     * @return Entidad registrada, o null si no hay ámbito o no está
+     */
+    static <T> T buscar(Class<T> tipo, int id) {
+        MapaIdentidad mapa = ACTUAL.get();
+        if (mapa == null) {
+            return null;
+        }
+        Map<Integer, Object> porId = mapa.entidades.get(tipo);
+        return (porId != null) ? tipo.cast(porId.get(id)) : null;
+    }
+
+    /**
+     * Registra una entidad en el mapa del ámbito actual (si lo hay). Si ya
+     * había otra instancia con el mismo ID se conserva la primera.
+     * 
+     * @param tipo    Clase de la entidad
+     * @param id      ID de la entidad
+     * @param entidad Entidad a registrar
+     * @return Instancia que queda registrada para ese ID
+     */
+    static <T> T registrar(Class<T> tipo, int id, T entidad) {
+        MapaIdentidad mapa = ACTUAL.get();
+        if (mapa == null) {
+            return entidad;
+        }
+        Map<Integer, Object> porId = mapa.entidades.computeIfAbsent(tipo, t -> new HashMap<>());
+        return tipo.cast(porId.computeIfAbsent(id, k -> entidad));
+    }
+
+    /**
+     * Registra una entidad recién guardada, sustituyendo la que hubiera con
+     * el mismo ID
+     * 
+     * @param tipo    Clase de la entidad
+     * @param id      ID de la entidad
+     * @param entidad Entidad guardada
+     */
+    static <T> void actualizar(Class<T> tipo, int id, T entidad) {
+        MapaIdentidad mapa = ACTUAL.get();
+        if (mapa != null) {
+            mapa.entidades.computeIfAbsent(tipo, t -> new HashMap<>()).put(id, entidad);
+        }
+    }
+}
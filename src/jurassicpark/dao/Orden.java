@@ -0,0 +1,50 @@
+package jurassicpark.dao;
+
+/**
+ * Sentido en el que se recorren los resultados paginados, siempre por ID
+ */
+public enum Orden {
+    ASCENDENTE("ASC", ">"),
+    DESCENDENTE("DESC", "<");
+
+    private final String sql;
+    private final String operador;
+
+    Orden(String sql, String operador) {
+        this.sql = sql;
+        this.operador = operador;
+    }
+
+    /**
+     * Palabra clave de ORDER BY
+     *
+     * @return ASC o DESC
+     */
+    String getSql() {
+        return sql;
+    }
+
+    /**
+     * Condición para quedarse con los IDs posteriores al último de la página
+     * anterior
+     *
+     * @param columna Columna del ID
+     * @return Condición SQL con un parámetro
+     */
+    String despuesDe(String columna) {
+        return columna + " " + operador + " ?";
+    }
+
+    /**
+     * Valor de despuesDeId que corresponde a la primera página
+     *
+     * @param despuesDeId Valor recibido (0 o menos para la primera página)
+     * @return Valor a usar en la consulta
+     */
+    int inicio(int despuesDeId) {
+        if (despuesDeId > 0) {
+            return despuesDeId;
+        }
+        return (this == ASCENDENTE) ? 0 : Integer.MAX_VALUE;
+    }
+}
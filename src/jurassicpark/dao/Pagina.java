@@ -0,0 +1,67 @@
+package jurassicpark.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Página de resultados de una consulta paginada por ID.
+ *
+ * Para pedir la página siguiente se pasa getUltimoId() como despuesDeId, de
+ * modo que la base de datos salta directamente a esa posición del índice en
+ * lugar de recorrer y descartar las filas anteriores.
+ *
+ * @param <T> Tipo de los elementos
+ */
+public class Pagina<T> {
+
+    private final List<T> elementos;
+    private final boolean hayMas;
+    private final int ultimoId;
+
+    /**
+     * Constructor de la clase Pagina
+     *
+     * @param elementos Elementos de la página
+     * @param hayMas    Si existen más elementos después de esta página
+     * @param ultimoId  ID del último elemento (0 si la página está vacía)
+     */
+    public Pagina(List<T> elementos, boolean hayMas, int ultimoId) {
+        this.elementos = Collections.unmodifiableList(elementos);
+        this.hayMas = hayMas;
+        this.ultimoId = ultimoId;
+    }
+
+    /**
+     * Crea una página a partir de hasta limite + 1 filas leídas: si sobra una,
+     * se descarta y se sabe que hay más
+     *
+     * @param filas  Filas leídas, ya ordenadas
+     * @param limite Tamaño de la página
+     * @param id     Función que obtiene el ID de un elemento
+     * @return Página con como mucho limite elementos
+     */
+    static <T> Pagina<T> de(List<T> filas, int limite, ToIntFunction<T> id) {
+        boolean hayMas = filas.size() > limite;
+        List<T> elementos = hayMas ? new ArrayList<>(filas.subList(0, limite)) : filas;
+        int ultimoId = elementos.isEmpty() ? 0 : id.applyAsInt(elementos.get(elementos.size() - 1));
+        return new Pagina<>(elementos, hayMas, ultimoId);
+    }
+
+    public List<T> getElementos() {
+        return elementos;
+    }
+
+    public boolean hayMas() {
+        return hayMas;
+    }
+
+    public int getUltimoId() {
+        return ultimoId;
+    }
+
+    public boolean estaVacia() {
+        return elementos.isEmpty();
+    }
+}
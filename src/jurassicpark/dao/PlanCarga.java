@@ -0,0 +1,51 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Entrada;
+import jurassicpark.modelo.gestion.Reserva;
+
+/**
+ * Asociaciones que se leen junto a una reserva o una entrada. Lo que el plan
+ * no incluye queda perezoso: se lee la primera vez que se consulte.
+ */
+public enum PlanCarga {
+    /** Solo la reserva con su cliente, o solo la fila de la entrada */
+    SOLO_CABECERA(false, false),
+    /** Además, todas las entradas de la reserva */
+    CON_ENTRADAS(true, false),
+    /** Además, el visitante de cada entrada */
+    CON_ENTRADAS_Y_VISITANTES(true, true);
+
+    private final boolean entradas;
+    private final boolean visitantes;
+
+    PlanCarga(boolean entradas, boolean visitantes) {
+        this.entradas = entradas;
+        this.visitantes = visitantes;
+    }
+
+    boolean incluyeEntradas() {
+        return entradas;
+    }
+
+    boolean incluyeVisitantes() {
+        return visitantes;
+    }
+
+    /**
+     * Completa según el plan una reserva que ya estaba cargada (por ejemplo,
+     * en el MapaIdentidad) con otro plan
+     *
+     * @param reserva Reserva a completar
+     */
+    void completar(Reserva reserva) {
+        if (entradas) {
+            reserva.getEntradas().size();
+        }
+        if (visitantes) {
+            // Las cargas perezosas leen de una vez los de todas las entradas
+            for (Entrada entrada : reserva.getEntradas()) {
+                entrada.getVisitante();
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Reserva;
+import jurassicpark.modelo.gestion.ReservaResumen;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Implementación de IReservaDAO sobre el AlmacenMemoria
+ */
+public class ReservaDAOMemoria implements IReservaDAO {
+
+    private final AlmacenMemoria almacen;
+
+    /**
+     * Constructor de la clase ReservaDAOMemoria
+     *
+     * @param almacen Almacén con las tablas en memoria
+     */
+    public ReservaDAOMemoria(AlmacenMemoria almacen) {
+        this.almacen = almacen;
+    }
+
+    @Override
+    public Reserva guardar(Reserva reserva) throws Exception {
+        // Sin cambios desde que se leyó o guardó: no hay nada que anotar
+        if (!reserva.necesitaGuardarse()) {
+            return reserva;
+        }
+        almacen.guardarReserva(reserva);
+        reserva.marcarGuardada();
+        MapaIdentidad.actualizar(Reserva.class, reserva.getId(), reserva);
+        return reserva;
+    }
+
+    @Override
+    public ResultadoLote<Reserva> guardarTodas(Collection<Reserva> reservas) throws Exception {
+        ResultadoLote<Reserva> resultado = new ResultadoLote<>();
+        int indice = 0;
+        for (Reserva reserva : reservas) {
+            try {
+                guardar(reserva);
+                resultado.agregarGuardado(reserva);
+            } catch (RuntimeException e) {
+                resultado.agregarFallo(indice, reserva, e);
+            }
+            indice++;
+        }
+        return resultado;
+    }
+
+    @Override
+    public Reserva buscarPorId(int id) throws Exception {
+        return buscarPorId(id, PlanCarga.SOLO_CABECERA);
+    }
+
+    @Override
+    public Reserva buscarPorId(int id, PlanCarga plan) throws Exception {
+        return almacen.reserva(id, plan);
+    }
+
+    @Override
+    public List<Reserva> buscarTodas() throws Exception {
+        return materializar(almacen.getReservas().keySet());
+    }
+
+    @Override
+    public Pagina<Reserva> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (AlmacenMemoria.FilaReserva fila : AlmacenMemoria.filasDespuesDe(almacen.getReservas(), despuesDeId,
+                limite + 1, orden)) {
+            ids.add(fila.id);
+        }
+        return Pagina.de(materializar(ids), limite, Reserva::getId);
+    }
+
+    @Override
+    public List<ReservaResumen> buscarResumenes() throws Exception {
+        return resumenes(almacen.getReservas().values(), resumen -> true);
+    }
+
+    @Override
+    public List<ReservaResumen> buscarResumenesSinVisitantes() throws Exception {
+        return resumenes(almacen.getReservas().values(), ReservaResumen::todasSinVisitante);
+    }
+
+    @Override
+    public List<ReservaResumen> buscarResumenesConEntradasSinUtilizar() throws Exception {
+        return resumenes(almacen.getReservas().values(), resumen -> resumen.getEntradasSinUtilizar() > 0);
+    }
+
+    @Override
+    public Pagina<ReservaResumen> buscarPaginaResumenes(int despuesDeId, int limite) throws Exception {
+        List<AlmacenMemoria.FilaReserva> filas = AlmacenMemoria.filasDespuesDe(almacen.getReservas(),
+                Math.max(despuesDeId, 0), limite + 1, Orden.ASCENDENTE);
+        return Pagina.de(resumenes(filas, resumen -> true), limite, ReservaResumen::getId);
+    }
+
+    @Override
+    public List<Reserva> buscarPorCliente(int clienteId) throws Exception {
+        return materializar(almacen.idsReservasDeCliente(clienteId));
+    }
+
+    private List<Reserva> materializar(Collection<Integer> ids) {
+        List<Reserva> reservas = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            reservas.add(almacen.reserva(id, PlanCarga.SOLO_CABECERA));
+        }
+        return reservas;
+    }
+
+    /**
+     * Calcula el resumen de cada reserva recorriendo solo el índice de sus
+     * entradas, sin materializar ninguna entidad
+     *
+     * @param filas  Reservas a resumir, ya ordenadas
+     * @param filtro Resúmenes que se conservan
+     * @return Resúmenes en el orden de las filas
+     */
+    private List<ReservaResumen> resumenes(Collection<AlmacenMemoria.FilaReserva> filas,
+            Predicate<ReservaResumen> filtro) {
+        List<ReservaResumen> resumenes = new ArrayList<>();
+        for (AlmacenMemoria.FilaReserva fila : filas) {
+            int total = 0;
+            int sinVisitante = 0;
+            int sinUtilizar = 0;
+            for (int id : almacen.idsEntradas(fila.id)) {
+                AlmacenMemoria.FilaEntrada entrada = almacen.getEntradas().get(id);
+                total++;
+                if (entrada.visitanteId == 0) {
+                    sinVisitante++;
+                }
+                if (!entrada.utilizada) {
+                    sinUtilizar++;
+                }
+            }
+
+            AlmacenMemoria.FilaCliente cliente = almacen.getClientes().get(fila.clienteId);
+            ReservaResumen resumen = new ReservaResumen(fila.id, cliente.nombre + " " + cliente.apellido,
+                    new Date(fila.fechaVisita), total, sinVisitante, sinUtilizar);
+            if (filtro.test(resumen)) {
+                resumenes.add(resumen);
+            }
+        }
+        return resumenes;
+    }
+}
@@ -1,16 +1,17 @@
 package jurassicpark.dao;
 
 import jurassicpark.connection.ConnectionJP;
-import jurassicpark.modelo.gestion.Cliente;
 import jurassicpark.modelo.gestion.Reserva;
-import jurassicpark.modelo.gestion.Entrada;
+import jurassicpark.modelo.gestion.ReservaResumen;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import javax.sql.DataSource;
 import java.sql.SQLException;
 
 /**
@@ -18,271 +19,211 @@ import java.sql.SQLException;
  */
 public class ReservaDAOMySQL implements IReservaDAO {
 
-    private ConnectionJP connectionJP;
-    private IClienteDAO clienteDAO;
+    // Si la reserva ya existe se actualizan la fecha de visita y el estado,
+    // que son los datos que pueden cambiar
+    private static final String SQL_GUARDAR = "INSERT INTO reserva "
+            + "(idreserva, cliente_id, fecha_reserva, fecha_visita, estado) "
+            + "VALUES (?, ?, ?, ?, ?) AS nueva "
+            + "ON DUPLICATE KEY UPDATE fecha_visita = nueva.fecha_visita, estado = nueva.estado";
+
+    // Resumen de cada reserva en una sola consulta: el LEFT JOIN con entrada
+    // conserva las reservas sin entradas (COUNT de identrada da 0)
+    private static final String SQL_RESUMEN = "SELECT r.idreserva, r.fecha_visita, c.nombre, c.apellido, "
+            + "COUNT(e.identrada) AS total, "
+            + "SUM(CASE WHEN e.identrada IS NOT NULL AND e.visitante_id IS NULL THEN 1 ELSE 0 END) AS sin_visitante, "
+            + "SUM(CASE WHEN e.identrada IS NOT NULL AND e.utilizada = 0 THEN 1 ELSE 0 END) AS sin_utilizar "
+            + "FROM reserva r JOIN cliente c ON c.idcliente = r.cliente_id "
+            + "LEFT JOIN entrada e ON e.reserva_id = r.idreserva ";
+
+    private static final String SQL_RESUMEN_GRUPO = " GROUP BY r.idreserva, r.fecha_visita, c.nombre, c.apellido ";
+
+    private DataSource dataSource;
 
     /**
      * Constructor de la clase ReservaDAOMySQL
      */
     public ReservaDAOMySQL() {
-        this.connectionJP = new ConnectionJP();
-        this.clienteDAO = new ClienteDAOMySQL();
+        this.dataSource = ConnectionJP.getDataSource();
     }
 
     @Override
     public Reserva guardar(Reserva reserva) throws Exception {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-
-        try {
-            conn = connectionJP.getConnection();
-
-            // Primero verificamos si la reserva ya existe
-            String checkSql = "SELECT COUNT(*) FROM reserva WHERE idreserva = ?";
-            stmt = conn.prepareStatement(checkSql);
-            stmt.setInt(1, reserva.getId());
-
-            ResultSet rs = stmt.executeQuery();
-            boolean existe = false;
-            if (rs.next()) {
-                existe = rs.getInt(1) > 0;
-            }
-            rs.close();
-            stmt.close();
-
-            // Solo insertamos si no existe
-            if (!existe) {
-                // INSERT nuevo
-                String insertSql = "INSERT INTO reserva (idreserva, cliente_id, fecha_reserva, fecha_visita, estado) VALUES (?, ?, ?, ?, ?)";
-                stmt = conn.prepareStatement(insertSql);
-
-                stmt.setInt(1, reserva.getId());
-                stmt.setInt(2, reserva.getCliente().getId());
-                stmt.setTimestamp(3, new Timestamp(reserva.getFechaReserva().getTime()));
-                stmt.setTimestamp(4, new Timestamp(reserva.getFechaVisita().getTime()));
-                stmt.setString(5, reserva.getEstado().name());
-
-                stmt.executeUpdate();
-            }
+        return ActualizacionParcial.guardar(dataSource, Reserva.class, reserva, reserva.getId(), SQL_GUARDAR,
+                this::asignarParametros, () -> new ActualizacionParcial("reserva", "idreserva")
+                        .si(reserva.haCambiado(Reserva.CAMPO_FECHA_VISITA), "fecha_visita",
+                                new Timestamp(reserva.getFechaVisita().getTime()))
+                        .si(reserva.haCambiado(Reserva.CAMPO_ESTADO), "estado", reserva.getEstado().name()));
+    }
 
-            return reserva;
-        } finally {
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
+    @Override
+    public ResultadoLote<Reserva> guardarTodas(Collection<Reserva> reservas) throws Exception {
+        ResultadoLote<Reserva> resultado = EjecutorLotes.ejecutar(dataSource, SQL_GUARDAR, reservas,
+                Reserva::necesitaGuardarse, this::asignarParametros);
+        for (Reserva reserva : resultado.getGuardados()) {
+            SincronizacionTransaccion.marcarGuardada(reserva);
+            MapaIdentidad.actualizar(Reserva.class, reserva.getId(), reserva);
         }
+        return resultado;
+    }
+
+    /**
+     * Asigna los parámetros de SQL_GUARDAR para una reserva
+     *
+     * @param stmt    Sentencia a completar
+     * @param reserva Reserva a guardar
+     * @throws SQLException si hay error al asignar los parámetros
+     */
+    private void asignarParametros(PreparedStatement stmt, Reserva reserva) throws SQLException {
+        stmt.setInt(1, reserva.getId());
+        stmt.setInt(2, reserva.getCliente().getId());
+        stmt.setTimestamp(3, new Timestamp(reserva.getFechaReserva().getTime()));
+        stmt.setTimestamp(4, new Timestamp(reserva.getFechaVisita().getTime()));
+        stmt.setString(5, reserva.getEstado().name());
     }
 
     @Override
     public Reserva buscarPorId(int id) throws Exception {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-
-        try {
-            conn = connectionJP.getConnection();
-
-            String sql = "SELECT * FROM reserva WHERE idreserva = ?";
-            stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, id);
-
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                int clienteId = rs.getInt("cliente_id");
-                Cliente cliente = clienteDAO.buscarPorId(clienteId);
-
-                if (cliente == null) {
-                    throw new Exception("No se encontró el cliente asociado a la reserva");
-                }
-
-                Date fechaVisita = new Date(rs.getTimestamp("fecha_visita").getTime());
-
-                Reserva reserva = new Reserva(
-                        rs.getInt("idreserva"),
-                        cliente,
-                        fechaVisita);
-
-                // Establecer la fecha de reserva desde la BD
-                Date fechaReserva = new Date(rs.getTimestamp("fecha_reserva").getTime());
-                reserva.setEstado(Reserva.EstadoReserva.valueOf(rs.getString("estado")));
+        return buscarPorId(id, PlanCarga.SOLO_CABECERA);
+    }
 
-                // Cargar las entradas asociadas a esta reserva
-                cargarEntradasParaReserva(conn, reserva);
+    @Override
+    public Reserva buscarPorId(int id, PlanCarga plan) throws Exception {
+        // Ya cargada en esta operación: solo falta lo que pida el plan
+        Reserva existente = MapaIdentidad.buscar(Reserva.class, id);
+        if (existente != null) {
+            plan.completar(existente);
+            return existente;
+        }
 
-                return reserva;
-            }
-            return null;
-        } finally {
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
+        try (Connection conn = dataSource.getConnection()) {
+            CargadorReservas cargador = nuevoCargador(plan);
+            cargador.cargarReservas(conn, "WHERE r.idreserva = ?", id);
+            if (plan.incluyeEntradas()) {
+                cargador.cargarEntradas(conn, "WHERE e.reserva_id = ? ORDER BY e.identrada", id);
+            } else {
+                cargador.entradasPerezosas(dataSource);
             }
+
+            List<Reserva> reservas = cargador.getReservas();
+            return reservas.isEmpty() ? null : reservas.get(0);
         }
     }
 
     @Override
     public List<Reserva> buscarTodas() throws Exception {
-        List<Reserva> reservas = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement stmt = null;
-
-        try {
-            conn = connectionJP.getConnection();
-
-            // Primero obtenemos todas las reservas
-            String sql = "SELECT * FROM reserva";
-            stmt = conn.prepareStatement(sql);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                int clienteId = rs.getInt("cliente_id");
-                Cliente cliente = clienteDAO.buscarPorId(clienteId);
-
-                if (cliente == null) {
-                    continue; // Saltamos esta reserva si no encontramos el cliente
-                }
-
-                Date fechaVisita = new Date(rs.getTimestamp("fecha_visita").getTime());
+        // Una consulta para las reservas con su cliente; las entradas de todas
+        // ellas se leen con otra la primera vez que se consulten las de alguna
+        try (Connection conn = dataSource.getConnection()) {
+            CargadorReservas cargador = nuevoCargador();
+            cargador.cargarReservas(conn, "ORDER BY r.idreserva");
+            cargador.entradasPerezosas(dataSource);
+            return cargador.getReservas();
+        }
+    }
 
-                Reserva reserva = new Reserva(
-                        rs.getInt("idreserva"),
-                        cliente,
-                        fechaVisita);
+    @Override
+    public Pagina<Reserva> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        // Una reserva de más para saber si hay otra página
+        try (Connection conn = dataSource.getConnection()) {
+            CargadorReservas cargador = nuevoCargador();
+            cargador.cargarReservas(conn, "WHERE " + orden.despuesDe("r.idreserva")
+                    + " ORDER BY r.idreserva " + orden.getSql() + " LIMIT ?",
+                    orden.inicio(despuesDeId), limite + 1);
+            cargador.entradasPerezosas(dataSource);
+            return Pagina.de(cargador.getReservas(), limite, Reserva::getId);
+        }
+    }
 
-                // Establecer la fecha de reserva desde la BD
-                Date fechaReserva = new Date(rs.getTimestamp("fecha_reserva").getTime());
-                reserva.setEstado(Reserva.EstadoReserva.valueOf(rs.getString("estado")));
+    @Override
+    public List<ReservaResumen> buscarResumenes() throws Exception {
+        return consultarResumenes("", "ORDER BY r.idreserva");
+    }
 
-                // Ahora cargamos las entradas de esta reserva
-                int reservaId = reserva.getId();
-                cargarEntradasParaReserva(conn, reserva);
+    @Override
+    public List<ReservaResumen> buscarResumenesSinVisitantes() throws Exception {
+        // Con alguna entrada y ninguna con visitante
+        return consultarResumenes("WHERE EXISTS (SELECT 1 FROM entrada x WHERE x.reserva_id = r.idreserva) "
+                + "AND NOT EXISTS (SELECT 1 FROM entrada x WHERE x.reserva_id = r.idreserva "
+                + "AND x.visitante_id IS NOT NULL)", "ORDER BY r.idreserva");
+    }
 
-                reservas.add(reserva);
-            }
-            rs.close();
+    @Override
+    public List<ReservaResumen> buscarResumenesConEntradasSinUtilizar() throws Exception {
+        return consultarResumenes("WHERE EXISTS (SELECT 1 FROM entrada x WHERE x.reserva_id = r.idreserva "
+                + "AND x.utilizada = 0)", "ORDER BY r.idreserva");
+    }
 
-            return reservas;
-        } finally {
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
-        }
+    @Override
+    public Pagina<ReservaResumen> buscarPaginaResumenes(int despuesDeId, int limite) throws Exception {
+        List<ReservaResumen> resumenes = consultarResumenes("WHERE r.idreserva > ?",
+                "ORDER BY r.idreserva LIMIT ?", Math.max(despuesDeId, 0), limite + 1);
+        return Pagina.de(resumenes, limite, ReservaResumen::getId);
     }
 
     /**
-     * Carga las entradas para una reserva específica desde la base de datos
-     * 
-     * @param conn    Conexión a la base de datos
-     * @param reserva Reserva a la que se cargarán las entradas
-     * @throws Exception Si ocurre un error al cargar las entradas
+     * Ejecuta SQL_RESUMEN con los filtros indicados
+     *
+     * @param filtro     Cláusula WHERE sobre reserva r y cliente c (o vacía)
+     * @param orden      Cláusulas HAVING / ORDER BY / LIMIT tras agrupar
+     * @param parametros Valores de los parámetros, en orden
+     * @return Resúmenes leídos
+     * @throws SQLException si hay error en la consulta
      */
-    private void cargarEntradasParaReserva(Connection conn, Reserva reserva) throws Exception {
-        String sql = "SELECT * FROM entrada WHERE reserva_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, reserva.getId());
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Entrada entrada = new Entrada(
-                            rs.getInt("identrada"),
-                            reserva,
-                            rs.getDouble("precio"));
+    private List<ReservaResumen> consultarResumenes(String filtro, String orden, Object... parametros)
+            throws SQLException {
+        List<ReservaResumen> resumenes = new ArrayList<>();
 
-                    if (rs.getBoolean("utilizada")) {
-                        entrada.marcarComoUtilizada();
-                    }
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(SQL_RESUMEN + filtro + SQL_RESUMEN_GRUPO + orden)) {
 
-                    // Aquí podrías cargar el visitante si existe
-                    int visitanteId = rs.getInt("visitante_id");
-                    if (!rs.wasNull()) {
-                        // TODO: Cargar el visitante desde la BD si es necesario
-                    }
+            for (int i = 0; i < parametros.length; i++) {
+                stmt.setObject(i + 1, parametros[i]);
+            }
 
-                    // Agregamos la entrada a la reserva
-                    reserva.agregarEntrada(entrada);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    resumenes.add(new ReservaResumen(
+                            rs.getInt("idreserva"),
+                            rs.getString("nombre") + " " + rs.getString("apellido"),
+                            new Date(rs.getTimestamp("fecha_visita").getTime()),
+                            rs.getInt("total"),
+                            rs.getInt("sin_visitante"),
+                            rs.getInt("sin_utilizar")));
                 }
             }
         }
+        return resumenes;
     }
 
     @Override
     public List<Reserva> buscarPorCliente(int clienteId) throws Exception {
-        List<Reserva> reservas = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement stmt = null;
-
-        try {
-            conn = connectionJP.getConnection();
-
-            String sql = "SELECT * FROM reserva WHERE cliente_id = ?";
-            stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, clienteId);
-
-            ResultSet rs = stmt.executeQuery();
-            Cliente cliente = clienteDAO.buscarPorId(clienteId);
-
-            if (cliente == null) {
-                throw new Exception("No se encontró el cliente");
-            }
-
-            while (rs.next()) {
-                Date fechaVisita = new Date(rs.getTimestamp("fecha_visita").getTime());
-
-                Reserva reserva = new Reserva(
-                        rs.getInt("idreserva"),
-                        cliente,
-                        fechaVisita);
-
-                // Establecer la fecha de reserva desde la BD
-                Date fechaReserva = new Date(rs.getTimestamp("fecha_reserva").getTime());
-                reserva.setEstado(Reserva.EstadoReserva.valueOf(rs.getString("estado")));
-
-                // Cargar entradas
-                cargarEntradasParaReserva(conn, reserva);
+        try (Connection conn = dataSource.getConnection()) {
+            CargadorReservas cargador = nuevoCargador();
+            cargador.cargarReservas(conn, "WHERE r.cliente_id = ? ORDER BY r.idreserva", clienteId);
+            cargador.entradasPerezosas(dataSource);
+            return cargador.getReservas();
+        }
+    }
 
-                reservas.add(reserva);
-            }
-            rs.close();
+    /**
+     * Cargador de las lecturas de reservas: los visitantes de sus entradas
+     * tampoco se leen hasta que se consulta alguno
+     *
+     * @return Cargador nuevo
+     */
+    private CargadorReservas nuevoCargador() {
+        return nuevoCargador(PlanCarga.SOLO_CABECERA);
+    }
 
-            return reservas;
-        } finally {
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
-        }
+    /**
+     * Cargador para un plan de carga: si el plan no incluye los visitantes,
+     * estos se leen la primera vez que se consulta alguno
+     *
+     * @param plan Plan de carga
+     * @return Cargador nuevo
+     */
+    private CargadorReservas nuevoCargador(PlanCarga plan) {
+        CargadorReservas cargador = new CargadorReservas();
+        return plan.incluyeVisitantes() ? cargador : cargador.conVisitantesPerezosos(dataSource);
     }
-}
\ No newline at end of file
+}
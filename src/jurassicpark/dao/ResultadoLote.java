@@ -0,0 +1,83 @@
+package jurassicpark.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resultado de un guardado por lotes: elementos guardados y elementos que
+ * fallaron junto con el error de cada uno.
+ *
+ * Los fallos se identifican por la posición del elemento en la colección
+ * que se pasó a guardar, no por el elemento: así no dependen de su equals()
+ * y quien guarda varias listas emparejadas sabe exactamente qué pareja falló.
+ *
+ * @param <T> Tipo de entidad guardada
+ */
+public class ResultadoLote<T> {
+
+    private final List<T> guardados = new ArrayList<>();
+    private final Map<Integer, Exception> fallos = new TreeMap<>();
+    private final Map<Integer, T> fallidos = new HashMap<>();
+
+    /**
+     * Registra un elemento guardado correctamente
+     *
+     * @param elemento Elemento guardado
+     */
+    void agregarGuardado(T elemento) {
+        guardados.add(elemento);
+    }
+
+    /**
+     * Registra un elemento que no se pudo guardar
+     *
+     * @param indice   Posición del elemento en la colección recibida
+     * @param elemento Elemento que falló
+     * @param error    Error producido al guardarlo
+     */
+    void agregarFallo(int indice, T elemento, Exception error) {
+        fallos.put(indice, error);
+        fallidos.put(indice, elemento);
+    }
+
+    /**
+     * Obtiene los elementos guardados, en el orden en que se recibieron
+     *
+     * @return Lista de elementos guardados
+     */
+    public List<T> getGuardados() {
+        return guardados;
+    }
+
+    /**
+     * Obtiene los errores de los elementos que no se pudieron guardar
+     *
+     * @return Mapa de posición en la colección recibida a error, ordenado por
+     *         posición
+     */
+    public Map<Integer, Exception> getFallos() {
+        return fallos;
+    }
+
+    /**
+     * Obtiene un elemento que no se pudo guardar
+     *
+     * @param indice Posición del elemento en la colección recibida
+     * @return Elemento, o null si el de esa posición no falló
+     */
+    public T getFallido(int indice) {
+        return fallidos.get(indice);
+    }
+
+    /**
+     * Indica si algún elemento no se pudo guardar
+     *
+     * @return true si hubo fallos
+     */
+    public boolean hayFallos() {
+        return !fallos.isEmpty();
+    }
+}
@@ -0,0 +1,148 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.EntidadRastreada;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estado de la transacción (unidad de trabajo) en curso en el hilo actual,
+ * compartido por las unidades anidadas.
+ *
+ * Lo abre y lo cierra UnidadDeTrabajo. Una unidad anidada que se cierra sin
+ * confirmar, o un servicio que no pudo guardar todo lo que debía, marcan la
+ * transacción para deshacer: la unidad exterior ya no puede confirmarla.
+ *
+ * Los DAOs dejan además aquí lo que solo debe hacerse si la transacción se
+ * confirma, como descartar una entidad de la caché compartida: hacerlo antes
+ * del commit permitiría que otro hilo volviera a guardar en la caché la fila
+ * antigua. Sin transacción abierta cada sentencia se confirma sola y esas
+ * acciones se ejecutan en el momento.
+ *
+ * Al revés, lo que hay que hacer si se deshace (como volver a marcar como
+ * pendientes las entidades que ya se daban por guardadas) se ejecuta al
+ * cerrar la transacción sin confirmar, en orden inverso.
+ */
+public final class SincronizacionTransaccion {
+
+    private static final ThreadLocal<SincronizacionTransaccion> ACTUAL = new ThreadLocal<>();
+
+    private final List<Runnable> alConfirmar = new ArrayList<>();
+    private final List<Runnable> alDeshacer = new ArrayList<>();
+    private int aperturas;
+    private boolean soloDeshacer;
+
+    private SincronizacionTransaccion() {
+    }
+
+    /**
+     * Abre una transacción en el hilo actual (o se une a la que ya esté
+     * abierta)
+     */
+    public static void abrir() {
+        SincronizacionTransaccion actual = ACTUAL.get();
+        if (actual == null) {
+            actual = new SincronizacionTransaccion();
+            ACTUAL.set(actual);
+        }
+        actual.aperturas++;
+    }
+
+    /**
+     * Cierra la transacción abierta con abrir(). Si no se confirmó queda
+     * marcada para deshacer. Al cerrar la más exterior se ejecutan las
+     * acciones pendientes de confirmación o, si se deshizo, las de deshacer.
+     *
+     * @param confirmada true si la unidad que se cierra se confirmó
+     */
+    public static void cerrar(boolean confirmada) {
+        SincronizacionTransaccion actual = ACTUAL.get();
+        if (actual == null) {
+            return;
+        }
+        if (!confirmada) {
+            actual.soloDeshacer = true;
+        }
+        if (--actual.aperturas > 0) {
+            return;
+        }
+
+        ACTUAL.remove();
+        if (!actual.soloDeshacer) {
+            for (Runnable accion : actual.alConfirmar) {
+                ejecutar(accion);
+            }
+        } else {
+            for (int i = actual.alDeshacer.size() - 1; i >= 0; i--) {
+                ejecutar(actual.alDeshacer.get(i));
+            }
+        }
+    }
+
+    /**
+     * Marca la transacción en curso para que solo pueda deshacerse. Sin
+     * transacción no hace nada: lo guardado ya está confirmado.
+     */
+    public static void marcarSoloDeshacer() {
+        SincronizacionTransaccion actual = ACTUAL.get();
+        if (actual != null) {
+            actual.soloDeshacer = true;
+        }
+    }
+
+    /**
+     * Indica si la transacción en curso se ha marcado para deshacer
+     *
+     * @return true si no debe confirmarse
+     */
+    public static boolean esSoloDeshacer() {
+        SincronizacionTransaccion actual = ACTUAL.get();
+        return actual != null && actual.soloDeshacer;
+    }
+
+    /**
+     * Deja una acción para cuando se confirme la transacción en curso, o la
+     * ejecuta ya si no hay ninguna
+     *
+     * @param accion Acción a ejecutar tras el commit
+     */
+    static void alConfirmar(Runnable accion) {
+        SincronizacionTransaccion actual = ACTUAL.get();
+        if (actual == null) {
+            accion.run();
+        } else {
+            actual.alConfirmar.add(accion);
+        }
+    }
+
+    /**
+     * Deja una acción para cuando se deshaga la transacción en curso. Sin
+     * transacción se descarta: lo escrito ya está confirmado.
+     *
+     * @param accion Acción a ejecutar tras el rollback
+     */
+    static void alDeshacer(Runnable accion) {
+        SincronizacionTransaccion actual = ACTUAL.get();
+        if (actual != null) {
+            actual.alDeshacer.add(accion);
+        }
+    }
+
+    /**
+     * Marca una entidad como guardada. Si la transacción en curso se
+     * deshace vuelve a quedar nueva o con sus cambios, como antes de guardar.
+     *
+     * @param entidad Entidad escrita en la BD
+     */
+    static void marcarGuardada(EntidadRastreada entidad) {
+        alDeshacer(entidad.marcarGuardada());
+    }
+
+    private static void ejecutar(Runnable accion) {
+        try {
+            accion.run();
+        } catch (RuntimeException e) {
+            System.out.println("Error al terminar la transacción: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Visitante;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * IVisitanteDAO que sirve las búsquedas por ID desde una CacheEntidades y
+ * delega el resto en otro DAO. La coherencia con lo guardado la lleva
+ * CacheCoherente.
+ */
+public class VisitanteDAOCache implements IVisitanteDAO {
+
+    private final IVisitanteDAO delegado;
+    private final CacheCoherente<Visitante> cache;
+
+    /**
+     * Constructor de la clase VisitanteDAOCache
+     *
+     * @param delegado DAO que accede a la base de datos
+     * @param cache    Caché compartida de visitantes
+     */
+    public VisitanteDAOCache(IVisitanteDAO delegado, CacheEntidades<Visitante> cache) {
+        this.delegado = delegado;
+        this.cache = new CacheCoherente<>(Visitante.class, cache, Visitante::getId);
+    }
+
+    @Override
+    public Visitante guardar(Visitante visitante) throws Exception {
+        return cache.guardar(visitante, delegado::guardar);
+    }
+
+    @Override
+    public ResultadoLote<Visitante> guardarTodos(Collection<Visitante> visitantes) throws Exception {
+        return cache.guardarTodos(visitantes, delegado::guardarTodos);
+    }
+
+    @Override
+    public Visitante buscarPorId(int id) throws Exception {
+        return cache.buscarPorId(id, delegado::buscarPorId);
+    }
+
+    @Override
+    public List<Visitante> buscarTodos() throws Exception {
+        return delegado.buscarTodos();
+    }
+
+    @Override
+    public Stream<Visitante> streamTodos() throws Exception {
+        return delegado.streamTodos();
+    }
+
+    @Override
+    public Pagina<Visitante> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        return delegado.buscarPagina(despuesDeId, limite, orden);
+    }
+
+    public CacheEntidades<Visitante> getCache() {
+        return cache.getCache();
+    }
+}
@@ -0,0 +1,83 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Visitante;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Implementación de IVisitanteDAO sobre el AlmacenMemoria
+ */
+public class VisitanteDAOMemoria implements IVisitanteDAO {
+
+    private final AlmacenMemoria almacen;
+
+    /**
+     * Constructor de la clase VisitanteDAOMemoria
+     *
+     * @param almacen Almacén con las tablas en memoria
+     */
+    public VisitanteDAOMemoria(AlmacenMemoria almacen) {
+        this.almacen = almacen;
+    }
+
+    @Override
+    public Visitante guardar(Visitante visitante) throws Exception {
+        // Inserta o sustituye, como el INSERT ... ON DUPLICATE KEY UPDATE
+        // Sin cambios desde que se leyó o guardó: no hay nada que anotar
+        if (!visitante.necesitaGuardarse()) {
+            return visitante;
+        }
+        almacen.guardarVisitante(visitante);
+        visitante.marcarGuardada();
+        MapaIdentidad.actualizar(Visitante.class, visitante.getId(), visitante);
+        return visitante;
+    }
+
+    @Override
+    public ResultadoLote<Visitante> guardarTodos(Collection<Visitante> visitantes) throws Exception {
+        ResultadoLote<Visitante> resultado = new ResultadoLote<>();
+        int indice = 0;
+        for (Visitante visitante : visitantes) {
+            try {
+                guardar(visitante);
+                resultado.agregarGuardado(visitante);
+            } catch (RuntimeException e) {
+                resultado.agregarFallo(indice, visitante, e);
+            }
+            indice++;
+        }
+        return resultado;
+    }
+
+    @Override
+    public Visitante buscarPorId(int id) throws Exception {
+        return almacen.visitante(id);
+    }
+
+    @Override
+    public List<Visitante> buscarTodos() throws Exception {
+        List<Visitante> visitantes = new ArrayList<>();
+        for (int id : almacen.getVisitantes().keySet()) {
+            visitantes.add(almacen.visitante(id));
+        }
+        return visitantes;
+    }
+
+    @Override
+    public Stream<Visitante> streamTodos() throws Exception {
+        // Como en MySQL, los visitantes recorridos no se registran en el MapaIdentidad
+        return almacen.getVisitantes().values().stream().map(AlmacenMemoria.FilaVisitante::crear);
+    }
+
+    @Override
+    public Pagina<Visitante> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        List<Visitante> visitantes = new ArrayList<>();
+        for (AlmacenMemoria.FilaVisitante fila : AlmacenMemoria.filasDespuesDe(almacen.getVisitantes(), despuesDeId,
+                limite + 1, orden)) {
+            visitantes.add(almacen.visitante(fila.id));
+        }
+        return Pagina.de(visitantes, limite, Visitante::getId);
+    }
+}
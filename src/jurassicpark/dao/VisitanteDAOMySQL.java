@@ -8,92 +8,82 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
 
 /**
  * Implementación de IVisitanteDAO para MySQL
  */
 public class VisitanteDAOMySQL implements IVisitanteDAO {
 
-    private ConnectionJP connectionJP;
+    // Si el visitante ya existe se actualizan sus datos
+    private static final String SQL_GUARDAR = "INSERT INTO visitante (idvisitante, nombre, apellido, edad) "
+            + "VALUES (?, ?, ?, ?) AS nueva "
+            + "ON DUPLICATE KEY UPDATE nombre = nueva.nombre, apellido = nueva.apellido, edad = nueva.edad";
+
+    private DataSource dataSource;
 
     /**
      * Constructor de la clase VisitanteDAOMySQL
      */
     public VisitanteDAOMySQL() {
-        this.connectionJP = new ConnectionJP();
+        this.dataSource = ConnectionJP.getDataSource();
     }
 
     @Override
     public Visitante guardar(Visitante visitante) throws Exception {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-
-        try {
-            conn = connectionJP.getConnection();
-
-            // Primero verificamos si el visitante ya existe
-            String checkSql = "SELECT COUNT(*) FROM visitante WHERE idvisitante = ?";
-            stmt = conn.prepareStatement(checkSql);
-            stmt.setInt(1, visitante.getId());
-
-            ResultSet rs = stmt.executeQuery();
-            boolean existe = false;
-            if (rs.next()) {
-                existe = rs.getInt(1) > 0;
-            }
-            rs.close();
-            stmt.close();
-
-            // Solo insertamos si no existe
-            if (!existe) {
-                // INSERT nuevo
-                String insertSql = "INSERT INTO visitante (idvisitante, nombre, apellido, edad) VALUES (?, ?, ?, ?)";
-                stmt = conn.prepareStatement(insertSql);
-
-                stmt.setInt(1, visitante.getId());
-                stmt.setString(2, visitante.getNombre());
-                stmt.setString(3, visitante.getApellido());
-                stmt.setInt(4, visitante.getEdad());
-
-                stmt.executeUpdate();
-            }
+        return ActualizacionParcial.guardar(dataSource, Visitante.class, visitante, visitante.getId(), SQL_GUARDAR,
+                this::asignarParametros, () -> new ActualizacionParcial("visitante", "idvisitante")
+                        .si(visitante.haCambiado(Visitante.CAMPO_NOMBRE), "nombre", visitante.getNombre())
+                        .si(visitante.haCambiado(Visitante.CAMPO_APELLIDO), "apellido", visitante.getApellido())
+                        .si(visitante.haCambiado(Visitante.CAMPO_EDAD), "edad", visitante.getEdad()));
+    }
 
-            return visitante;
-        } finally {
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (SQLException e) {
-                    /* ignorar */ }
-            }
+    @Override
+    public ResultadoLote<Visitante> guardarTodos(Collection<Visitante> visitantes) throws Exception {
+        ResultadoLote<Visitante> resultado = EjecutorLotes.ejecutar(dataSource, SQL_GUARDAR, visitantes,
+                Visitante::necesitaGuardarse, this::asignarParametros);
+        for (Visitante visitante : resultado.getGuardados()) {
+            SincronizacionTransaccion.marcarGuardada(visitante);
+            MapaIdentidad.actualizar(Visitante.class, visitante.getId(), visitante);
         }
+        return resultado;
+    }
+
+    /**
+     * Asigna los parámetros de SQL_GUARDAR para un visitante
+     *
+     * @param stmt      Sentencia a completar
+     * @param visitante Visitante a guardar
+     * @throws SQLException si hay error al asignar los parámetros
+     */
+    private void asignarParametros(PreparedStatement stmt, Visitante visitante) throws SQLException {
+        stmt.setInt(1, visitante.getId());
+        stmt.setString(2, visitante.getNombre());
+        stmt.setString(3, visitante.getApellido());
+        stmt.setInt(4, visitante.getEdad());
     }
 
     @Override
     public Visitante buscarPorId(int id) throws Exception {
+        // Ya cargado en esta operación
+        Visitante existente = MapaIdentidad.buscar(Visitante.class, id);
+        if (existente != null) {
+            return existente;
+        }
+
         String sql = "SELECT * FROM visitante WHERE idvisitante = ?";
 
-        try (Connection conn = connectionJP.getConnection();
+        try (Connection conn = dataSource.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setInt(1, id);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Visitante visitante = new Visitante(
-                            rs.getInt("idvisitante"),
-                            rs.getString("nombre"),
-                            rs.getString("apellido"),
-                            rs.getInt("edad"));
-
-                    return visitante;
+                    return mapear(rs);
                 }
                 return null;
             }
@@ -105,20 +95,72 @@ public class VisitanteDAOMySQL implements IVisitanteDAO {
         List<Visitante> visitantes = new ArrayList<>();
         String sql = "SELECT * FROM visitante";
 
-        try (Connection conn = connectionJP.getConnection();
+        try (Connection conn = dataSource.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql);
                 ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                Visitante visitante = new Visitante(
-                        rs.getInt("idvisitante"),
-                        rs.getString("nombre"),
-                        rs.getString("apellido"),
-                        rs.getInt("edad"));
-
-                visitantes.add(visitante);
+                visitantes.add(mapear(rs));
             }
             return visitantes;
         }
     }
+
+    @Override
+    public Stream<Visitante> streamTodos() throws Exception {
+        // Conexión propia del pool: queda ocupada mientras dure el recorrido.
+        // Los visitantes no se registran en el MapaIdentidad para no acumularlos.
+        return LectorStream.abrir(ConnectionJP.getPool(), "SELECT * FROM visitante ORDER BY idvisitante",
+                VisitanteDAOMySQL::crear);
+    }
+
+    @Override
+    public Pagina<Visitante> buscarPagina(int despuesDeId, int limite, Orden orden) throws Exception {
+        // Recorre el índice de la clave primaria desde el último ID visto
+        String sql = "SELECT * FROM visitante WHERE " + orden.despuesDe("idvisitante")
+                + " ORDER BY idvisitante " + orden.getSql() + " LIMIT ?";
+
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, orden.inicio(despuesDeId));
+            stmt.setInt(2, limite + 1);
+
+            List<Visitante> visitantes = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    visitantes.add(mapear(rs));
+                }
+            }
+            return Pagina.de(visitantes, limite, Visitante::getId);
+        }
+    }
+
+    /**
+     * Crea el visitante de la fila actual, o reutiliza el que ya se cargó en
+     * esta operación
+     * 
+     * @param rs Resultado posicionado en la fila del visitante
+     * @return Visitante de la fila
+     * @throws SQLException si hay error al leer la fila
+     */
+    private Visitante mapear(ResultSet rs) throws SQLException {
+        int id = rs.getInt("idvisitante");
+        Visitante existente = MapaIdentidad.buscar(Visitante.class, id);
+        if (existente != null) {
+            return existente;
+        }
+
+        return MapaIdentidad.registrar(Visitante.class, id, crear(rs));
+    }
+
+    private static Visitante crear(ResultSet rs) throws SQLException {
+        Visitante visitante = new Visitante(
+                rs.getInt("idvisitante"),
+                rs.getString("nombre"),
+                rs.getString("apellido"),
+                rs.getInt("edad"));
+        visitante.marcarGuardada();
+        return visitante;
+    }
 }
\ No newline at end of file
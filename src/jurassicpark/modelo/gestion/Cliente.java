@@ -1,9 +1,17 @@
 package jurassicpark.modelo.gestion;
 
+import java.util.Objects;
+
 /**
  * Clase que representa un cliente que realiza reservas.
  */
-public class Cliente {
+public class Cliente extends EntidadRastreada {
+    // Campos que se pueden actualizar (ver EntidadRastreada)
+    public static final int CAMPO_NOMBRE = 1;
+    public static final int CAMPO_APELLIDO = 1 << 1;
+    public static final int CAMPO_EMAIL = 1 << 2;
+    public static final int CAMPO_TELEFONO = 1 << 3;
+
     private int id;
     private String nombre;
     private String apellido;
@@ -41,6 +49,9 @@ public class Cliente {
     }
 
     public void setNombre(String nombre) {
+        if (!Objects.equals(this.nombre, nombre)) {
+            anotarCambio(CAMPO_NOMBRE);
+        }
         this.nombre = nombre;
     }
 
@@ -49,6 +60,9 @@ public class Cliente {
     }
 
     public void setApellido(String apellido) {
+        if (!Objects.equals(this.apellido, apellido)) {
+            anotarCambio(CAMPO_APELLIDO);
+        }
         this.apellido = apellido;
     }
 
@@ -61,6 +75,9 @@ public class Cliente {
     }
 
     public void setEmail(String email) {
+        if (!Objects.equals(this.email, email)) {
+            anotarCambio(CAMPO_EMAIL);
+        }
         this.email = email;
     }
 
@@ -69,6 +86,9 @@ public class Cliente {
     }
 
     public void setTelefono(String telefono) {
+        if (!Objects.equals(this.telefono, telefono)) {
+            anotarCambio(CAMPO_TELEFONO);
+        }
         this.telefono = telefono;
     }
 
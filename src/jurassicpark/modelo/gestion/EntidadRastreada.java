@@ -0,0 +1,81 @@
+package jurassicpark.modelo.gestion;
+
+/**
+ * Base de las entidades que recuerdan qué campos han cambiado desde que se
+ * leyeron o guardaron por última vez.
+ *
+ * Los DAOs marcan la entidad como guardada al leerla de la BD y al
+ * guardarla. Desde ese momento cada setter anota su campo si el valor cambia
+ * de verdad, y al volver a guardar el DAO escribe solo las columnas anotadas,
+ * o nada si no hay ninguna. Una entidad que nunca se ha guardado es nueva y
+ * se escribe entera. Si la transacción del guardado se deshace, el DAO la
+ * devuelve al estado anterior para que el siguiente intento la escriba.
+ */
+public abstract class EntidadRastreada {
+    private boolean guardada;
+    private int cambios;
+
+    /**
+     * Anota que un campo ha cambiado
+     *
+     * @param campo Constante del campo en la subclase (un bit por campo)
+     */
+    protected void anotarCambio(int campo) {
+        cambios |= campo;
+    }
+
+    /**
+     * Indica que la entidad ya está en la BD y no tiene cambios pendientes
+     *
+     * @return Acción que la devuelve al estado anterior (nueva o con sus
+     *         cambios), por si lo guardado acaba deshaciéndose
+     */
+    public Runnable marcarGuardada() {
+        boolean guardadaAntes = guardada;
+        int cambiosAntes = cambios;
+        guardada = true;
+        cambios = 0;
+        return () -> {
+            guardada = guardadaAntes;
+            // Se conservan también los cambios hechos después de guardar
+            cambios |= cambiosAntes;
+        };
+    }
+
+    /**
+     * Indica que un campo ya se ha escrito en la BD por otra vía (por ejemplo
+     * una sentencia específica del DAO) y no hay que volver a escribirlo
+     *
+     * @param campo Constante del campo en la subclase
+     */
+    public void marcarCampoGuardado(int campo) {
+        cambios &= ~campo;
+    }
+
+    public boolean esNueva() {
+        return !guardada;
+    }
+
+    public boolean tieneCambios() {
+        return cambios != 0;
+    }
+
+    /**
+     * Indica si un campo ha cambiado desde la última vez que se guardó
+     *
+     * @param campo Constante del campo en la subclase
+     * @return true si hay que escribir el campo
+     */
+    public boolean haCambiado(int campo) {
+        return (cambios & campo) != 0;
+    }
+
+    /**
+     * Indica si hay que escribir la entidad: es nueva o tiene cambios
+     *
+     * @return false si la BD ya tiene exactamente estos datos
+     */
+    public boolean necesitaGuardarse() {
+        return !guardada || cambios != 0;
+    }
+}
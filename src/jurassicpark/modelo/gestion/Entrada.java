@@ -1,11 +1,17 @@
 package jurassicpark.modelo.gestion;
 
 import java.util.Date;
+import java.util.function.Supplier;
 
 /**
  * Clase que representa una entrada para el parque.
  */
-public class Entrada {
+public class Entrada extends EntidadRastreada {
+    // Campos que se pueden actualizar (ver EntidadRastreada)
+    public static final int CAMPO_VISITANTE = 1;
+    public static final int CAMPO_UTILIZADA = 1 << 1;
+    public static final int CAMPO_PRECIO = 1 << 2;
+
     private int id;
     private Reserva reserva;
     private Visitante visitante;
@@ -13,6 +19,14 @@ public class Entrada {
     private Date fechaEmision;
     private boolean utilizada;
 
+    // ID de la reserva (clave ajena), conocido aunque no se haya cargado
+    private int reservaId;
+
+    // Asociaciones que se cargan al primer acceso (null si ya están cargadas)
+    private Supplier<Reserva> cargaReserva;
+    private int visitanteId;
+    private Supplier<Visitante> cargaVisitante;
+
     /**
      * Constructor de la clase Entrada
      * 
@@ -23,6 +37,7 @@ public class Entrada {
     public Entrada(int id, Reserva reserva, double precio) {
         this.id = id;
         this.reserva = reserva;
+        this.reservaId = (reserva != null) ? reserva.getId() : 0;
         this.precio = precio;
         this.fechaEmision = new Date(); // Fecha actual
         this.utilizada = false;
@@ -35,13 +50,47 @@ public class Entrada {
      * @param visitante Visitante a asignar
      */
     public void asignarVisitante(Visitante visitante) {
+        int nuevoId = (visitante != null) ? visitante.getId() : 0;
+        if (getVisitanteId() != nuevoId) {
+            anotarCambio(CAMPO_VISITANTE);
+        }
         this.visitante = visitante;
+        this.cargaVisitante = null;
+    }
+
+    /**
+     * Indica la reserva de la entrada sin cargarla: se obtendrá la primera vez
+     * que se llame a getReserva()
+     * 
+     * @param reservaId ID de la reserva
+     * @param carga     Carga de la reserva
+     */
+    public void setReservaPerezosa(int reservaId, Supplier<Reserva> carga) {
+        this.reserva = null;
+        this.reservaId = reservaId;
+        this.cargaReserva = carga;
+    }
+
+    /**
+     * Indica el visitante de la entrada sin cargarlo: se obtendrá la primera
+     * vez que se llame a getVisitante()
+     * 
+     * @param visitanteId ID del visitante
+     * @param carga       Carga del visitante
+     */
+    public void setVisitantePerezoso(int visitanteId, Supplier<Visitante> carga) {
+        this.visitante = null;
+        this.visitanteId = visitanteId;
+        this.cargaVisitante = carga;
     }
 
     /**
      * Marca la entrada como utilizada
      */
     public void marcarComoUtilizada() {
+        if (!utilizada) {
+            anotarCambio(CAMPO_UTILIZADA);
+        }
         this.utilizada = true;
     }
 
@@ -51,18 +100,50 @@ public class Entrada {
     }
 
     public Reserva getReserva() {
+        if (cargaReserva != null) {
+            reserva = cargaReserva.get();
+            cargaReserva = null;
+        }
         return reserva;
     }
 
+    /**
+     * ID de la reserva de la entrada, sin necesidad de cargarla
+     * 
+     * @return ID de la reserva (0 si no tiene)
+     */
+    public int getReservaId() {
+        return reservaId;
+    }
+
     public Visitante getVisitante() {
+        if (cargaVisitante != null) {
+            visitante = cargaVisitante.get();
+            cargaVisitante = null;
+        }
         return visitante;
     }
 
+    /**
+     * ID del visitante asignado, sin necesidad de cargarlo
+     * 
+     * @return ID del visitante (0 si no tiene)
+     */
+    public int getVisitanteId() {
+        if (cargaVisitante != null) {
+            return visitanteId;
+        }
+        return (visitante != null) ? visitante.getId() : 0;
+    }
+
     public double getPrecio() {
         return precio;
     }
 
     public void setPrecio(double precio) {
+        if (this.precio != precio) {
+            anotarCambio(CAMPO_PRECIO);
+        }
         this.precio = precio;
     }
 
@@ -75,12 +156,18 @@ public class Entrada {
     }
 
     public boolean tieneVisitanteAsignado() {
-        return visitante != null;
+        return visitante != null || cargaVisitante != null;
     }
 
     @Override
     public String toString() {
-        String visitanteInfo = (visitante != null) ? visitante.getNombreCompleto() : "Sin asignar";
+        // Sin cargar asociaciones: de un visitante pendiente solo se muestra su ID
+        String visitanteInfo;
+        if (cargaVisitante != null) {
+            visitanteInfo = "#" + visitanteId;
+        } else {
+            visitanteInfo = (visitante != null) ? visitante.getNombreCompleto() : "Sin asignar";
+        }
         return "Entrada{" + "id=" + id + ", visitante=" + visitanteInfo +
                 ", precio=" + precio + ", utilizada=" + utilizada + "}";
     }
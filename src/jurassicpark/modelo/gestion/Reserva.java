@@ -1,17 +1,24 @@
 package jurassicpark.modelo.gestion;
 
+import jurassicpark.util.ListaPerezosa;
+
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Clase que representa una reserva de entradas para el parque.
  */
-public class Reserva {
+public class Reserva extends EntidadRastreada {
     public enum EstadoReserva {
         PENDIENTE, CONFIRMADA, CANCELADA
     }
 
+    // Campos que se pueden actualizar (ver EntidadRastreada)
+    public static final int CAMPO_FECHA_VISITA = 1;
+    public static final int CAMPO_ESTADO = 1 << 1;
+
     private int id;
     private Cliente cliente;
     private Date fechaReserva;
@@ -48,11 +55,18 @@ public class Reserva {
         return fechaReserva;
     }
 
+    public void setFechaReserva(Date fechaReserva) {
+        this.fechaReserva = fechaReserva;
+    }
+
     public Date getFechaVisita() {
         return fechaVisita;
     }
 
     public void setFechaVisita(Date fechaVisita) {
+        if (!Objects.equals(this.fechaVisita, fechaVisita)) {
+            anotarCambio(CAMPO_FECHA_VISITA);
+        }
         this.fechaVisita = fechaVisita;
     }
 
@@ -61,6 +75,9 @@ public class Reserva {
     }
 
     public void setEstado(EstadoReserva estado) {
+        if (this.estado != estado) {
+            anotarCambio(CAMPO_ESTADO);
+        }
         this.estado = estado;
     }
 
@@ -68,15 +85,39 @@ public class Reserva {
         return entradas;
     }
 
+    /**
+     * Sustituye la lista de entradas (por ejemplo, por una que se carga la
+     * primera vez que se consulta)
+     * 
+     * @param entradas Lista de entradas de la reserva
+     */
+    public void setEntradas(List<Entrada> entradas) {
+        this.entradas = entradas;
+    }
+
+    /**
+     * Añade una entrada a la reserva. Si las entradas aún no se han cargado
+     * no se cargan por esto.
+     * 
+     * @param entrada Entrada nueva de la reserva
+     */
     public void agregarEntrada(Entrada entrada) {
-        if (!entradas.contains(entrada)) {
+        if (entradasCargadas()) {
             entradas.add(entrada);
+        } else {
+            ((ListaPerezosa<Entrada>) entradas).agregarSinCargar(entrada);
         }
     }
 
+    private boolean entradasCargadas() {
+        return !(entradas instanceof ListaPerezosa) || ((ListaPerezosa<Entrada>) entradas).estaCargada();
+    }
+
     @Override
     public String toString() {
+        // No carga las entradas si aún no se han consultado
+        String numEntradas = entradasCargadas() ? String.valueOf(entradas.size()) : "sin cargar";
         return "Reserva{" + "id=" + id + ", cliente=" + cliente.getNombreCompleto() +
-                ", estado=" + estado + ", entradas=" + entradas.size() + "}";
+                ", estado=" + estado + ", entradas=" + numEntradas + "}";
     }
 }
\ No newline at end of file
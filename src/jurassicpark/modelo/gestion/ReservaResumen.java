@@ -0,0 +1,80 @@
+package jurassicpark.modelo.gestion;
+
+import java.util.Date;
+
+/**
+ * Datos resumidos de una reserva para mostrarla en un listado, sin cargar su
+ * cliente ni sus entradas.
+ */
+public class ReservaResumen {
+    private final int id;
+    private final String nombreCliente;
+    private final Date fechaVisita;
+    private final int totalEntradas;
+    private final int entradasSinVisitante;
+    private final int entradasSinUtilizar;
+
+    /**
+     * Constructor de la clase ReservaResumen
+     * 
+     * @param id                   Identificador de la reserva
+     * @param nombreCliente        Nombre completo del cliente
+     * @param fechaVisita          Fecha de la visita
+     * @param totalEntradas        Número de entradas de la reserva
+     * @param entradasSinVisitante Entradas sin visitante asignado
+     * @param entradasSinUtilizar  Entradas que aún no se han utilizado
+     */
+    public ReservaResumen(int id, String nombreCliente, Date fechaVisita, int totalEntradas,
+            int entradasSinVisitante, int entradasSinUtilizar) {
+        this.id = id;
+        this.nombreCliente = nombreCliente;
+        this.fechaVisita = fechaVisita;
+        this.totalEntradas = totalEntradas;
+        this.entradasSinVisitante = entradasSinVisitante;
+        this.entradasSinUtilizar = entradasSinUtilizar;
+    }
+
+    // Getters
+    public int getId() {
+        return id;
+    }
+
+    public String getNombreCliente() {
+        return nombreCliente;
+    }
+
+    public Date getFechaVisita() {
+        return fechaVisita;
+    }
+
+    public int getTotalEntradas() {
+        return totalEntradas;
+    }
+
+    public int getEntradasSinVisitante() {
+        return entradasSinVisitante;
+    }
+
+    public int getEntradasSinUtilizar() {
+        return entradasSinUtilizar;
+    }
+
+    public boolean tieneEntradas() {
+        return totalEntradas > 0;
+    }
+
+    /**
+     * Indica si la reserva tiene entradas y ninguna tiene visitante asignado
+     * 
+     * @return true si todas las entradas están sin visitante
+     */
+    public boolean todasSinVisitante() {
+        return totalEntradas > 0 && entradasSinVisitante == totalEntradas;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservaResumen{" + "id=" + id + ", cliente=" + nombreCliente +
+                ", entradas=" + totalEntradas + "}";
+    }
+}
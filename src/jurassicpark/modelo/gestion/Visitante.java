@@ -1,9 +1,16 @@
 package jurassicpark.modelo.gestion;
 
+import java.util.Objects;
+
 /**
  * Clase que representa a un visitante que asiste al parque.
  */
-public class Visitante {
+public class Visitante extends EntidadRastreada {
+    // Campos que se pueden actualizar (ver EntidadRastreada)
+    public static final int CAMPO_NOMBRE = 1;
+    public static final int CAMPO_APELLIDO = 1 << 1;
+    public static final int CAMPO_EDAD = 1 << 2;
+
     private int id;
     private String nombre;
     private String apellido;
@@ -49,6 +56,9 @@ public class Visitante {
     }
 
     public void setNombre(String nombre) {
+        if (!Objects.equals(this.nombre, nombre)) {
+            anotarCambio(CAMPO_NOMBRE);
+        }
         this.nombre = nombre;
     }
 
@@ -57,6 +67,9 @@ public class Visitante {
     }
 
     public void setApellido(String apellido) {
+        if (!Objects.equals(this.apellido, apellido)) {
+            anotarCambio(CAMPO_APELLIDO);
+        }
         this.apellido = apellido;
     }
 
@@ -69,6 +82,9 @@ public class Visitante {
     }
 
     public void setEdad(int edad) {
+        if (this.edad != edad) {
+            anotarCambio(CAMPO_EDAD);
+        }
         this.edad = edad;
         asignarTipoVisitante();
     }
@@ -1,7 +1,9 @@
 package jurassicpark.servicio;
 
+import jurassicpark.dao.FabricaDAO;
 import jurassicpark.dao.IClienteDAO;
-import jurassicpark.dao.ClienteDAOMySQL;
+import jurassicpark.dao.Orden;
+import jurassicpark.dao.Pagina;
 import jurassicpark.modelo.gestion.Cliente;
 import java.util.List;
 
@@ -18,7 +20,7 @@ public class ClienteServicio {
      */
     public ClienteServicio() {
         // Inicializar el DAO
-        this.clienteDAO = new ClienteDAOMySQL();
+        this.clienteDAO = FabricaDAO.crearClienteDAO();
     }
 
     /**
@@ -88,6 +90,23 @@ public class ClienteServicio {
         }
     }
 
+    /**
+     * Obtiene una página de clientes ordenados por ID
+     *
+     * @param despuesDeId ID del último cliente de la página anterior (0 para
+     *                    la primera)
+     * @param limite      Número máximo de clientes
+     * @return Página de clientes (vacía si hay error)
+     */
+    public Pagina<Cliente> obtenerPaginaClientes(int despuesDeId, int limite) {
+        try {
+            return clienteDAO.buscarPagina(despuesDeId, limite, Orden.ASCENDENTE);
+        } catch (Exception e) {
+            System.out.println("Error al obtener clientes de BD: " + e.getMessage());
+            return new Pagina<>(List.of(), false, 0);
+        }
+    }
+
     /**
      * Busca un cliente por su ID
      *
@@ -1,13 +1,18 @@
 package jurassicpark.servicio;
 
+import jurassicpark.dao.FabricaDAO;
 import jurassicpark.dao.IEntradaDAO;
-import jurassicpark.dao.EntradaDAOMySQL;
+import jurassicpark.dao.IGeneradorIds;
+import jurassicpark.dao.ResultadoLote;
 import jurassicpark.modelo.gestion.Entrada;
 import jurassicpark.modelo.gestion.Reserva;
 import jurassicpark.modelo.gestion.Visitante;
+import jurassicpark.util.ListaPerezosa;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Servicio que gestiona las operaciones relacionadas con las entradas
@@ -17,33 +22,25 @@ public class EntradaServicio {
     // DAO para acceso a datos
     private IEntradaDAO entradaDAO;
 
-    // Contador para generar IDs automáticamente
-    private static int contadorEntradas = 5000; // Empezamos desde 5000
+    // Generador de IDs (empezamos desde 5000)
+    private IGeneradorIds generadorIds;
 
     /**
      * Constructor de la clase EntradaServicio
      */
     public EntradaServicio() {
-        this.entradaDAO = new EntradaDAOMySQL();
-        actualizarContador();
+        this(FabricaDAO.crearEntradaDAO(), FabricaDAO.crearGeneradorIds("entrada", "entrada", "identrada", 5000));
     }
 
     /**
-     * Actualiza el contador de IDs
+     * Constructor de la clase EntradaServicio con dependencias explícitas
+     * 
+     * @param entradaDAO   DAO de entradas
+     * @param generadorIds Generador de IDs de entradas
      */
-    private void actualizarContador() {
-        try {
-            // Obtener todas las entradas y actualizar contador si es necesario
-            List<Entrada> entradas = entradaDAO.buscarTodas();
-            for (Entrada entrada : entradas) {
-                if (entrada.getId() > contadorEntradas) {
-                    contadorEntradas = entrada.getId();
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error al actualizar contador de entradas: " + e.getMessage());
-            e.printStackTrace();
-        }
+    public EntradaServicio(IEntradaDAO entradaDAO, IGeneradorIds generadorIds) {
+        this.entradaDAO = entradaDAO;
+        this.generadorIds = generadorIds;
     }
 
     /**
@@ -55,24 +52,25 @@ public class EntradaServicio {
      * @return Lista de entradas generadas
      */
     public List<Entrada> generarEntradas(Reserva reserva, int cantidad, double precioUnitario) {
-        actualizarContador();
-
-        List<Entrada> entradas = new ArrayList<>();
+        List<Entrada> nuevas = new ArrayList<>();
         for (int i = 0; i < cantidad; i++) {
-            int entradaId = ++contadorEntradas; // Incrementamos el contador y asignamos el nuevo ID
-            Entrada entrada = new Entrada(entradaId, reserva, precioUnitario);
-            reserva.agregarEntrada(entrada);
-
+            int entradaId;
             try {
-                // Guardar en la base de datos
-                entradaDAO.guardar(entrada);
-                entradas.add(entrada);
+                entradaId = generadorIds.siguienteId();
             } catch (Exception e) {
-                System.out.println("Error al guardar entrada en BD: " + e.getMessage());
-                // Seguimos intentando con las demás entradas
+                System.out.println("Error al obtener ID de entrada: " + e.getMessage());
+                // Guardamos las que ya tienen ID, pero la operación queda incompleta
+                UnidadDeTrabajo.marcarParaDeshacer();
+                break;
             }
+
+            Entrada entrada = new Entrada(entradaId, reserva, precioUnitario);
+            reserva.agregarEntrada(entrada);
+            nuevas.add(entrada);
         }
-        return entradas;
+
+        // Guardar todas las entradas en la base de datos de una vez
+        return guardarEntradas(nuevas);
     }
 
     /**
@@ -86,29 +84,42 @@ public class EntradaServicio {
      * @return Lista de entradas generadas
      */
     public List<Entrada> generarEntradas(Reserva reserva, int cantidad, double precioUnitario, int idInicial) {
-        actualizarContador();
-
-        List<Entrada> entradas = new ArrayList<>();
+        List<Entrada> nuevas = new ArrayList<>();
         for (int i = 0; i < cantidad; i++) {
             int entradaId = idInicial + i;
 
-            if (entradaId > contadorEntradas) {
-                contadorEntradas = entradaId;
-            }
-
             Entrada entrada = new Entrada(entradaId, reserva, precioUnitario);
             reserva.agregarEntrada(entrada);
+            nuevas.add(entrada);
+        }
 
-            try {
-                // Guardar en la base de datos
-                entradaDAO.guardar(entrada);
-                entradas.add(entrada);
-            } catch (Exception e) {
-                System.out.println("Error al guardar entrada en BD: " + e.getMessage());
-                // Seguimos intentando con las demás entradas
+        // Guardar todas las entradas en la base de datos de una vez
+        return guardarEntradas(nuevas);
+    }
+
+    /**
+     * Guarda un conjunto de entradas en una sola operación. Si falla alguna,
+     * la unidad de trabajo en curso se marca para deshacer.
+     * 
+     * @param entradas Entradas a guardar
+     * @return Entradas que se guardaron correctamente
+     */
+    private List<Entrada> guardarEntradas(List<Entrada> entradas) {
+        try {
+            ResultadoLote<Entrada> resultado = entradaDAO.guardarTodas(entradas);
+            for (Map.Entry<Integer, Exception> fallo : resultado.getFallos().entrySet()) {
+                System.out.println("Error al guardar entrada #" + resultado.getFallido(fallo.getKey()).getId()
+                        + " en BD: " + fallo.getValue().getMessage());
+            }
+            if (resultado.hayFallos()) {
+                UnidadDeTrabajo.marcarParaDeshacer();
             }
+            return resultado.getGuardados();
+        } catch (Exception e) {
+            System.out.println("Error al guardar entradas en BD: " + e.getMessage());
+            UnidadDeTrabajo.marcarParaDeshacer();
+            return new ArrayList<>();
         }
-        return entradas;
     }
 
     /**
@@ -126,48 +137,119 @@ public class EntradaServicio {
     }
 
     /**
-     * Marca una entrada como utilizada
+     * Marca una entrada como utilizada. La comprobación la hace la BD en la
+     * misma sentencia que la marca, así que aunque dos tornos lean la misma
+     * entrada a la vez solo uno la deja pasar.
      * 
      * @param entrada Entrada a marcar
      * @return true si se pudo marcar correctamente
      */
     public boolean marcarEntradaComoUtilizada(Entrada entrada) {
-        if (!entrada.isUtilizada()) {
-            entrada.marcarComoUtilizada();
+        if (entrada.isUtilizada()) {
+            return false;
+        }
 
-            try {
-                // Actualizar en la base de datos
-                entradaDAO.guardar(entrada);
-                return true;
-            } catch (Exception e) {
-                System.out.println("Error al actualizar entrada en BD: " + e.getMessage());
+        try {
+            if (!entradaDAO.marcarComoUtilizada(entrada.getId())) {
                 return false;
             }
+            reflejarUtilizada(entrada);
+            return true;
+        } catch (Exception e) {
+            System.out.println("Error al actualizar entrada en BD: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Marca como utilizadas todas las entradas aún sin utilizar de una
+     * reserva (entrada de un grupo) en un solo viaje a la BD
+     * 
+     * @param reserva Reserva cuyas entradas se marcan
+     * @return Número de entradas marcadas
+     */
+    public int marcarEntradasDeReservaComoUtilizadas(Reserva reserva) {
+        int marcadas;
+        try {
+            marcadas = entradaDAO.marcarComoUtilizadasPorReserva(reserva.getId());
+        } catch (Exception e) {
+            System.out.println("Error al actualizar entradas en BD: " + e.getMessage());
+            return 0;
+        }
+
+        // Todas las entradas de la reserva están ya utilizadas en la BD; se
+        // actualizan las que ya estén en memoria sin forzar su carga
+        List<Entrada> entradas = reserva.getEntradas();
+        if (!(entradas instanceof ListaPerezosa) || ((ListaPerezosa<Entrada>) entradas).estaCargada()) {
+            for (Entrada entrada : entradas) {
+                reflejarUtilizada(entrada);
+            }
+        }
+        return marcadas;
+    }
+
+    /**
+     * Marca como utilizadas varias entradas sueltas en un solo viaje a la BD
+     * (por ejemplo, un lote de lecturas de los tornos)
+     * 
+     * @param ids IDs de las entradas
+     * @return IDs de las entradas marcadas ahora (las demás ya estaban
+     *         utilizadas), o null si no se pudo actualizar la BD
+     */
+    public List<Integer> marcarEntradasComoUtilizadas(Collection<Integer> ids) {
+        try {
+            return entradaDAO.marcarComoUtilizadas(ids);
+        } catch (Exception e) {
+            System.out.println("Error al actualizar entradas en BD: " + e.getMessage());
+            return null;
         }
-        return false;
     }
 
     /**
-     * Asigna visitantes a las entradas
+     * Refleja en la entrada en memoria que ya está utilizada en la BD
+     * 
+     * @param entrada Entrada a actualizar
+     */
+    private void reflejarUtilizada(Entrada entrada) {
+        entrada.marcarComoUtilizada();
+        // Ya escrito por la sentencia condicional: un guardado posterior no
+        // tiene que repetirlo
+        entrada.marcarCampoGuardado(Entrada.CAMPO_UTILIZADA);
+    }
+
+    /**
+     * Asigna a cada entrada el visitante de la misma posición y guarda las
+     * entradas. Las listas van emparejadas: si no tienen el mismo tamaño o
+     * algún visitante no está guardado, no se asigna ninguno y la unidad de
+     * trabajo en curso se marca para deshacer.
      * 
      * @param reserva    Reserva a la que pertenecen las entradas
      * @param entradas   Lista de entradas
-     * @param visitantes Lista de visitantes
+     * @param visitantes Visitante de cada entrada, en el mismo orden
+     * @return true si se asignaron y guardaron todas las entradas
      */
-    public void asignarVisitantes(Reserva reserva, List<Entrada> entradas, List<Visitante> visitantes) {
-        int minSize = Math.min(entradas.size(), visitantes.size());
-        for (int i = 0; i < minSize; i++) {
-            Entrada entrada = entradas.get(i);
-            entrada.asignarVisitante(visitantes.get(i));
-
-            try {
-                // Actualizar en la base de datos
-                entradaDAO.guardar(entrada);
-            } catch (Exception e) {
-                System.out.println("Error al actualizar entrada en BD: " + e.getMessage());
-                // Seguimos intentando con las demás entradas
+    public boolean asignarVisitantes(Reserva reserva, List<Entrada> entradas, List<Visitante> visitantes) {
+        if (entradas.size() != visitantes.size()) {
+            System.out.println("La reserva #" + reserva.getId() + " tiene " + entradas.size() + " entradas y se han"
+                    + " recibido " + visitantes.size() + " visitantes: no se asigna ninguno");
+            UnidadDeTrabajo.marcarParaDeshacer();
+            return false;
+        }
+        for (Visitante visitante : visitantes) {
+            if (visitante.esNueva()) {
+                System.out.println("El visitante " + visitante.getNombreCompleto()
+                        + " no está guardado: no se asigna ninguno");
+                UnidadDeTrabajo.marcarParaDeshacer();
+                return false;
             }
         }
+
+        for (int i = 0; i < entradas.size(); i++) {
+            entradas.get(i).asignarVisitante(visitantes.get(i));
+        }
+
+        // Actualizar todas las entradas en la base de datos de una vez
+        return guardarEntradas(entradas).size() == entradas.size();
     }
 
     /**
@@ -198,4 +280,19 @@ public class EntradaServicio {
             return new ArrayList<>();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Obtiene las entradas de una reserva que no tienen visitante asignado
+     * 
+     * @param reserva Reserva de la que se quieren obtener las entradas
+     * @return Lista de entradas sin visitante
+     */
+    public List<Entrada> obtenerEntradasSinVisitante(Reserva reserva) {
+        try {
+            return entradaDAO.buscarSinVisitantePorReserva(reserva.getId());
+        } catch (Exception e) {
+            System.out.println("Error al obtener entradas por reserva de BD: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package jurassicpark.servicio;
+
+import jurassicpark.util.Configuracion;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Recogida de las lecturas de los tornos y escritura en lotes en la BD.
+ *
+ * Los hilos de los tornos dejan cada lectura en una cola circular acotada sin
+ * cerrojos y vuelven enseguida; un único hilo consumidor las saca, descarta
+ * las repetidas y marca las demás como utilizadas con
+ * EntradaServicio.marcarEntradasComoUtilizadas, en lotes de jp.tornos.lote
+ * lecturas (256 por defecto) o cuando la lectura más antigua del lote lleva
+ * jp.tornos.espera.ms esperando (20 por defecto). La capacidad de la cola se
+ * configura con jp.tornos.capacidad (16384 por defecto).
+ *
+ * Con un ValidadorAcceso cargado, el consumidor pasa cada lectura por sus
+ * mapas del día: las entradas ya utilizadas se descartan como repetidas y
+ * las que no son del día ni llegan a la BD. Sin validador solo se descartan
+ * las repetidas dentro del lote en curso; las demás las cuenta la BD como ya
+ * utilizadas.
+ *
+ * Con la cola llena registrar() devuelve false en lugar de bloquear: es el
+ * torno quien decide si reintenta o avisa. Si la BD falla, el lote se
+ * reintenta y, mientras tanto, la cola se va llenando hasta rechazar
+ * lecturas. Los contadores y el retraso se pueden consultar en cualquier
+ * momento.
+ */
+public class IngestaTornos implements AutoCloseable {
+
+    private static final int CAPACIDAD = Configuracion.getInt("jp.tornos.capacidad", 16384);
+    private static final int LOTE = Configuracion.getInt("jp.tornos.lote", 256);
+    private static final long ESPERA_MS = Configuracion.getLong("jp.tornos.espera.ms", 20);
+
+    // Pausa del consumidor cuando la cola está vacía
+    private static final long PAUSA_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final EntradaServicio entradaServicio;
+    // null si no se valida contra las entradas del día
+    private final ValidadorAcceso validador;
+    private final Anillo anillo;
+    private final int lote;
+    private final long esperaNanos;
+    private final Thread consumidor;
+    private volatile boolean activa = true;
+
+    // Contadores de los tornos
+    private final LongAdder recibidas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+
+    // Contadores del consumidor (solo él los escribe)
+    private volatile long duplicadas;
+    private volatile long noValidas;
+    private volatile long guardadas;
+    private volatile long yaUtilizadas;
+    private volatile long lotes;
+    private volatile int enLote;
+    private volatile long retrasoUltimoLote;
+    private volatile long retrasoMaximo;
+
+    /**
+     * Constructor de la clase IngestaTornos con la configuración por defecto
+     */
+    public IngestaTornos() {
+        this(new EntradaServicio(), null, CAPACIDAD, LOTE, ESPERA_MS);
+    }
+
+    /**
+     * Constructor de la clase IngestaTornos con la configuración por defecto
+     * que valida las lecturas con las entradas del día
+     *
+     * @param validador Validador con el día ya cargado
+     */
+    public IngestaTornos(ValidadorAcceso validador) {
+        this(new EntradaServicio(), validador, CAPACIDAD, LOTE, ESPERA_MS);
+    }
+
+    /**
+     * Constructor de la clase IngestaTornos con dependencias explícitas
+     *
+     * @param entradaServicio Servicio con el que se guardan los lotes
+     * @param capacidad       Lecturas que caben en la cola (se redondea a
+     *                        potencia de 2)
+     * @param lote            Lecturas por lote como máximo
+     * @param esperaMs        Espera máxima de una lectura antes de guardar su
+     *                        lote aunque no esté lleno
+     */
+    public IngestaTornos(EntradaServicio entradaServicio, int capacidad, int lote, long esperaMs) {
+        this(entradaServicio, null, capacidad, lote, esperaMs);
+    }
+
+    /**
+     * Constructor de la clase IngestaTornos con dependencias explícitas y
+     * validación de las lecturas
+     *
+     * @param entradaServicio Servicio con el que se guardan los lotes
+     * @param validador       Validador con el día ya cargado, o null para no
+     *                        validar
+     * @param capacidad       Lecturas que caben en la cola (se redondea a
+     *                        potencia de 2)
+     * @param lote            Lecturas por lote como máximo
+     * @param esperaMs        Espera máxima de una lectura antes de guardar su
+     *                        lote aunque no esté lleno
+     */
+    public IngestaTornos(EntradaServicio entradaServicio, ValidadorAcceso validador, int capacidad, int lote,
+            long esperaMs) {
+        this.entradaServicio = entradaServicio;
+        this.validador = validador;
+        this.anillo = new Anillo(capacidad);
+        this.lote = Math.max(1, lote);
+        this.esperaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, esperaMs));
+        this.consumidor = new Thread(this::consumir, "tornos-consumidor");
+        this.consumidor.setDaemon(true);
+        this.consumidor.start();
+    }
+
+    /**
+     * Registra una lectura sin esperar
+     *
+     * @param entradaId ID leído en el torno
+     * @return false si la cola está llena y la lectura no se ha registrado
+     */
+    public boolean registrar(int entradaId) {
+        if (entradaId < 0) {
+            throw new IllegalArgumentException("ID de entrada no válido: " + entradaId);
+        }
+        if (!activa) {
+            throw new IllegalStateException("La ingesta de los tornos está cerrada");
+        }
+        if (anillo.ofrecer(entradaId, System.nanoTime())) {
+            recibidas.increment();
+            return true;
+        }
+        rechazadas.increment();
+        return false;
+    }
+
+    /**
+     * Registra una lectura esperando como mucho el tiempo indicado a que haya
+     * sitio en la cola
+     *
+     * @param entradaId ID leído en el torno
+     * @param espera    Tiempo máximo de espera
+     * @param unidad    Unidad de la espera
+     * @return false si la cola ha seguido llena todo ese tiempo
+     */
+    public boolean registrar(int entradaId, long espera, TimeUnit unidad) {
+        if (entradaId < 0) {
+            throw new IllegalArgumentException("ID de entrada no válido: " + entradaId);
+        }
+        long limite = System.nanoTime() + unidad.toNanos(espera);
+        while (true) {
+            if (!activa) {
+                throw new IllegalStateException("La ingesta de los tornos está cerrada");
+            }
+            if (anillo.ofrecer(entradaId, System.nanoTime())) {
+                recibidas.increment();
+                return true;
+            }
+            long restante = limite - System.nanoTime();
+            if (restante <= 0 || Thread.currentThread().isInterrupted()) {
+                rechazadas.increment();
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(restante, PAUSA_NANOS));
+        }
+    }
+
+    /**
+     * Deja de aceptar lecturas, espera a que se guarden las que ya están en
+     * la cola y para el consumidor. Se llama con los tornos ya parados: una
+     * lectura registrada a la vez que el cierre puede quedarse sin guardar.
+     */
+    @Override
+    public void close() {
+        activa = false;
+        LockSupport.unpark(consumidor);
+        try {
+            consumidor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Métricas ---
+
+    /**
+     * @return Lecturas aceptadas en la cola
+     */
+    public long getRecibidas() {
+        return recibidas.sum();
+    }
+
+    /**
+     * @return Lecturas rechazadas por tener la cola llena
+     */
+    public long getRechazadas() {
+        return rechazadas.sum();
+    }
+
+    /**
+     * @return Lecturas descartadas por repetir una entrada ya leída (o, con
+     *         validador, ya utilizada)
+     */
+    public long getDuplicadas() {
+        return duplicadas;
+    }
+
+    /**
+     * @return Lecturas descartadas por el validador por no ser entradas del
+     *         día
+     */
+    public long getNoValidas() {
+        return noValidas;
+    }
+
+    /**
+     * @return Entradas marcadas como utilizadas en la BD
+     */
+    public long getGuardadas() {
+        return guardadas;
+    }
+
+    /**
+     * @return Entradas que la BD ya tenía como utilizadas (o que no existen)
+     */
+    public long getYaUtilizadas() {
+        return yaUtilizadas;
+    }
+
+    /**
+     * @return Lotes escritos en la BD
+     */
+    public long getLotes() {
+        return lotes;
+    }
+
+    /**
+     * @return Lecturas aún sin guardar: en la cola y en el lote en curso
+     */
+    public long getPendientes() {
+        return anillo.tamano() + enLote;
+    }
+
+    /**
+     * @return Tiempo desde que se registró la lectura más antigua del último
+     *         lote hasta que quedó guardado, en nanosegundos
+     */
+    public long getRetrasoUltimoLoteNanos() {
+        return retrasoUltimoLote;
+    }
+
+    /**
+     * @return Mayor retraso de un lote desde el arranque, en nanosegundos
+     */
+    public long getRetrasoMaximoNanos() {
+        return retrasoMaximo;
+    }
+
+    // --- Consumidor ---
+
+    private void consumir() {
+        int[] leidos = new int[lote];
+        long[] instantes = new long[lote];
+        int[] pendientes = new int[lote];
+        long inicioLote = 0;
+        // Sin validador: IDs del lote en curso, como mucho lote elementos
+        Set<Integer> enCurso = new HashSet<>();
+
+        while (true) {
+            // Se lee antes de vaciar la cola: lo registrado antes del cierre
+            // se recoge en esta misma vuelta
+            boolean cerrando = !activa;
+
+            int n = anillo.sacar(leidos, instantes, lote - enLote);
+            for (int k = 0; k < n; k++) {
+                int id = leidos[k];
+                if (!admitir(id, enCurso)) {
+                    continue;
+                }
+                if (enLote == 0) {
+                    inicioLote = instantes[k];
+                }
+                pendientes[enLote] = id;
+                enLote++;
+            }
+
+            long ahora = System.nanoTime();
+            if (enLote > 0 && (enLote == lote || ahora - inicioLote >= esperaNanos || cerrando)) {
+                if (guardarLote(pendientes, inicioLote)) {
+                    enCurso.clear();
+                } else {
+                    if (cerrando) {
+                        System.out.println("Se pierden " + getPendientes() + " lecturas de los tornos sin guardar");
+                        return;
+                    }
+                    // La BD no responde: se reintenta tras una espera
+                    LockSupport.parkNanos(Math.max(esperaNanos, PAUSA_NANOS));
+                    continue;
+                }
+            }
+
+            if (cerrando && anillo.tamano() == 0 && enLote == 0) {
+                return;
+            }
+            if (n == 0) {
+                LockSupport.parkNanos(PAUSA_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Decide si una lectura entra en el lote en curso y, si no, la cuenta
+     *
+     * @param id      ID leído en el torno
+     * @param enCurso IDs del lote en curso (solo sin validador)
+     * @return true si hay que marcarla en la BD
+     */
+    private boolean admitir(int id, Set<Integer> enCurso) {
+        if (validador == null) {
+            if (!enCurso.add(id)) {
+                duplicadas++;
+                return false;
+            }
+            return true;
+        }
+
+        ValidadorAcceso.Resultado resultado = validador.aplicar(id);
+        if (resultado == ValidadorAcceso.Resultado.YA_UTILIZADA) {
+            duplicadas++;
+            return false;
+        }
+        if (resultado == ValidadorAcceso.Resultado.NO_VALIDA) {
+            noValidas++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Guarda el lote en curso. La BD lo marca todo o nada, así que un lote
+     * reintentado se cuenta igual que si hubiera salido a la primera.
+     *
+     * @return false si la BD falló y el lote sigue pendiente
+     */
+    private boolean guardarLote(int[] pendientes, long inicioLote) {
+        List<Integer> ids = new ArrayList<>(enLote);
+        for (int i = 0; i < enLote; i++) {
+            ids.add(pendientes[i]);
+        }
+
+        List<Integer> marcadas = entradaServicio.marcarEntradasComoUtilizadas(ids);
+        if (marcadas == null) {
+            return false;
+        }
+
+        long retraso = System.nanoTime() - inicioLote;
+        guardadas += marcadas.size();
+        yaUtilizadas += enLote - marcadas.size();
+        lotes++;
+        retrasoUltimoLote = retraso;
+        retrasoMaximo = Math.max(retrasoMaximo, retraso);
+        enLote = 0;
+        return true;
+    }
+
+    /**
+     * Cola circular acotada de varios productores y un consumidor, sin
+     * cerrojos. Cada hueco lleva un número de secuencia que indica si está
+     * libre para la vuelta actual del productor o lleno para el consumidor.
+     */
+    private static final class Anillo {
+        private final int mascara;
+        private final int[] ids;
+        private final long[] instantes;
+        private final AtomicLongArray secuencias;
+        private final AtomicLong cola = new AtomicLong();
+        // Solo la avanza el consumidor; volátil para poder medir el tamaño
+        private volatile long cabeza;
+
+        Anillo(int capacidad) {
+            int tamano = Integer.highestOneBit(Math.max(2, capacidad) - 1) << 1;
+            this.mascara = tamano - 1;
+            this.ids = new int[tamano];
+            this.instantes = new long[tamano];
+            this.secuencias = new AtomicLongArray(tamano);
+            for (int i = 0; i < tamano; i++) {
+                secuencias.set(i, i);
+            }
+        }
+
+        boolean ofrecer(int id, long instante) {
+            long posicion = cola.get();
+            while (true) {
+                int hueco = (int) posicion & mascara;
+                long diferencia = secuencias.get(hueco) - posicion;
+                if (diferencia == 0) {
+                    if (cola.compareAndSet(posicion, posicion + 1)) {
+                        ids[hueco] = id;
+                        instantes[hueco] = instante;
+                        // Publica el hueco para el consumidor
+                        secuencias.set(hueco, posicion + 1);
+                        return true;
+                    }
+                    posicion = cola.get();
+                } else if (diferencia < 0) {
+                    // El consumidor aún no ha liberado este hueco: cola llena
+                    return false;
+                } else {
+                    posicion = cola.get();
+                }
+            }
+        }
+
+        /**
+         * Saca hasta max lecturas publicadas, en orden
+         *
+         * @return Número de lecturas sacadas
+         */
+        int sacar(int[] destinoIds, long[] destinoInstantes, int max) {
+            long posicion = cabeza;
+            int n = 0;
+            while (n < max) {
+                int hueco = (int) posicion & mascara;
+                if (secuencias.get(hueco) != posicion + 1) {
+                    break;
+                }
+                destinoIds[n] = ids[hueco];
+                destinoInstantes[n] = instantes[hueco];
+                // Libera el hueco para la siguiente vuelta de los productores
+                secuencias.set(hueco, posicion + mascara + 1);
+                posicion++;
+                n++;
+            }
+            cabeza = posicion;
+            return n;
+        }
+
+        long tamano() {
+            return Math.max(0, cola.get() - cabeza);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package jurassicpark.servicio;
 
+import jurassicpark.dao.FabricaDAO;
+import jurassicpark.dao.IGeneradorIds;
 import jurassicpark.dao.IReservaDAO;
-import jurassicpark.dao.ReservaDAOMySQL;
+import jurassicpark.dao.Pagina;
+import jurassicpark.dao.PlanCarga;
 import jurassicpark.modelo.gestion.Cliente;
 import jurassicpark.modelo.gestion.Reserva;
+import jurassicpark.modelo.gestion.ReservaResumen;
 import jurassicpark.modelo.gestion.Entrada;
 import jurassicpark.modelo.gestion.Visitante;
 
@@ -21,34 +25,25 @@ public class ReservaServicio {
     // DAO para acceso a datos
     private IReservaDAO reservaDAO;
 
-    // Contador para generar IDs automáticamente
-    private static int contadorReservas = 1000; // Empezamos desde 1000
+    // Generador de IDs (empezamos desde 1000)
+    private IGeneradorIds generadorIds;
 
     /**
      * Constructor de la clase ReservaServicio
      */
     public ReservaServicio() {
-        // Inicializar el DAO
-        this.reservaDAO = new ReservaDAOMySQL();
-        actualizarContador();
+        this(FabricaDAO.crearReservaDAO(), FabricaDAO.crearGeneradorIds("reserva", "reserva", "idreserva", 1000));
     }
 
     /**
-     * Actualiza el contador de IDs
+     * Constructor de la clase ReservaServicio con dependencias explícitas
+     * 
+     * @param reservaDAO   DAO de reservas
+     * @param generadorIds Generador de IDs de reservas
      */
-    private void actualizarContador() {
-        try {
-            // Obtener todas las reservas y actualizar contador si es necesario
-            List<Reserva> reservas = reservaDAO.buscarTodas();
-            for (Reserva reserva : reservas) {
-                if (reserva.getId() > contadorReservas) {
-                    contadorReservas = reserva.getId();
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error al actualizar contador de reservas: " + e.getMessage());
-            e.printStackTrace();
-        }
+    public ReservaServicio(IReservaDAO reservaDAO, IGeneradorIds generadorIds) {
+        this.reservaDAO = reservaDAO;
+        this.generadorIds = generadorIds;
     }
 
     /**
@@ -56,12 +51,17 @@ public class ReservaServicio {
      * 
      * @param cliente     Cliente que realiza la reserva
      * @param fechaVisita Fecha de la visita
-     * @return Reserva creada
+     * @return Reserva creada o null si no se pudo obtener un ID
      */
     public Reserva crearReserva(Cliente cliente, Date fechaVisita) {
-        actualizarContador();
+        int id;
+        try {
+            id = generadorIds.siguienteId();
+        } catch (Exception e) {
+            System.out.println("Error al obtener ID de reserva: " + e.getMessage());
+            return null;
+        }
 
-        int id = ++contadorReservas; // Incrementamos el contador y asignamos el nuevo ID
         Reserva reserva = new Reserva(id, cliente, fechaVisita);
 
         try {
@@ -83,12 +83,6 @@ public class ReservaServicio {
      * @return Reserva creada
      */
     public Reserva crearReserva(int id, Cliente cliente, Date fechaVisita) {
-        actualizarContador();
-
-        if (id > contadorReservas) {
-            contadorReservas = id;
-        }
-
         Reserva reserva = new Reserva(id, cliente, fechaVisita);
 
         try {
@@ -131,6 +125,66 @@ public class ReservaServicio {
         }
     }
 
+    /**
+     * Obtiene el resumen de todas las reservas, sin cargar sus entradas
+     * 
+     * @return Lista de resúmenes
+     */
+    public List<ReservaResumen> obtenerResumenesReservas() {
+        try {
+            return reservaDAO.buscarResumenes();
+        } catch (Exception e) {
+            System.out.println("Error al obtener reservas de BD: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Obtiene el resumen de las reservas con entradas en las que ninguna
+     * tiene visitante asignado
+     * 
+     * @return Lista de resúmenes
+     */
+    public List<ReservaResumen> obtenerResumenesSinVisitantes() {
+        try {
+            return reservaDAO.buscarResumenesSinVisitantes();
+        } catch (Exception e) {
+            System.out.println("Error al obtener reservas de BD: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Obtiene el resumen de las reservas con alguna entrada sin utilizar
+     * 
+     * @return Lista de resúmenes
+     */
+    public List<ReservaResumen> obtenerResumenesConEntradasSinUtilizar() {
+        try {
+            return reservaDAO.buscarResumenesConEntradasSinUtilizar();
+        } catch (Exception e) {
+            System.out.println("Error al obtener reservas de BD: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Obtiene una página de resúmenes de reservas ordenados por ID
+     * 
+     * @param despuesDeId ID de la última reserva de la página anterior (0 para
+     *                    la primera)
+     * @param limite      Número máximo de reservas
+     * @return Página de resúmenes (vacía si hay error)
+     */
+    public Pagina<ReservaResumen> obtenerPaginaResumenesReservas(int despuesDeId, int limite) {
+        try {
+            return reservaDAO.buscarPaginaResumenes(despuesDeId, limite);
+        } catch (Exception e) {
+            System.out.println("Error al obtener reservas de BD: " + e.getMessage());
+            return new Pagina<>(new ArrayList<>(), false, 0);
+        }
+    }
+
     /**
      * Busca una reserva por su ID
      * 
@@ -147,6 +201,22 @@ public class ReservaServicio {
         }
     }
 
+    /**
+     * Busca una reserva por su ID leyendo a la vez lo que indique el plan
+     * 
+     * @param id   ID de la reserva a buscar
+     * @param plan Asociaciones que se van a usar
+     * @return Reserva encontrada o null si no existe
+     */
+    public Reserva buscarReservaPorId(int id, PlanCarga plan) {
+        try {
+            return reservaDAO.buscarPorId(id, plan);
+        } catch (Exception e) {
+            System.out.println("Error al buscar reserva en BD: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Obtiene todas las reservas de un cliente específico
      * 
@@ -0,0 +1,142 @@
+package jurassicpark.servicio;
+
+import jurassicpark.connection.ConnectionJP;
+import jurassicpark.connection.DataSourceTransaccional;
+import jurassicpark.dao.FabricaDAO;
+import jurassicpark.dao.MapaIdentidad;
+import jurassicpark.dao.SincronizacionTransaccion;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Unidad de trabajo que agrupa varias operaciones de servicio en una sola
+ * transacción.
+ *
+ * Mientras está abierta, todos los DAOs del hilo actual usan la misma
+ * conexión, y todo se confirma con un único commit al llamar a confirmar().
+ * Si se cierra sin confirmar, se deshace todo. Si ya hay una unidad abierta en
+ * el hilo, la nueva se une a ella y solo la exterior confirma; si la anidada
+ * se cierra sin confirmar, la exterior ya no puede confirmar y se deshace
+ * entera. Un servicio que no consigue guardar todo lo que se le pidió hace
+ * lo mismo con marcarParaDeshacer(), de modo que confirmar() falla en lugar
+ * de dejar guardada solo una parte de la operación.
+ *
+ * Cada unidad abre además un ámbito del MapaIdentidad: dentro de ella cada
+ * entidad se carga una sola vez y todas las búsquedas devuelven la misma
+ * instancia.
+ *
+ * Con el backend en memoria (ver FabricaDAO) no hay transacciones: la unidad
+ * solo abre el ámbito del MapaIdentidad y cada guardado es definitivo, aunque
+ * confirmar() sigue avisando de que algo no se pudo guardar.
+ *
+ * <pre>
+ * try (UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar()) {
+ *     ...
+ *     unidad.confirmar();
+ * }
+ * </pre>
+ */
+public class UnidadDeTrabajo implements AutoCloseable {
+
+    private final DataSourceTransaccional dataSource;
+    private final Connection conexion; // null si se une a una unidad exterior o no hay transacción
+    private final boolean transaccional; // false en las unidades de solo lectura
+    private boolean confirmada;
+
+    private UnidadDeTrabajo(DataSourceTransaccional dataSource, Connection conexion, boolean transaccional) {
+        this.dataSource = dataSource;
+        this.conexion = conexion;
+        this.transaccional = transaccional;
+        MapaIdentidad.abrir();
+        if (transaccional) {
+            SincronizacionTransaccion.abrir();
+        }
+    }
+
+    /**
+     * Inicia una unidad de trabajo en el hilo actual
+     * 
+     * @return Unidad de trabajo abierta
+     * @throws SQLException si no se puede abrir la transacción
+     */
+    public static UnidadDeTrabajo iniciar() throws SQLException {
+        if (!FabricaDAO.usaBaseDeDatos()) {
+            return new UnidadDeTrabajo(null, null, true);
+        }
+        DataSourceTransaccional dataSource = ConnectionJP.getDataSource();
+        if (dataSource.hayTransaccion()) {
+            return new UnidadDeTrabajo(dataSource, null, true);
+        }
+        return new UnidadDeTrabajo(dataSource, dataSource.iniciarTransaccion(), true);
+    }
+
+    /**
+     * Inicia una unidad de solo lectura: comparte el mapa de identidad pero
+     * cada DAO sigue confirmando sus propios cambios
+     * 
+     * @return Unidad de trabajo abierta
+     */
+    public static UnidadDeTrabajo iniciarSinTransaccion() {
+        return new UnidadDeTrabajo(null, null, false);
+    }
+
+    /**
+     * Marca la unidad de trabajo en curso en el hilo actual para que se
+     * deshaga al cerrarla: confirmar() fallará. Sin unidad abierta no hace
+     * nada.
+     */
+    public static void marcarParaDeshacer() {
+        SincronizacionTransaccion.marcarSoloDeshacer();
+    }
+
+    /**
+     * Confirma todos los cambios hechos en la unidad con un único commit
+     * 
+     * @throws SQLException si falla el commit o la unidad se ha marcado para
+     *                      deshacer
+     */
+    public void confirmar() throws SQLException {
+        if (transaccional && SincronizacionTransaccion.esSoloDeshacer()) {
+            throw new SQLException("No se ha podido guardar todo: se deshace la operación");
+        }
+        if (conexion != null) {
+            conexion.commit();
+        }
+        confirmada = true;
+    }
+
+    /**
+     * Cierra la unidad. Si no se confirmó, deshace todos sus cambios (o, si
+     * es anidada, marca la exterior para deshacer).
+     */
+    @Override
+    public void close() {
+        try {
+            if (conexion != null) {
+                deshacerSiHaceFalta();
+            }
+        } finally {
+            if (transaccional) {
+                SincronizacionTransaccion.cerrar(confirmada);
+            }
+            MapaIdentidad.cerrar();
+        }
+    }
+
+    private void deshacerSiHaceFalta() {
+        try {
+            if (!confirmada) {
+                conexion.rollback();
+            }
+        } catch (SQLException e) {
+            System.out.println("Error al deshacer la transacción: " + e.getMessage());
+        } finally {
+            dataSource.terminarTransaccion();
+            try {
+                conexion.close();
+            } catch (SQLException e) {
+                /* ignorar */ }
+        }
+    }
+}
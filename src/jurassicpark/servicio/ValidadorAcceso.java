@@ -0,0 +1,426 @@
+package jurassicpark.servicio;
+
+import jurassicpark.dao.FabricaDAO;
+import jurassicpark.dao.IEntradaDAO;
+import jurassicpark.util.Configuracion;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Validación de entradas en los tornos sin consultar la BD en cada lectura.
+ *
+ * Al cargar un día se leen una sola vez las entradas de las reservas no
+ * canceladas con visita ese día y se guardan en mapas de bits fuera del heap,
+ * con un bit por ID de entrada entre la menor y la mayor del día:
+ *
+ * <pre>
+ * válidas:     la entrada es de hoy y su reserva no está cancelada
+ * utilizadas:  la entrada ya ha pasado por un torno
+ * pendientes:  utilizada aquí pero aún no escrita en la BD
+ * </pre>
+ *
+ * Validar es comprobar el bit de válida y poner el de utilizada con un
+ * compare-and-set, así que si dos tornos leen la misma entrada a la vez solo
+ * uno la acepta. No se crea ningún objeto por lectura. Una recarga solo
+ * detiene a los tornos mientras pasa al índice nuevo las entradas utilizadas
+ * en el anterior desde que se leyó la BD. Un hilo aparte escribe
+ * en la BD cada jp.acceso.persistencia.ms (100 por defecto) las entradas
+ * pendientes, todas en un lote con IEntradaDAO.marcarComoUtilizadas.
+ *
+ * Los mapas solo saben de las entradas que existían al cargar: las vendidas
+ * después para el mismo día no son válidas hasta que se vuelva a cargar. Se
+ * supone además que todos los tornos del día validan a través de esta
+ * instancia; las entradas marcadas por otra vía se detectan al escribirlas y
+ * se cuentan en getYaUtilizadasEnBD.
+ */
+public class ValidadorAcceso implements AutoCloseable {
+
+    /**
+     * Respuesta del torno a una entrada
+     */
+    public enum Resultado {
+        ACEPTADA, YA_UTILIZADA, NO_VALIDA
+    }
+
+    private static final long PERIODO_PERSISTENCIA_MS = Math.max(1,
+            Configuracion.getLong("jp.acceso.persistencia.ms", 100));
+
+    // Acceso atómico a las palabras de 64 bits de los mapas
+    private static final VarHandle PALABRA = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    private final IEntradaDAO entradaDAO;
+    private final ScheduledExecutorService persistencia;
+
+    // null hasta la primera carga
+    private volatile Indice indice;
+
+    // Índice sustituido por la última recarga: se vacía una vez más por si
+    // quedaba algo pendiente
+    private volatile Indice retirado;
+
+    // Los tornos validan con el de lectura; la recarga toma el de escritura
+    // para cambiar de índice sin que se acepte nada en el viejo a la vez
+    private final StampedLock cambioIndice = new StampedLock();
+
+    // Contadores de la persistencia (solo se escriben dentro de persistir)
+    private volatile long persistidas;
+    private volatile long yaUtilizadasEnBD;
+
+    /**
+     * Constructor de la clase ValidadorAcceso
+     */
+    public ValidadorAcceso() {
+        this(FabricaDAO.crearEntradaDAO());
+    }
+
+    /**
+     * Constructor de la clase ValidadorAcceso con dependencias explícitas
+     *
+     * @param entradaDAO DAO de entradas
+     */
+    public ValidadorAcceso(IEntradaDAO entradaDAO) {
+        this.entradaDAO = entradaDAO;
+        this.persistencia = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "acceso-persistencia");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        persistencia.scheduleWithFixedDelay(this::persistirPendientes, PERIODO_PERSISTENCIA_MS,
+                PERIODO_PERSISTENCIA_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Carga las entradas válidas para un día. Si ya había un día cargado, sus
+     * entradas pendientes se escriben antes en la BD.
+     *
+     * @param fechaVisita Cualquier instante del día de visita
+     * @return Número de entradas válidas cargadas, o -1 si no se pudieron leer
+     */
+    public int cargar(Date fechaVisita) {
+        ZoneId zona = ZoneId.systemDefault();
+        LocalDate dia = fechaVisita.toInstant().atZone(zona).toLocalDate();
+        Date desde = Date.from(dia.atStartOfDay(zona).toInstant());
+        Date hasta = Date.from(dia.plusDays(1).atStartOfDay(zona).toInstant());
+
+        Indice anterior = indice;
+        if (anterior != null) {
+            persistir(anterior);
+        }
+
+        Lectura lectura = new Lectura();
+        try {
+            entradaDAO.recorrerEstadosPorFechaVisita(desde, hasta, lectura);
+        } catch (Exception e) {
+            System.out.println("Error al cargar las entradas del día en BD: " + e.getMessage());
+            return -1;
+        }
+
+        Indice nuevo = lectura.crearIndice();
+        long sello = cambioIndice.writeLock();
+        try {
+            // Lo aceptado en el índice viejo desde que se leyó la BD no consta
+            // aún en ella como utilizado
+            if (anterior != null) {
+                nuevo.copiarUtilizadas(anterior);
+            }
+            indice = nuevo;
+        } finally {
+            cambioIndice.unlockWrite(sello);
+        }
+        if (anterior != null) {
+            retirado = anterior;
+            persistir(anterior);
+        }
+        return lectura.total;
+    }
+
+    /**
+     * Valida una entrada en el torno y, si se acepta, la marca como utilizada.
+     * La BD se actualiza después, en segundo plano.
+     *
+     * @param entradaId ID leído en el torno
+     * @return Respuesta del torno
+     */
+    public Resultado validar(int entradaId) {
+        long sello = cambioIndice.readLock();
+        try {
+            Indice actual = indice;
+            if (actual == null) {
+                throw new IllegalStateException("No se ha cargado ningún día");
+            }
+            return actual.validar(entradaId, true);
+        } finally {
+            cambioIndice.unlockRead(sello);
+        }
+    }
+
+    /**
+     * Como validar, pero la entrada aceptada no queda pendiente de escribir:
+     * es para quien la escribe en la BD por su cuenta, como IngestaTornos.
+     * Sin ningún día cargado no hay entradas válidas.
+     *
+     * @param entradaId ID leído en el torno
+     * @return Respuesta del torno
+     */
+    Resultado aplicar(int entradaId) {
+        long sello = cambioIndice.readLock();
+        try {
+            Indice actual = indice;
+            if (actual == null) {
+                return Resultado.NO_VALIDA;
+            }
+            return actual.validar(entradaId, false);
+        } finally {
+            cambioIndice.unlockRead(sello);
+        }
+    }
+
+    /**
+     * Indica si una entrada del día cargado ya ha pasado por un torno
+     *
+     * @param entradaId ID de la entrada
+     * @return true si está utilizada (false si no es del día cargado)
+     */
+    public boolean estaUtilizada(int entradaId) {
+        Indice actual = indice;
+        return actual != null && actual.utilizada(entradaId);
+    }
+
+    /**
+     * Para el hilo de persistencia y escribe en la BD lo que quede pendiente
+     */
+    @Override
+    public void close() {
+        persistencia.shutdown();
+        try {
+            persistencia.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persistirPendientes();
+    }
+
+    /**
+     * @return Entradas aceptadas en los tornos y ya marcadas en la BD
+     */
+    public long getPersistidas() {
+        return persistidas;
+    }
+
+    /**
+     * @return Entradas aceptadas en los tornos que la BD ya tenía como
+     *         utilizadas al escribirlas
+     */
+    public long getYaUtilizadasEnBD() {
+        return yaUtilizadasEnBD;
+    }
+
+    /**
+     * Escribe en la BD lo pendiente del índice actual y del retirado. Es lo
+     * que hace el hilo de persistencia en cada vuelta.
+     */
+    void persistirPendientes() {
+        Indice viejo = retirado;
+        if (viejo != null) {
+            persistir(viejo);
+            retirado = null;
+        }
+        Indice actual = indice;
+        if (actual != null) {
+            persistir(actual);
+        }
+    }
+
+    /**
+     * Escribe en la BD las entradas pendientes de un índice en un solo lote.
+     * Si la BD falla, todas vuelven a quedar pendientes para la siguiente
+     * vuelta.
+     *
+     * @param indice Índice a vaciar
+     */
+    private synchronized void persistir(Indice indice) {
+        if (!indice.hayPendientes) {
+            return;
+        }
+        // Se baja antes de recorrer: lo que se marque a partir de aquí se
+        // escribe en esta vuelta o vuelve a levantarlo
+        indice.hayPendientes = false;
+
+        long[] tomadas = new long[indice.palabras];
+        List<Integer> ids = new ArrayList<>();
+        for (int p = 0; p < indice.palabras; p++) {
+            long bits = (long) PALABRA.getAndSet(indice.mapas, indice.pendientes + p * Long.BYTES, 0L);
+            tomadas[p] = bits;
+            while (bits != 0) {
+                ids.add(indice.primerId + p * Long.SIZE + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<Integer> marcadas;
+        try {
+            marcadas = entradaDAO.marcarComoUtilizadas(ids);
+        } catch (Exception e) {
+            System.out.println("Error al marcar entradas como utilizadas en BD: " + e.getMessage());
+            for (int p = 0; p < indice.palabras; p++) {
+                if (tomadas[p] != 0) {
+                    PALABRA.getAndBitwiseOr(indice.mapas, indice.pendientes + p * Long.BYTES, tomadas[p]);
+                }
+            }
+            indice.hayPendientes = true;
+            return;
+        }
+
+        persistidas += marcadas.size();
+        int yaConstaban = ids.size() - marcadas.size();
+        if (yaConstaban > 0) {
+            yaUtilizadasEnBD += yaConstaban;
+            System.out.println(yaConstaban + " entradas ya constaban como utilizadas en la BD");
+        }
+    }
+
+    /**
+     * Mapas de bits de un día, en un único bloque de memoria directa
+     */
+    private static final class Indice {
+        final int primerId;
+        final int total;
+        final int palabras;
+        final ByteBuffer mapas;
+
+        // Posición en bytes de cada mapa dentro del bloque
+        final int validas = 0;
+        final int utilizadas;
+        final int pendientes;
+
+        volatile boolean hayPendientes;
+
+        Indice(int primerId, int total) {
+            this.primerId = primerId;
+            this.total = total;
+            this.palabras = (total + Long.SIZE - 1) / Long.SIZE;
+            this.utilizadas = palabras * Long.BYTES;
+            this.pendientes = 2 * palabras * Long.BYTES;
+            // Alineado a 8 bytes: los compare-and-set sobre long lo exigen
+            this.mapas = ByteBuffer.allocateDirect(3 * palabras * Long.BYTES + Long.BYTES - 1)
+                    .alignedSlice(Long.BYTES);
+        }
+
+        Resultado validar(int entradaId, boolean pendiente) {
+            int i = entradaId - primerId;
+            if (i < 0 || i >= total || !leer(validas, i)) {
+                return Resultado.NO_VALIDA;
+            }
+
+            int posicion = utilizadas + (i / Long.SIZE) * Long.BYTES;
+            long bit = 1L << i;
+            long palabra;
+            do {
+                palabra = (long) PALABRA.getVolatile(mapas, posicion);
+                if ((palabra & bit) != 0) {
+                    return Resultado.YA_UTILIZADA;
+                }
+            } while (!PALABRA.compareAndSet(mapas, posicion, palabra, palabra | bit));
+
+            if (pendiente) {
+                PALABRA.getAndBitwiseOr(mapas, pendientes + (i / Long.SIZE) * Long.BYTES, bit);
+                hayPendientes = true;
+            }
+            return Resultado.ACEPTADA;
+        }
+
+        boolean utilizada(int entradaId) {
+            int i = entradaId - primerId;
+            return i >= 0 && i < total && leer(utilizadas, i);
+        }
+
+        private boolean leer(int mapa, int i) {
+            long palabra = (long) PALABRA.getVolatile(mapas, mapa + (i / Long.SIZE) * Long.BYTES);
+            return (palabra & (1L << i)) != 0;
+        }
+
+        /**
+         * Marca como utilizadas las entradas que lo están en otro índice,
+         * antes de publicar este
+         *
+         * @param otro Índice que se sustituye
+         */
+        void copiarUtilizadas(Indice otro) {
+            for (int p = 0; p < otro.palabras; p++) {
+                long bits = (long) PALABRA.getVolatile(otro.mapas, otro.utilizadas + p * Long.BYTES);
+                while (bits != 0) {
+                    int i = otro.primerId + p * Long.SIZE + Long.numberOfTrailingZeros(bits) - primerId;
+                    if (i >= 0 && i < total) {
+                        poner(utilizadas, i);
+                    }
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        /**
+         * Pone un bit durante la carga, antes de publicar el índice
+         */
+        void poner(int mapa, int i) {
+            int posicion = mapa + (i / Long.SIZE) * Long.BYTES;
+            long palabra = (long) PALABRA.get(mapas, posicion);
+            PALABRA.set(mapas, posicion, palabra | (1L << i));
+        }
+    }
+
+    /**
+     * Estado de las entradas leído de la BD, antes de saber el rango de IDs
+     */
+    private static final class Lectura implements IEntradaDAO.ConsumidorEstado {
+        int[] ids = new int[1024];
+        boolean[] utilizadas = new boolean[1024];
+        int total;
+        int menor = Integer.MAX_VALUE;
+        int mayor = Integer.MIN_VALUE;
+
+        @Override
+        public void aceptar(int entradaId, boolean utilizada) {
+            if (total == ids.length) {
+                ids = Arrays.copyOf(ids, total * 2);
+                utilizadas = Arrays.copyOf(utilizadas, total * 2);
+            }
+            ids[total] = entradaId;
+            utilizadas[total] = utilizada;
+            total++;
+            menor = Math.min(menor, entradaId);
+            mayor = Math.max(mayor, entradaId);
+        }
+
+        Indice crearIndice() {
+            if (total == 0) {
+                return new Indice(0, 0);
+            }
+            Indice indice = new Indice(menor, mayor - menor + 1);
+            for (int k = 0; k < total; k++) {
+                int i = ids[k] - menor;
+                indice.poner(indice.validas, i);
+                if (utilizadas[k]) {
+                    indice.poner(indice.utilizadas, i);
+                }
+            }
+            return indice;
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package jurassicpark.servicio;
 
+import jurassicpark.dao.FabricaDAO;
+import jurassicpark.dao.IGeneradorIds;
 import jurassicpark.dao.IVisitanteDAO;
-import jurassicpark.dao.VisitanteDAOMySQL;
+import jurassicpark.dao.ResultadoLote;
 import jurassicpark.modelo.gestion.Visitante;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Servicio que gestiona las operaciones relacionadas con los visitantes
@@ -15,33 +18,25 @@ public class VisitanteServicio {
     // DAO para acceso a datos
     private IVisitanteDAO visitanteDAO;
 
-    // Contador para generar IDs automáticamente
-    private static int contadorVisitantes = 6000; // Empezamos desde 6000
+    // Generador de IDs (empezamos desde 6000)
+    private IGeneradorIds generadorIds;
 
     /**
      * Constructor de la clase VisitanteServicio
      */
     public VisitanteServicio() {
-        this.visitanteDAO = new VisitanteDAOMySQL();
-        actualizarContador();
+        this(FabricaDAO.crearVisitanteDAO(), FabricaDAO.crearGeneradorIds("visitante", "visitante", "idvisitante", 6000));
     }
 
     /**
-     * Actualiza el contador de IDs
+     * Constructor de la clase VisitanteServicio con dependencias explícitas
+     * 
+     * @param visitanteDAO DAO de visitantes
+     * @param generadorIds Generador de IDs de visitantes
      */
-    private void actualizarContador() {
-        try {
-            // Obtener todos los visitantes y actualizar contador si es necesario
-            List<Visitante> visitantes = visitanteDAO.buscarTodos();
-            for (Visitante visitante : visitantes) {
-                if (visitante.getId() > contadorVisitantes) {
-                    contadorVisitantes = visitante.getId();
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error al actualizar contador de visitantes: " + e.getMessage());
-            e.printStackTrace();
-        }
+    public VisitanteServicio(IVisitanteDAO visitanteDAO, IGeneradorIds generadorIds) {
+        this.visitanteDAO = visitanteDAO;
+        this.generadorIds = generadorIds;
     }
 
     /**
@@ -50,11 +45,13 @@ public class VisitanteServicio {
      * @param nombre   Nombre del visitante
      * @param apellido Apellido del visitante
      * @param edad     Edad del visitante
-     * @return Visitante creado
+     * @return Visitante creado o null si no se pudo obtener un ID
      */
     public Visitante crearVisitante(String nombre, String apellido, int edad) {
-        int id = ++contadorVisitantes;
-        Visitante visitante = new Visitante(id, nombre, apellido, edad);
+        Visitante visitante = prepararVisitante(nombre, apellido, edad);
+        if (visitante == null) {
+            return null;
+        }
 
         try {
             // Guardar en la base de datos
@@ -65,6 +62,52 @@ public class VisitanteServicio {
         }
     }
 
+    /**
+     * Crea un visitante con ID generado automáticamente sin guardarlo todavía.
+     * Se usa para crear varios visitantes y guardarlos juntos con
+     * guardarVisitantes
+     * 
+     * @param nombre   Nombre del visitante
+     * @param apellido Apellido del visitante
+     * @param edad     Edad del visitante
+     * @return Visitante creado (pendiente de guardar) o null si no se pudo
+     *         obtener un ID
+     */
+    public Visitante prepararVisitante(String nombre, String apellido, int edad) {
+        try {
+            return new Visitante(generadorIds.siguienteId(), nombre, apellido, edad);
+        } catch (Exception e) {
+            System.out.println("Error al obtener ID de visitante: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Guarda varios visitantes en una sola operación. Si falla alguno, la
+     * unidad de trabajo en curso se marca para deshacer.
+     * 
+     * @param visitantes Visitantes a guardar
+     * @return Visitantes que se guardaron correctamente
+     */
+    public List<Visitante> guardarVisitantes(List<Visitante> visitantes) {
+        try {
+            ResultadoLote<Visitante> resultado = visitanteDAO.guardarTodos(visitantes);
+            for (Map.Entry<Integer, Exception> fallo : resultado.getFallos().entrySet()) {
+                Visitante visitante = resultado.getFallido(fallo.getKey());
+                System.out.println("Error al guardar visitante " + visitante.getNombreCompleto()
+                        + " en BD: " + fallo.getValue().getMessage());
+            }
+            if (resultado.hayFallos()) {
+                UnidadDeTrabajo.marcarParaDeshacer();
+            }
+            return resultado.getGuardados();
+        } catch (Exception e) {
+            System.out.println("Error al guardar visitantes en BD: " + e.getMessage());
+            UnidadDeTrabajo.marcarParaDeshacer();
+            return new ArrayList<>();
+        }
+    }
+
     /**
      * Busca un visitante por su ID
      * 
@@ -0,0 +1,98 @@
+package jurassicpark.util;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Clase utilitaria para leer la configuración de la aplicación.
+ *
+ * Los valores se buscan primero en las propiedades del sistema (-Dclave=valor)
+ * y después en el fichero jurassicpark.properties del directorio de trabajo.
+ * Si no aparecen en ninguno se usa el valor por defecto indicado.
+ */
+public class Configuracion {
+
+    private static final String FICHERO = "jurassicpark.properties";
+
+    private static final Properties PROPIEDADES = cargarFichero();
+
+    /**
+     * Carga el fichero de propiedades si existe
+     *
+     * @return Propiedades leídas (vacías si no hay fichero)
+     */
+    private static Properties cargarFichero() {
+        Properties propiedades = new Properties();
+        try (InputStream in = new FileInputStream(FICHERO)) {
+            propiedades.load(in);
+        } catch (IOException e) {
+            // Sin fichero de configuración: se usan los valores por defecto
+        }
+        return propiedades;
+    }
+
+    /**
+     * Obtiene un valor de texto de la configuración
+     *
+     * @param clave           Clave de la propiedad
+     * @param valorPorDefecto Valor a devolver si la clave no está definida
+     * @return Valor configurado o el valor por defecto
+     */
+    public static String getString(String clave, String valorPorDefecto) {
+        String valor = System.getProperty(clave);
+        if (valor == null) {
+            valor = PROPIEDADES.getProperty(clave);
+        }
+        return (valor != null) ? valor.trim() : valorPorDefecto;
+    }
+
+    /**
+     * Obtiene un valor entero de la configuración
+     *
+     * @param clave           Clave de la propiedad
+     * @param valorPorDefecto Valor a devolver si la clave no está definida o no
+     *                        es un número
+     * @return Valor configurado o el valor por defecto
+     */
+    public static int getInt(String clave, int valorPorDefecto) {
+        String valor = getString(clave, null);
+        try {
+            return (valor != null) ? Integer.parseInt(valor) : valorPorDefecto;
+        } catch (NumberFormatException e) {
+            System.out.println("Valor inválido para " + clave + ": " + valor);
+            return valorPorDefecto;
+        }
+    }
+
+    /**
+     * Obtiene un valor entero largo de la configuración
+     *
+     * @param clave           Clave de la propiedad
+     * @param valorPorDefecto Valor a devolver si la clave no está definida o no
+     *                        es un número
+     * @return Valor configurado o el valor por defecto
+     */
+    public static long getLong(String clave, long valorPorDefecto) {
+        String valor = getString(clave, null);
+        try {
+            return (valor != null) ? Long.parseLong(valor) : valorPorDefecto;
+        } catch (NumberFormatException e) {
+            System.out.println("Valor inválido para " + clave + ": " + valor);
+            return valorPorDefecto;
+        }
+    }
+
+    /**
+     * Obtiene un valor booleano de la configuración
+     *
+     * @param clave           Clave de la propiedad
+     * @param valorPorDefecto Valor a devolver si la clave no está definida
+     * @return Valor configurado o el valor por defecto
+     */
+    public static boolean getBoolean(String clave, boolean valorPorDefecto) {
+        String valor = getString(clave, null);
+        return (valor != null) ? Boolean.parseBoolean(valor) : valorPorDefecto;
+    }
+}
@@ -0,0 +1,116 @@
+package jurassicpark.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Lista cuyo contenido se obtiene la primera vez que se usa.
+ *
+ * Sirve para asociaciones que no siempre se necesitan (por ejemplo, las
+ * entradas de una reserva): hasta que alguien consulta la lista no se hace la
+ * carga. Después se comporta como la lista cargada, incluidos los cambios.
+ *
+ * agregarSinCargar añade al final sin hacer la carga: lo añadido se une a la
+ * lista cuando se carga, salvo lo que ya venga en ella (la misma instancia,
+ * que es lo que devuelven los DAOs dentro de una operación).
+ *
+ * @param <E> Tipo de los elementos
+ */
+public class ListaPerezosa<E> extends AbstractList<E> {
+
+    private Supplier<List<E>> carga;
+    private List<E> elementos;
+
+    // Añadidos antes de la carga
+    private List<E> agregados;
+
+    /**
+     * Constructor de la clase ListaPerezosa
+     *
+     * @param carga Obtiene la lista real (modificable) la primera vez que se
+     *              necesita
+     */
+    public ListaPerezosa(Supplier<List<E>> carga) {
+        this.carga = carga;
+    }
+
+    /**
+     * Indica si la lista ya se ha cargado
+     *
+     * @return true si ya se ejecutó la carga
+     */
+    public boolean estaCargada() {
+        return elementos != null;
+    }
+
+    /**
+     * Añade un elemento al final sin hacer la carga si aún no se ha hecho
+     *
+     * @param elemento Elemento a añadir
+     */
+    public void agregarSinCargar(E elemento) {
+        if (estaCargada()) {
+            add(elemento);
+            return;
+        }
+        if (agregados == null) {
+            agregados = new ArrayList<>();
+        }
+        agregados.add(elemento);
+    }
+
+    private List<E> elementos() {
+        if (elementos == null) {
+            elementos = carga.get();
+            carga = null;
+            if (agregados != null) {
+                Set<E> cargados = Collections.newSetFromMap(new IdentityHashMap<>());
+                cargados.addAll(elementos);
+                for (E elemento : agregados) {
+                    if (!cargados.contains(elemento)) {
+                        elementos.add(elemento);
+                    }
+                }
+                agregados = null;
+            }
+        }
+        return elementos;
+    }
+
+    @Override
+    public E get(int indice) {
+        return elementos().get(indice);
+    }
+
+    @Override
+    public int size() {
+        return elementos().size();
+    }
+
+    @Override
+    public E set(int indice, E elemento) {
+        return elementos().set(indice, elemento);
+    }
+
+    @Override
+    public void add(int indice, E elemento) {
+        elementos().add(indice, elemento);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int indice) {
+        modCount++;
+        return elementos().remove(indice);
+    }
+
+    @Override
+    public String toString() {
+        return estaCargada() ? elementos.toString() : "[sin cargar]";
+    }
+}
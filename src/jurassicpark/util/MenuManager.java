@@ -28,6 +28,7 @@ public class MenuManager {
         vista.mostrarMensaje("4. Crear visitantes");
         vista.mostrarMensaje("5. Asignar visitantes a entradas");
         vista.mostrarMensaje("6. Marcar entradas como utilizadas");
+        vista.mostrarMensaje("7. Control de acceso");
         vista.mostrarMensaje("0. Salir");
         vista.mostrarMensaje("\nSeleccione una opción: ");
     }
@@ -0,0 +1,258 @@
+package jurassicpark.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import javax.sql.DataSource;
+
+/**
+ * Base de datos de mentira para probar el código JDBC sin MySQL.
+ *
+ * Cada sentencia ejecutada deja una fila con el SQL y sus parámetros. Las
+ * transacciones, los savepoints y los lotes se simulan sobre esa lista, y
+ * las filas que cumplen fallaSi se rechazan como lo haría una restricción de
+ * la BD. Cada fila escrita recibe una clave consecutiva, como con
+ * AUTO_INCREMENT, que se puede leer con getGeneratedKeys().
+ */
+class BaseDatosFalsa {
+
+    /**
+     * Sentencia ejecutada con sus parámetros
+     */
+    static class Fila {
+        final String sql;
+        final List<Object> parametros;
+
+        Fila(String sql, List<Object> parametros) {
+            this.sql = sql;
+            this.parametros = parametros;
+        }
+
+        Object parametro(int indice) {
+            return parametros.get(indice - 1);
+        }
+    }
+
+    private final List<Fila> filas = new ArrayList<>();
+    private int confirmadas;
+    private int ultimaClave;
+    private boolean autoCommit = true;
+    private Predicate<Fila> fallaSi = fila -> false;
+
+    // Contadores para comprobar qué camino se ha seguido
+    int lotesEjecutados;
+    int lotesFallidos;
+    int filasSueltas;
+    int rollbacksSavepoint;
+    int commits;
+    int rollbacks;
+
+    void fallarSi(Predicate<Fila> condicion) {
+        this.fallaSi = condicion;
+    }
+
+    /**
+     * @return Filas confirmadas
+     */
+    List<Fila> getConfirmadas() {
+        return new ArrayList<>(filas.subList(0, confirmadas));
+    }
+
+    /**
+     * @return Filas escritas, confirmadas o no
+     */
+    List<Fila> getEscritas() {
+        return new ArrayList<>(filas);
+    }
+
+    DataSource getDataSource() {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[] { DataSource.class }, (proxy, metodo, args) -> {
+                    switch (metodo.getName()) {
+                        case "getConnection":
+                            return crearConexion();
+                        case "getParentLogger":
+                            throw new SQLFeatureNotSupportedException();
+                        case "toString":
+                            return "BaseDatosFalsa";
+                        default:
+                            throw new UnsupportedOperationException(metodo.getName());
+                    }
+                });
+    }
+
+    private Connection crearConexion() {
+        InvocationHandler manejador = (proxy, metodo, args) -> {
+            switch (metodo.getName()) {
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    if (autoCommit) {
+                        confirmadas = filas.size();
+                    }
+                    return null;
+                case "commit":
+                    commits++;
+                    confirmadas = filas.size();
+                    return null;
+                case "rollback":
+                    if (args == null) {
+                        rollbacks++;
+                        deshacerHasta(confirmadas);
+                    } else {
+                        rollbacksSavepoint++;
+                        deshacerHasta(((SavepointFalso) args[0]).filas);
+                    }
+                    return null;
+                case "setSavepoint":
+                    return new SavepointFalso(filas.size());
+                case "releaseSavepoint":
+                case "close":
+                    return null;
+                case "prepareStatement":
+                    return crearSentencia((String) args[0]);
+                case "isClosed":
+                    return false;
+                case "toString":
+                    return "ConexionFalsa";
+                default:
+                    throw new UnsupportedOperationException(metodo.getName());
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, manejador);
+    }
+
+    private PreparedStatement crearSentencia(String sql) {
+        TreeMap<Integer, Object> parametros = new TreeMap<>();
+        List<Fila> lote = new ArrayList<>();
+        List<Integer> claves = new ArrayList<>();
+        InvocationHandler manejador = (proxy, metodo, args) -> {
+            String nombre = metodo.getName();
+            if (nombre.equals("setNull")) {
+                parametros.put((Integer) args[0], null);
+                return null;
+            }
+            if (nombre.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parametros.put((Integer) args[0], args[1]);
+                return null;
+            }
+            switch (nombre) {
+                case "clearParameters":
+                    parametros.clear();
+                    return null;
+                case "addBatch":
+                    lote.add(new Fila(sql, new ArrayList<>(parametros.values())));
+                    return null;
+                case "clearBatch":
+                    lote.clear();
+                    return null;
+                case "executeBatch":
+                    claves.clear();
+                    return ejecutarLote(lote, claves);
+                case "executeUpdate":
+                    filasSueltas++;
+                    claves.clear();
+                    claves.add(escribir(new Fila(sql, new ArrayList<>(parametros.values()))));
+                    return 1;
+                case "getGeneratedKeys":
+                    return crearClaves(new ArrayList<>(claves));
+                case "close":
+                    return null;
+                case "toString":
+                    return "SentenciaFalsa{" + sql + "}";
+                default:
+                    throw new UnsupportedOperationException(nombre);
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, manejador);
+    }
+
+    private ResultSet crearClaves(List<Integer> claves) {
+        int[] posicion = { -1 };
+        InvocationHandler manejador = (proxy, metodo, args) -> {
+            switch (metodo.getName()) {
+                case "next":
+                    return ++posicion[0] < claves.size();
+                case "getInt":
+                case "getLong":
+                    return claves.get(posicion[0]);
+                case "close":
+                    return null;
+                case "toString":
+                    return "ClavesFalsas" + claves;
+                default:
+                    throw new UnsupportedOperationException(metodo.getName());
+            }
+        };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, manejador);
+    }
+
+    private int[] ejecutarLote(List<Fila> lote, List<Integer> claves) throws SQLException {
+        lotesEjecutados++;
+        int[] cuentas = new int[lote.size()];
+        try {
+            for (int i = 0; i < lote.size(); i++) {
+                claves.add(escribir(lote.get(i)));
+                cuentas[i] = 1;
+            }
+        } catch (SQLException e) {
+            // Como MySQL: las filas anteriores del lote quedan escritas hasta
+            // que alguien deshaga
+            lotesFallidos++;
+            throw new BatchUpdateException(e.getMessage(), cuentas, e);
+        } finally {
+            lote.clear();
+        }
+        return cuentas;
+    }
+
+    private int escribir(Fila fila) throws SQLException {
+        if (fallaSi.test(fila)) {
+            throw new SQLException("Fila rechazada: " + fila.parametros);
+        }
+        filas.add(fila);
+        if (autoCommit) {
+            confirmadas = filas.size();
+        }
+        // Como AUTO_INCREMENT, una clave deshecha no se vuelve a usar
+        return ++ultimaClave;
+    }
+
+    private void deshacerHasta(int tamano) {
+        while (filas.size() > tamano) {
+            filas.remove(filas.size() - 1);
+        }
+    }
+
+    private static class SavepointFalso implements Savepoint {
+        final int filas;
+
+        SavepointFalso(int filas) {
+            this.filas = filas;
+        }
+
+        @Override
+        public int getSavepointId() {
+            return filas;
+        }
+
+        @Override
+        public String getSavepointName() {
+            return "sp" + filas;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Cliente;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Pruebas de la caché compartida de entidades y de su invalidación al
+ * confirmar
+ */
+public class CacheEntidadesTest {
+
+    private CacheEntidades<Cliente> cache;
+
+    @Before
+    public void setUp() {
+        cache = new CacheEntidades<>("cliente", 2, 0, cliente -> new AlmacenMemoria.FilaCliente(cliente)::crear);
+    }
+
+    private static Cliente cliente(int id, String nombre) {
+        Cliente cliente = new Cliente(id, nombre, "Hammond", nombre + "@example.com", "600000000");
+        cliente.marcarGuardada();
+        return cliente;
+    }
+
+    @Test
+    public void cadaAciertoDevuelveUnaEntidadNueva() {
+        Cliente leido = cliente(1, "John");
+        cache.guardar(1, leido, cache.getGeneracion());
+
+        Cliente primero = cache.buscar(1);
+        Cliente segundo = cache.buscar(1);
+        assertNotSame(leido, primero);
+        assertNotSame(primero, segundo);
+        assertFalse(primero.necesitaGuardarse());
+
+        // Los cambios de quien recibió una copia no llegan a la caché
+        primero.setNombre("Otro");
+        leido.setNombre("Otro más");
+        assertEquals("John", cache.buscar(1).getNombre());
+    }
+
+    @Test
+    public void cuentaAciertosYFallos() {
+        assertNull(cache.buscar(1));
+        cache.guardar(1, cliente(1, "John"), cache.getGeneracion());
+        assertNotNull(cache.buscar(1));
+        assertNotNull(cache.buscar(1));
+
+        assertEquals(2, cache.getAciertos());
+        assertEquals(1, cache.getFallos());
+        assertEquals(2.0 / 3, cache.getTasaAciertos(), 1e-9);
+    }
+
+    @Test
+    public void noGuardaUnaLecturaAnteriorAUnaInvalidacion() {
+        long generacion = cache.getGeneracion();
+        // Mientras se leía la fila, otro hilo la modificó y la descartó
+        cache.invalidar(1);
+        cache.guardar(1, cliente(1, "Antiguo"), generacion);
+
+        assertNull(cache.buscar(1));
+    }
+
+    @Test
+    public void expulsaLaMenosUsada() {
+        cache.guardar(1, cliente(1, "A"), cache.getGeneracion());
+        cache.guardar(2, cliente(2, "B"), cache.getGeneracion());
+        cache.buscar(1);
+        cache.guardar(3, cliente(3, "C"), cache.getGeneracion());
+
+        assertNotNull(cache.buscar(1));
+        assertNull(cache.buscar(2));
+        assertEquals(1, cache.getExpulsiones());
+    }
+
+    @Test
+    public void laInvalidacionEsperaAlCommitDeLaTransaccionExterior() {
+        cache.guardar(1, cliente(1, "John"), cache.getGeneracion());
+
+        SincronizacionTransaccion.abrir();
+        SincronizacionTransaccion.abrir();
+        SincronizacionTransaccion.alConfirmar(() -> cache.invalidar(1));
+        SincronizacionTransaccion.cerrar(true);
+        // Sin confirmar la exterior, otros hilos siguen viendo lo confirmado
+        assertNotNull(cache.buscar(1));
+        SincronizacionTransaccion.cerrar(true);
+
+        assertNull(cache.buscar(1));
+    }
+
+    @Test
+    public void siSeDeshaceNoSeInvalida() {
+        cache.guardar(1, cliente(1, "John"), cache.getGeneracion());
+
+        SincronizacionTransaccion.abrir();
+        SincronizacionTransaccion.alConfirmar(() -> cache.invalidar(1));
+        SincronizacionTransaccion.cerrar(false);
+
+        assertNotNull(cache.buscar(1));
+    }
+
+    @Test
+    public void sinTransaccionSeInvalidaEnElMomento() {
+        cache.guardar(1, cliente(1, "John"), cache.getGeneracion());
+        SincronizacionTransaccion.alConfirmar(() -> cache.invalidar(1));
+        assertNull(cache.buscar(1));
+    }
+}
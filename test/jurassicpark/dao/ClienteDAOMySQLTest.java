@@ -0,0 +1,121 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Cliente;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas del guardado en lote de ClienteDAOMySQL: claves generadas y estado
+ * de los cambios cuando la transacción se deshace
+ */
+public class ClienteDAOMySQLTest {
+
+    private BaseDatosFalsa bd;
+    private ClienteDAOMySQL dao;
+
+    @Before
+    public void setUp() {
+        bd = new BaseDatosFalsa();
+        dao = new ClienteDAOMySQL(bd.getDataSource());
+    }
+
+    @After
+    public void tearDown() {
+        // Por si una prueba falla con la transacción abierta
+        SincronizacionTransaccion.cerrar(false);
+    }
+
+    private static Cliente nuevo(String nombre) {
+        return new Cliente(0, nombre, "Sattler", nombre.toLowerCase() + "@example.com", "600000000");
+    }
+
+    private static Cliente existente(int id, String nombre) {
+        Cliente cliente = new Cliente(id, nombre, "Grant", nombre.toLowerCase() + "@example.com", "600000000");
+        cliente.marcarGuardada();
+        return cliente;
+    }
+
+    @Test
+    public void losNuevosDelLoteRecibenSuIdYQuedanGuardados() throws Exception {
+        Cliente ellie = nuevo("Ellie");
+        Cliente ian = nuevo("Ian");
+
+        ResultadoLote<Cliente> resultado = dao.guardarTodos(Arrays.asList(ellie, ian));
+
+        assertFalse(resultado.hayFallos());
+        assertFalse(ellie.esNueva());
+        assertFalse(ian.esNueva());
+        assertTrue(ellie.getId() > 0);
+        assertNotEquals(ellie.getId(), ian.getId());
+        assertEquals(1, bd.lotesEjecutados);
+    }
+
+    @Test
+    public void unaFilaRechazadaSigueSiendoNueva() throws Exception {
+        bd.fallarSi(fila -> "ian@example.com".equals(fila.parametro(3)));
+        Cliente ellie = nuevo("Ellie");
+        Cliente ian = nuevo("Ian");
+
+        ResultadoLote<Cliente> resultado = dao.guardarTodos(Arrays.asList(ellie, ian));
+
+        assertTrue(resultado.getFallos().containsKey(1));
+        assertFalse(ellie.esNueva());
+        assertTrue(ellie.getId() > 0);
+        assertTrue(ian.esNueva());
+        assertEquals(0, ian.getId());
+    }
+
+    @Test
+    public void alDeshacerLaTransaccionLosCambiosVuelvenAEstarPendientes() throws Exception {
+        Cliente alan = existente(7, "Alan");
+        alan.setNombre("Alan J.");
+        Cliente ellie = nuevo("Ellie");
+
+        Connection conn = bd.getDataSource().getConnection();
+        conn.setAutoCommit(false);
+        SincronizacionTransaccion.abrir();
+        dao.guardarTodos(Arrays.asList(alan, ellie));
+        assertFalse(alan.tieneCambios());
+        assertFalse(ellie.esNueva());
+
+        conn.rollback();
+        SincronizacionTransaccion.cerrar(false);
+
+        assertTrue(alan.haCambiado(Cliente.CAMPO_NOMBRE));
+        assertTrue(ellie.esNueva());
+
+        // Un nuevo intento vuelve a escribir los dos
+        conn.setAutoCommit(true);
+        dao.guardarTodos(Arrays.asList(alan, ellie));
+        assertEquals(2, bd.getConfirmadas().size());
+        assertFalse(alan.tieneCambios());
+        assertFalse(ellie.esNueva());
+    }
+
+    @Test
+    public void alConfirmarLaTransaccionSiguenGuardados() throws Exception {
+        Cliente alan = existente(7, "Alan");
+        alan.setNombre("Alan J.");
+        Cliente ellie = nuevo("Ellie");
+
+        Connection conn = bd.getDataSource().getConnection();
+        conn.setAutoCommit(false);
+        SincronizacionTransaccion.abrir();
+        dao.guardarTodos(Arrays.asList(alan, ellie));
+        conn.commit();
+        SincronizacionTransaccion.cerrar(true);
+
+        assertFalse(alan.tieneCambios());
+        assertFalse(ellie.esNueva());
+        assertEquals(2, bd.getConfirmadas().size());
+    }
+}
@@ -0,0 +1,216 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Cliente;
+import jurassicpark.modelo.gestion.Reserva;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Pruebas de la recuperación del Diario tras una caída y de sus fallos al
+ * anotar
+ */
+public class DiarioTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    private Path ruta;
+    private Path rutaInstantanea;
+    private AlmacenMemoria almacen;
+    private Diario diario;
+
+    @Before
+    public void setUp() throws IOException {
+        ruta = carpeta.getRoot().toPath().resolve("jurassicpark.diario");
+        rutaInstantanea = carpeta.getRoot().toPath().resolve("jurassicpark.instantanea");
+        almacen = new AlmacenMemoria();
+        diario = Diario.abrir(ruta, rutaInstantanea, almacen);
+    }
+
+    @After
+    public void tearDown() {
+        diario.close();
+    }
+
+    private Cliente insertarCliente(String nombre) throws IOException {
+        Cliente cliente = new Cliente(0, nombre, "Hammond", nombre + "@example.com", "600000000");
+        almacen.insertarCliente(cliente);
+        return cliente;
+    }
+
+    /**
+     * Copia los ficheros tal como están ahora, sin cerrar el diario, y los
+     * abre en otro almacén: es lo que encontraría el arranque tras una caída
+     */
+    private AlmacenMemoria arrancarTrasCaida() throws IOException {
+        Path copia = carpeta.newFolder().toPath();
+        Path copiaDiario = copia.resolve(ruta.getFileName());
+        Files.copy(ruta, copiaDiario);
+        if (Files.exists(rutaInstantanea)) {
+            Files.copy(rutaInstantanea, copia.resolve(rutaInstantanea.getFileName()));
+        }
+
+        AlmacenMemoria recuperado = new AlmacenMemoria();
+        Diario otro = Diario.abrir(copiaDiario, copia.resolve(rutaInstantanea.getFileName()), recuperado);
+        otro.close();
+        return recuperado;
+    }
+
+    @Test
+    public void loConfirmadoSeRecuperaTrasUnaCaida() throws IOException {
+        Cliente john = insertarCliente("John");
+        Cliente ellie = insertarCliente("Ellie");
+        almacen.guardarReserva(new Reserva(1, john, new Date()));
+
+        AlmacenMemoria recuperado = arrancarTrasCaida();
+
+        assertEquals("John", recuperado.cliente(john.getId()).getNombre());
+        assertEquals("Ellie", recuperado.cliente(ellie.getId()).getNombre());
+        assertNotNull(recuperado.reserva(1, PlanCarga.SOLO_CABECERA));
+    }
+
+    @Test
+    public void elIndicePorFechaDeVisitaSeRehaceAlRecuperar() throws IOException {
+        Cliente john = insertarCliente("John");
+        almacen.guardarReserva(new Reserva(1, john, new Date(1000)));
+        almacen.guardarReserva(new Reserva(2, john, new Date(2000)));
+        diario.tomarInstantanea();
+
+        // Cambia de fecha después de la instantánea: sale de la vieja
+        almacen.guardarReserva(new Reserva(1, john, new Date(3000)));
+
+        AlmacenMemoria recuperado = arrancarTrasCaida();
+
+        assertEquals(Arrays.asList(2), recuperado.idsReservasPorFechaVisita(0, 2500));
+        assertEquals(Arrays.asList(2, 1), recuperado.idsReservasPorFechaVisita(0, 4000));
+        assertEquals(Arrays.asList(1), recuperado.idsReservasPorFechaVisita(3000, 3001));
+    }
+
+    @Test
+    public void unRegistroIncompletoSeDescartaConLoQueLeSigue() throws IOException {
+        Cliente john = insertarCliente("John");
+        Cliente ellie = insertarCliente("Ellie");
+
+        // Se estropea el último byte del último registro, como si la caída
+        // hubiera llegado a mitad de escribirlo
+        int fin = diario.getTamano();
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer ultimo = ByteBuffer.allocate(1);
+            canal.read(ultimo, fin - 1);
+            ultimo.put(0, (byte) ~ultimo.get(0)).rewind();
+            canal.write(ultimo, fin - 1);
+        }
+
+        AlmacenMemoria recuperado = arrancarTrasCaida();
+
+        assertNotNull(recuperado.cliente(john.getId()));
+        assertNull(recuperado.cliente(ellie.getId()));
+    }
+
+    @Test
+    public void laInstantaneaYLosRegistrosPosterioresSeRecuperanJuntos() throws IOException {
+        Cliente john = insertarCliente("John");
+        diario.tomarInstantanea();
+        Cliente ellie = insertarCliente("Ellie");
+
+        AlmacenMemoria recuperado = arrancarTrasCaida();
+
+        assertEquals("John", recuperado.cliente(john.getId()).getNombre());
+        assertEquals("Ellie", recuperado.cliente(ellie.getId()).getNombre());
+    }
+
+    @Test
+    public void alCerrarQuedaTodoEnLaInstantanea() throws IOException {
+        Cliente john = insertarCliente("John");
+        diario.close();
+
+        AlmacenMemoria recuperado = new AlmacenMemoria();
+        Diario reabierto = Diario.abrir(ruta, rutaInstantanea, recuperado);
+        try {
+            assertEquals("John", recuperado.cliente(john.getId()).getNombre());
+            // El diario de la nueva generación empieza vacío (solo la cabecera)
+            assertEquals(16, reabierto.getTamano());
+        } finally {
+            reabierto.close();
+        }
+    }
+
+    @Test
+    public void siNoSePuedeAnotarElAlmacenNoCambia() throws IOException {
+        Cliente john = insertarCliente("John");
+        int tamano = diario.getTamano();
+
+        // Una reserva sin estado no se puede codificar
+        Reserva reserva = new Reserva(1, john, new Date());
+        reserva.setEstado(null);
+        try {
+            almacen.guardarReserva(reserva);
+            fail("La reserva no se podía anotar");
+        } catch (RuntimeException e) {
+            // esperado
+        }
+
+        assertNull(almacen.reserva(1, PlanCarga.SOLO_CABECERA));
+        assertEquals(tamano, diario.getTamano());
+    }
+
+    @Test
+    public void variasFilasSeAnotanTodasONinguna() throws IOException {
+        Cliente john = insertarCliente("John");
+        int tamano = diario.getTamano();
+
+        AlmacenMemoria.FilaReserva correcta = new AlmacenMemoria.FilaReserva(1, john.getId(), 0, 0,
+                Reserva.EstadoReserva.PENDIENTE);
+        AlmacenMemoria.FilaReserva sinEstado = new AlmacenMemoria.FilaReserva(2, john.getId(), 0, 0, null);
+        List<AlmacenMemoria.FilaReserva> aplicadas = new ArrayList<>();
+        try {
+            diario.anotarVarias(() -> Arrays.asList(correcta, sinEstado), aplicadas::add);
+            fail("La segunda fila no se podía anotar");
+        } catch (RuntimeException e) {
+            // esperado
+        }
+
+        assertTrue(aplicadas.isEmpty());
+        assertNull(almacen.reserva(1, PlanCarga.SOLO_CABECERA));
+        assertEquals(tamano, diario.getTamano());
+
+        // El registro de la primera tampoco aparece al arrancar
+        assertNull(arrancarTrasCaida().reserva(1, PlanCarga.SOLO_CABECERA));
+    }
+
+    @Test
+    public void conElDiarioCerradoNoSeAplicaNada() throws IOException {
+        diario.close();
+
+        Cliente cliente = new Cliente(0, "Dennis", "Nedry", "dennis@example.com", "600000000");
+        try {
+            almacen.insertarCliente(cliente);
+            fail("El diario estaba cerrado");
+        } catch (IOException e) {
+            // esperado
+        }
+
+        assertEquals(0, cliente.getId());
+        assertNull(almacen.cliente(1));
+    }
+}
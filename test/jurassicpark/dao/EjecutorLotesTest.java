@@ -0,0 +1,111 @@
+package jurassicpark.dao;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas del guardado por lotes con savepoints de EjecutorLotes
+ */
+public class EjecutorLotesTest {
+
+    private static final String SQL = "INSERT INTO prueba (valor) VALUES (?)";
+
+    private BaseDatosFalsa bd;
+
+    @Before
+    public void setUp() {
+        bd = new BaseDatosFalsa();
+    }
+
+    private ResultadoLote<Integer> guardar(List<Integer> valores) throws Exception {
+        return EjecutorLotes.ejecutar(bd.getDataSource(), SQL, valores, (stmt, valor) -> stmt.setInt(1, valor));
+    }
+
+    private static List<Integer> secuencia(int cantidad) {
+        List<Integer> valores = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            valores.add(i);
+        }
+        return valores;
+    }
+
+    @Test
+    public void todasCorrectasSeEnvianEnUnLoteYSeConfirman() throws Exception {
+        ResultadoLote<Integer> resultado = guardar(Arrays.asList(1, 2, 3));
+
+        assertFalse(resultado.hayFallos());
+        assertEquals(Arrays.asList(1, 2, 3), resultado.getGuardados());
+        assertEquals(1, bd.lotesEjecutados);
+        assertEquals(0, bd.filasSueltas);
+        assertEquals(1, bd.commits);
+        assertEquals(3, bd.getConfirmadas().size());
+    }
+
+    @Test
+    public void unaFilaIncorrectaSoloDeshaceSuLoteYSeIdentificaPorPosicion() throws Exception {
+        // 150 elementos: un lote de 100 correcto y otro de 50 con el 120 mal
+        bd.fallarSi(fila -> Integer.valueOf(120).equals(fila.parametro(1)));
+
+        ResultadoLote<Integer> resultado = guardar(secuencia(150));
+
+        assertTrue(resultado.hayFallos());
+        assertEquals(1, resultado.getFallos().size());
+        assertTrue(resultado.getFallos().containsKey(120));
+        assertEquals(Integer.valueOf(120), resultado.getFallido(120));
+        assertEquals(149, resultado.getGuardados().size());
+
+        // Solo el segundo lote se repitió fila a fila
+        assertEquals(1, bd.lotesFallidos);
+        assertEquals(50, bd.filasSueltas);
+        assertEquals(149, bd.getConfirmadas().size());
+        for (BaseDatosFalsa.Fila fila : bd.getConfirmadas()) {
+            assertFalse(Integer.valueOf(120).equals(fila.parametro(1)));
+        }
+    }
+
+    @Test
+    public void losElementosIgualesSeDistinguenPorPosicion() throws Exception {
+        bd.fallarSi(fila -> Integer.valueOf(7).equals(fila.parametro(1)));
+
+        ResultadoLote<Integer> resultado = guardar(Arrays.asList(7, 1, 7));
+
+        assertEquals(2, resultado.getFallos().size());
+        assertTrue(resultado.getFallos().containsKey(0));
+        assertTrue(resultado.getFallos().containsKey(2));
+        assertEquals(Arrays.asList(1), resultado.getGuardados());
+    }
+
+    @Test
+    public void losElementosSinCambiosNoSeEnvian() throws Exception {
+        ResultadoLote<Integer> resultado = EjecutorLotes.ejecutar(bd.getDataSource(), SQL,
+                Arrays.asList(1, 2, 3, 4), valor -> valor % 2 == 0, (stmt, valor) -> stmt.setInt(1, valor));
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), resultado.getGuardados());
+        assertEquals(2, bd.getConfirmadas().size());
+    }
+
+    @Test
+    public void dentroDeUnaTransaccionAjenaNoConfirma() throws Exception {
+        Connection conn = bd.getDataSource().getConnection();
+        conn.setAutoCommit(false);
+        bd.fallarSi(fila -> Integer.valueOf(2).equals(fila.parametro(1)));
+
+        ResultadoLote<Integer> resultado = guardar(Arrays.asList(1, 2, 3));
+
+        assertTrue(resultado.hayFallos());
+        assertEquals(0, bd.commits);
+        assertEquals(2, bd.getEscritas().size());
+
+        // Quien abrió la transacción decide: al deshacer no queda nada
+        conn.rollback();
+        assertEquals(0, bd.getConfirmadas().size());
+    }
+}
@@ -0,0 +1,95 @@
+package jurassicpark.dao;
+
+import jurassicpark.modelo.gestion.Entrada;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Pruebas de EntradaDAOMySQL: guardado completo o solo de lo cambiado y
+ * marcado en lote todo o nada
+ */
+public class EntradaDAOMySQLTest {
+
+    private BaseDatosFalsa bd;
+    private EntradaDAOMySQL dao;
+
+    @Before
+    public void setUp() {
+        bd = new BaseDatosFalsa();
+        dao = new EntradaDAOMySQL(bd.getDataSource());
+    }
+
+    @Test
+    public void unLoteCorrectoSeConfirmaEntero() throws Exception {
+        List<Integer> marcadas = dao.marcarComoUtilizadas(Arrays.asList(100, 101, 102));
+
+        assertEquals(Arrays.asList(100, 101, 102), marcadas);
+        assertEquals(3, bd.getConfirmadas().size());
+        assertEquals(1, bd.commits);
+    }
+
+    @Test
+    public void siFallaUnaFilaNoSeMarcaNinguna() throws Exception {
+        bd.fallarSi(fila -> Integer.valueOf(101).equals(fila.parametro(1)));
+        try {
+            dao.marcarComoUtilizadas(Arrays.asList(100, 101, 102));
+            fail("El lote tenía una fila rechazada");
+        } catch (SQLException e) {
+            // esperado
+        }
+
+        assertTrue(bd.getEscritas().isEmpty());
+        assertEquals(1, bd.rollbacks);
+    }
+
+    @Test
+    public void dentroDeUnaTransaccionNoLaConfirmaNiLaDeshace() throws Exception {
+        Connection conn = bd.getDataSource().getConnection();
+        conn.setAutoCommit(false);
+
+        dao.marcarComoUtilizadas(Arrays.asList(100, 101));
+
+        assertEquals(0, bd.commits);
+        assertEquals(2, bd.getEscritas().size());
+        assertTrue(bd.getConfirmadas().isEmpty());
+    }
+
+    @Test
+    public void unaEntradaNuevaSeGuardaEntera() throws Exception {
+        Entrada entrada = new Entrada(100, null, 10);
+
+        dao.guardar(entrada);
+
+        assertEquals(1, bd.getConfirmadas().size());
+        assertTrue(bd.getConfirmadas().get(0).sql.startsWith("INSERT INTO entrada"));
+        assertEquals(6, bd.getConfirmadas().get(0).parametros.size());
+        assertFalse(entrada.esNueva());
+    }
+
+    @Test
+    public void unaEntradaLeidaSoloEscribeLoQueHaCambiado() throws Exception {
+        Entrada entrada = new Entrada(100, null, 10);
+        entrada.marcarGuardada();
+
+        // Sin cambios no se envía nada
+        dao.guardar(entrada);
+        assertTrue(bd.getEscritas().isEmpty());
+
+        entrada.setPrecio(12);
+        dao.guardar(entrada);
+        assertEquals(1, bd.getConfirmadas().size());
+        assertEquals("UPDATE entrada SET precio = ? WHERE identrada = ?", bd.getConfirmadas().get(0).sql);
+        assertEquals(Arrays.asList(12.0, 100), bd.getConfirmadas().get(0).parametros);
+        assertFalse(entrada.tieneCambios());
+    }
+}
@@ -0,0 +1,35 @@
+package jurassicpark.modelo.gestion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas de las asociaciones perezosas de Entrada
+ */
+public class EntradaTest {
+
+    private static <T> T sinCargar() {
+        throw new AssertionError("No debería cargarse");
+    }
+
+    @Test
+    public void elIdDeLaReservaNoNecesitaCargarla() {
+        Entrada perezosa = new Entrada(1, null, 10);
+        perezosa.setReservaPerezosa(7, EntradaTest::sinCargar);
+        assertEquals(7, perezosa.getReservaId());
+
+        // Sin reserva ni carga pendiente no falla
+        assertEquals(0, new Entrada(2, null, 10).getReservaId());
+    }
+
+    @Test
+    public void toStringNoCargaElVisitante() {
+        Entrada entrada = new Entrada(1, null, 10);
+        entrada.setVisitantePerezoso(42, EntradaTest::sinCargar);
+
+        assertTrue(entrada.toString().contains("visitante=#42"));
+        assertTrue(new Entrada(2, null, 10).toString().contains("Sin asignar"));
+    }
+}
@@ -0,0 +1,60 @@
+package jurassicpark.modelo.gestion;
+
+import jurassicpark.util.ListaPerezosa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas de la lista perezosa de entradas de Reserva
+ */
+public class ReservaTest {
+
+    private Reserva reserva;
+    private Entrada guardada;
+    private ListaPerezosa<Entrada> entradas;
+
+    @Before
+    public void setUp() {
+        reserva = new Reserva(1, new Cliente(1, "John", "Hammond", "john@example.com", "600000000"), new Date());
+        guardada = new Entrada(100, reserva, 10);
+        entradas = new ListaPerezosa<>(() -> new ArrayList<>(Arrays.asList(guardada)));
+        reserva.setEntradas(entradas);
+    }
+
+    @Test
+    public void agregarUnaEntradaNoCargaLasDemas() {
+        Entrada nueva = new Entrada(101, reserva, 10);
+        reserva.agregarEntrada(nueva);
+        assertFalse(entradas.estaCargada());
+
+        assertEquals(2, reserva.getEntradas().size());
+        assertSame(guardada, reserva.getEntradas().get(0));
+        assertSame(nueva, reserva.getEntradas().get(1));
+    }
+
+    @Test
+    public void loAgregadoQueYaTraeLaCargaNoSeRepite() {
+        // Guardada antes de consultar las entradas: la carga ya la devuelve
+        reserva.agregarEntrada(guardada);
+
+        assertEquals(1, reserva.getEntradas().size());
+    }
+
+    @Test
+    public void toStringNoCargaLasEntradas() {
+        assertTrue(reserva.toString().contains("entradas=sin cargar"));
+        assertFalse(entradas.estaCargada());
+
+        reserva.getEntradas().size();
+        assertTrue(reserva.toString().contains("entradas=1"));
+    }
+}
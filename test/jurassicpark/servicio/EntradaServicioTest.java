@@ -0,0 +1,90 @@
+package jurassicpark.servicio;
+
+import jurassicpark.dao.AlmacenMemoria;
+import jurassicpark.dao.ClienteDAOMemoria;
+import jurassicpark.dao.EntradaDAOMemoria;
+import jurassicpark.dao.GeneradorIdsMemoria;
+import jurassicpark.dao.ReservaDAOMemoria;
+import jurassicpark.dao.VisitanteDAOMemoria;
+import jurassicpark.modelo.gestion.Cliente;
+import jurassicpark.modelo.gestion.Entrada;
+import jurassicpark.modelo.gestion.Reserva;
+import jurassicpark.modelo.gestion.Visitante;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas de EntradaServicio sobre el backend en memoria
+ */
+public class EntradaServicioTest {
+
+    private EntradaServicio entradaServicio;
+    private VisitanteDAOMemoria visitanteDAO;
+    private Reserva reserva;
+
+    @Before
+    public void setUp() throws Exception {
+        AlmacenMemoria almacen = new AlmacenMemoria();
+        entradaServicio = new EntradaServicio(new EntradaDAOMemoria(almacen),
+                new GeneradorIdsMemoria(new AtomicInteger(5000)));
+        visitanteDAO = new VisitanteDAOMemoria(almacen);
+
+        Cliente cliente = new ClienteDAOMemoria(almacen)
+                .guardar(new Cliente(0, "Alan", "Grant", "alan@example.com", "600000000"));
+        reserva = new ReservaDAOMemoria(almacen).guardar(new Reserva(1, cliente, new Date()));
+    }
+
+    private Visitante visitanteGuardado(int id, String nombre) throws Exception {
+        return visitanteDAO.guardar(new Visitante(id, nombre, "Sattler", 30));
+    }
+
+    @Test
+    public void asignaCadaVisitanteALaEntradaDeSuPosicion() throws Exception {
+        List<Entrada> entradas = entradaServicio.generarEntradas(reserva, 3, 10);
+        List<Visitante> visitantes = Arrays.asList(visitanteGuardado(1, "Ellie"),
+                visitanteGuardado(2, "Ian"), visitanteGuardado(3, "John"));
+
+        assertTrue(entradaServicio.asignarVisitantes(reserva, entradas, visitantes));
+
+        for (int i = 0; i < entradas.size(); i++) {
+            assertSame(visitantes.get(i), entradas.get(i).getVisitante());
+        }
+    }
+
+    @Test
+    public void noAsignaNingunoSiLasListasNoCoinciden() throws Exception {
+        List<Entrada> entradas = entradaServicio.generarEntradas(reserva, 3, 10);
+        List<Visitante> visitantes = Arrays.asList(visitanteGuardado(1, "Ellie"), visitanteGuardado(2, "Ian"));
+
+        assertFalse(entradaServicio.asignarVisitantes(reserva, entradas, visitantes));
+
+        for (Entrada entrada : entradas) {
+            assertFalse(entrada.tieneVisitanteAsignado());
+        }
+    }
+
+    @Test
+    public void noAsignaNingunoSiUnVisitanteNoSeGuardo() throws Exception {
+        List<Entrada> entradas = entradaServicio.generarEntradas(reserva, 3, 10);
+        // El segundo visitante no llegó a guardarse
+        List<Visitante> visitantes = Arrays.asList(visitanteGuardado(1, "Ellie"),
+                new Visitante(2, "Ian", "Malcolm", 40), visitanteGuardado(3, "John"));
+
+        assertFalse(entradaServicio.asignarVisitantes(reserva, entradas, visitantes));
+
+        for (Entrada entrada : entradas) {
+            assertFalse(entrada.tieneVisitanteAsignado());
+        }
+        assertEquals(3, entradas.size());
+    }
+}
@@ -0,0 +1,186 @@
+package jurassicpark.servicio;
+
+import jurassicpark.dao.GeneradorIdsMemoria;
+import jurassicpark.servicio.TornosDePrueba.EntradaDAOControlado;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas de IngestaTornos sobre el backend en memoria: cola acotada, lotes,
+ * cierre, reintentos y descarte de lecturas repetidas
+ */
+public class IngestaTornosTest {
+
+    private TornosDePrueba datos;
+    private EntradaDAOControlado entradaDAO;
+    private EntradaServicio entradaServicio;
+    private IngestaTornos ingesta;
+
+    @Before
+    public void setUp() throws Exception {
+        datos = new TornosDePrueba();
+        entradaDAO = datos.entradaDAO;
+        entradaServicio = new EntradaServicio(entradaDAO, new GeneradorIdsMemoria(new AtomicInteger(5000)));
+    }
+
+    @After
+    public void tearDown() {
+        if (ingesta != null) {
+            ingesta.close();
+        }
+    }
+
+    private static void esperarHasta(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean()) {
+            assertTrue("No se cumplió a tiempo", System.nanoTime() < limite);
+            Thread.sleep(1);
+        }
+    }
+
+    private boolean utilizadaEnBD(int id) throws Exception {
+        return datos.utilizadaEnBD(id);
+    }
+
+    @Test
+    public void conLaColaLlenaRegistrarDevuelveFalse() throws Exception {
+        entradaDAO.puerta = new CountDownLatch(1);
+        ingesta = new IngestaTornos(entradaServicio, 4, 1, 0);
+
+        // El consumidor se queda esperando a la BD con la primera lectura
+        assertTrue(ingesta.registrar(100));
+        assertTrue(entradaDAO.dentro.await(5, TimeUnit.SECONDS));
+
+        for (int id = 101; id <= 104; id++) {
+            assertTrue(ingesta.registrar(id));
+        }
+        assertFalse(ingesta.registrar(105));
+        assertFalse(ingesta.registrar(105, 10, TimeUnit.MILLISECONDS));
+        assertEquals(2, ingesta.getRechazadas());
+        assertEquals(5, ingesta.getPendientes());
+
+        // Al responder la BD se vacía la cola y vuelve a haber sitio
+        entradaDAO.puerta.countDown();
+        esperarHasta(() -> ingesta.getPendientes() == 0);
+        assertTrue(ingesta.registrar(105));
+        ingesta.close();
+
+        assertEquals(6, ingesta.getRecibidas());
+        assertEquals(6, ingesta.getGuardadas());
+    }
+
+    @Test
+    public void unLoteLlenoSeGuardaSinEsperar() throws Exception {
+        ingesta = new IngestaTornos(entradaServicio, 64, 3, TimeUnit.MINUTES.toMillis(1));
+
+        for (int id = 100; id <= 105; id++) {
+            assertTrue(ingesta.registrar(id));
+        }
+        esperarHasta(() -> ingesta.getLotes() == 2);
+
+        assertEquals(Arrays.asList(3, 3), entradaDAO.lotes);
+        assertEquals(6, ingesta.getGuardadas());
+    }
+
+    @Test
+    public void unLoteIncompletoSeGuardaAlVencerLaEspera() throws Exception {
+        ingesta = new IngestaTornos(entradaServicio, 64, 100, 20);
+
+        assertTrue(ingesta.registrar(100));
+        assertTrue(ingesta.registrar(101));
+        esperarHasta(() -> ingesta.getGuardadas() == 2);
+
+        assertEquals(1, ingesta.getLotes());
+        assertTrue(ingesta.getRetrasoUltimoLoteNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void alCerrarSeGuardaLoQueQuedaEnLaCola() throws Exception {
+        ingesta = new IngestaTornos(entradaServicio, 64, 100, TimeUnit.MINUTES.toMillis(1));
+
+        for (int id = 100; id <= 104; id++) {
+            assertTrue(ingesta.registrar(id));
+        }
+        ingesta.close();
+
+        assertEquals(5, ingesta.getGuardadas());
+        assertEquals(0, ingesta.getPendientes());
+        for (int id = 100; id <= 104; id++) {
+            assertTrue(utilizadaEnBD(id));
+        }
+    }
+
+    @Test
+    public void unLoteReintentadoSeCuentaUnaVez() throws Exception {
+        entradaDAO.marcarComoUtilizada(101);
+        entradaDAO.fallos.set(1);
+        ingesta = new IngestaTornos(entradaServicio, 64, 3, 50);
+
+        for (int id = 100; id <= 102; id++) {
+            assertTrue(ingesta.registrar(id));
+        }
+        // Se cierra tras el reintento: al cerrar un lote fallido ya no se
+        // reintenta
+        esperarHasta(() -> ingesta.getLotes() == 1);
+        ingesta.close();
+
+        assertEquals(Arrays.asList(3), entradaDAO.lotes);
+        assertEquals(2, ingesta.getGuardadas());
+        assertEquals(1, ingesta.getYaUtilizadas());
+        assertEquals(0, ingesta.getPendientes());
+    }
+
+    @Test
+    public void sinValidadorSoloSeDescartanLasRepetidasDelLoteEnCurso() throws Exception {
+        ingesta = new IngestaTornos(entradaServicio, 64, 2, TimeUnit.MINUTES.toMillis(1));
+
+        assertTrue(ingesta.registrar(100));
+        assertTrue(ingesta.registrar(100));
+        assertTrue(ingesta.registrar(101));
+        esperarHasta(() -> ingesta.getLotes() == 1);
+
+        // Ya en otro lote: es la BD quien la da por utilizada
+        assertTrue(ingesta.registrar(100));
+        ingesta.close();
+
+        assertEquals(1, ingesta.getDuplicadas());
+        assertEquals(2, ingesta.getGuardadas());
+        assertEquals(1, ingesta.getYaUtilizadas());
+    }
+
+    @Test
+    public void conValidadorSeDescartanLasUtilizadasYLasQueNoSonDelDia() throws Exception {
+        try (ValidadorAcceso validador = new ValidadorAcceso(entradaDAO)) {
+            assertEquals(10, validador.cargar(new Date()));
+            ingesta = new IngestaTornos(entradaServicio, validador, 64, 100, TimeUnit.MINUTES.toMillis(1));
+
+            for (int id : new int[] { 100, 101, 100, 200, 999 }) {
+                assertTrue(ingesta.registrar(id));
+            }
+            ingesta.close();
+
+            assertEquals(2, ingesta.getGuardadas());
+            assertEquals(1, ingesta.getDuplicadas());
+            assertEquals(2, ingesta.getNoValidas());
+            assertTrue(validador.estaUtilizada(100));
+            assertTrue(utilizadaEnBD(100));
+            assertTrue(utilizadaEnBD(101));
+
+            // Las escribe la ingesta, no el validador
+            validador.persistirPendientes();
+            assertEquals(0, validador.getPersistidas());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package jurassicpark.servicio;
+
+import jurassicpark.dao.AlmacenMemoria;
+import jurassicpark.dao.ClienteDAOMemoria;
+import jurassicpark.dao.EntradaDAOMemoria;
+import jurassicpark.dao.ReservaDAOMemoria;
+import jurassicpark.modelo.gestion.Cliente;
+import jurassicpark.modelo.gestion.Entrada;
+import jurassicpark.modelo.gestion.Reserva;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Datos comunes de las pruebas de los tornos sobre el backend en memoria.
+ *
+ * Hay una reserva de hoy con las entradas 100-109, una de mañana con la 200
+ * y una cancelada de hoy con la 300. Las entradas se escriben con un DAO que
+ * puede fallar, quedarse esperando o hacer algo tras leer los estados del
+ * día.
+ */
+class TornosDePrueba {
+
+    static final long DIA_MS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * DAO que apunta los lotes que recibe, puede fallar las primeras
+     * llamadas a marcarComoUtilizadas o quedarse esperando en ellas, y puede
+     * hacer algo justo después de leer los estados del día
+     */
+    static class EntradaDAOControlado extends EntradaDAOMemoria {
+        final List<Integer> lotes = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger fallos = new AtomicInteger();
+        final CountDownLatch dentro = new CountDownLatch(1);
+        volatile CountDownLatch puerta = new CountDownLatch(0);
+        volatile Runnable trasLeer;
+
+        EntradaDAOControlado(AlmacenMemoria almacen) {
+            super(almacen);
+        }
+
+        @Override
+        public List<Integer> marcarComoUtilizadas(Collection<Integer> ids) throws Exception {
+            dentro.countDown();
+            puerta.await();
+            if (fallos.getAndDecrement() > 0) {
+                throw new Exception("BD no disponible");
+            }
+            lotes.add(ids.size());
+            return super.marcarComoUtilizadas(ids);
+        }
+
+        @Override
+        public void recorrerEstadosPorFechaVisita(Date desde, Date hasta, ConsumidorEstado consumidor)
+                throws Exception {
+            super.recorrerEstadosPorFechaVisita(desde, hasta, consumidor);
+            Runnable accion = trasLeer;
+            if (accion != null) {
+                accion.run();
+            }
+        }
+    }
+
+    final AlmacenMemoria almacen = new AlmacenMemoria();
+    final EntradaDAOControlado entradaDAO = new EntradaDAOControlado(almacen);
+
+    TornosDePrueba() throws Exception {
+        ReservaDAOMemoria reservaDAO = new ReservaDAOMemoria(almacen);
+
+        Cliente cliente = new ClienteDAOMemoria(almacen)
+                .guardar(new Cliente(0, "John", "Hammond", "john@example.com", "600000000"));
+        Reserva hoy = reservaDAO.guardar(new Reserva(1, cliente, new Date()));
+        Reserva manana = reservaDAO.guardar(new Reserva(2, cliente, new Date(System.currentTimeMillis() + DIA_MS)));
+        Reserva cancelada = new Reserva(3, cliente, new Date());
+        cancelada.setEstado(Reserva.EstadoReserva.CANCELADA);
+        reservaDAO.guardar(cancelada);
+
+        for (int id = 100; id <= 109; id++) {
+            entradaDAO.guardar(new Entrada(id, hoy, 10));
+        }
+        entradaDAO.guardar(new Entrada(200, manana, 10));
+        entradaDAO.guardar(new Entrada(300, cancelada, 10));
+    }
+
+    boolean utilizadaEnBD(int id) throws Exception {
+        return entradaDAO.buscarPorId(id).isUtilizada();
+    }
+}
@@ -0,0 +1,92 @@
+package jurassicpark.servicio;
+
+import jurassicpark.dao.AlmacenMemoria;
+import jurassicpark.dao.ClienteDAOMemoria;
+import jurassicpark.dao.EntradaDAOMemoria;
+import jurassicpark.dao.GeneradorIdsMemoria;
+import jurassicpark.modelo.gestion.Cliente;
+import jurassicpark.modelo.gestion.Reserva;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Pruebas de las unidades anidadas y de la marca para deshacer de
+ * UnidadDeTrabajo (con el backend en memoria)
+ */
+public class UnidadDeTrabajoTest {
+
+    private static void confirmarYFallar(UnidadDeTrabajo unidad) {
+        try {
+            unidad.confirmar();
+            fail("La unidad no debería poder confirmarse");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains("se deshace"));
+        }
+    }
+
+    @Test
+    public void unaAnidadaConfirmadaNoImpideConfirmarLaExterior() throws Exception {
+        try (UnidadDeTrabajo exterior = UnidadDeTrabajo.iniciar()) {
+            try (UnidadDeTrabajo anidada = UnidadDeTrabajo.iniciar()) {
+                anidada.confirmar();
+            }
+            exterior.confirmar();
+        }
+    }
+
+    @Test
+    public void unaAnidadaSinConfirmarMarcaLaExteriorParaDeshacer() throws Exception {
+        try (UnidadDeTrabajo exterior = UnidadDeTrabajo.iniciar()) {
+            // Se cierra sin confirmar, por ejemplo tras una excepción
+            UnidadDeTrabajo.iniciar().close();
+            confirmarYFallar(exterior);
+        }
+
+        // La marca muere con la unidad exterior
+        try (UnidadDeTrabajo siguiente = UnidadDeTrabajo.iniciar()) {
+            siguiente.confirmar();
+        }
+    }
+
+    @Test
+    public void marcarParaDeshacerSinUnidadNoTieneEfecto() throws Exception {
+        UnidadDeTrabajo.marcarParaDeshacer();
+        try (UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar()) {
+            unidad.confirmar();
+        }
+    }
+
+    @Test
+    public void unaUnidadDeSoloLecturaNoSeMarca() throws Exception {
+        try (UnidadDeTrabajo lectura = UnidadDeTrabajo.iniciarSinTransaccion()) {
+            try (UnidadDeTrabajo anidada = UnidadDeTrabajo.iniciar()) {
+                anidada.confirmar();
+            }
+            UnidadDeTrabajo.marcarParaDeshacer();
+            lectura.confirmar();
+        }
+    }
+
+    @Test
+    public void unGuardadoPorLotesConFallosImpideConfirmar() throws Exception {
+        AlmacenMemoria almacen = new AlmacenMemoria();
+        EntradaServicio entradaServicio = new EntradaServicio(new EntradaDAOMemoria(almacen),
+                new GeneradorIdsMemoria(new AtomicInteger(5000)));
+        Cliente cliente = new ClienteDAOMemoria(almacen)
+                .guardar(new Cliente(0, "Alan", "Grant", "alan@example.com", "600000000"));
+        // La reserva no se ha guardado: el almacén rechaza sus entradas
+        Reserva reserva = new Reserva(1, cliente, new Date());
+
+        try (UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar()) {
+            assertEquals(0, entradaServicio.generarEntradas(reserva, 2, 10).size());
+            confirmarYFallar(unidad);
+        }
+    }
+}
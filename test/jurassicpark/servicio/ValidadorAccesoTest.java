@@ -0,0 +1,159 @@
+package jurassicpark.servicio;
+
+import jurassicpark.servicio.TornosDePrueba.EntradaDAOControlado;
+import jurassicpark.servicio.ValidadorAcceso.Resultado;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas de ValidadorAcceso sobre el backend en memoria: validación con
+ * compare-and-set y escritura de las entradas pendientes en la BD
+ */
+public class ValidadorAccesoTest {
+
+    private TornosDePrueba datos;
+    private EntradaDAOControlado entradaDAO;
+    private ValidadorAcceso validador;
+
+    @Before
+    public void setUp() throws Exception {
+        datos = new TornosDePrueba();
+        entradaDAO = datos.entradaDAO;
+        entradaDAO.marcarComoUtilizada(104);
+
+        validador = new ValidadorAcceso(entradaDAO);
+        assertEquals(10, validador.cargar(new Date()));
+    }
+
+    @After
+    public void tearDown() {
+        validador.close();
+    }
+
+    private boolean utilizadaEnBD(int id) throws Exception {
+        return datos.utilizadaEnBD(id);
+    }
+
+    @Test
+    public void unaEntradaSoloSeAceptaUnaVez() {
+        assertEquals(Resultado.ACEPTADA, validador.validar(100));
+        assertEquals(Resultado.YA_UTILIZADA, validador.validar(100));
+        assertTrue(validador.estaUtilizada(100));
+
+        // Ya estaba utilizada al cargar
+        assertEquals(Resultado.YA_UTILIZADA, validador.validar(104));
+    }
+
+    @Test
+    public void soloLasEntradasDeHoyNoCanceladasSonValidas() {
+        assertEquals(Resultado.NO_VALIDA, validador.validar(200));
+        assertEquals(Resultado.NO_VALIDA, validador.validar(300));
+        assertEquals(Resultado.NO_VALIDA, validador.validar(99));
+        assertEquals(Resultado.NO_VALIDA, validador.validar(5000));
+        assertFalse(validador.estaUtilizada(200));
+    }
+
+    @Test
+    public void variosTornosALaVezAceptanCadaEntradaUnaSolaVez() throws Exception {
+        int tornos = 8;
+        AtomicIntegerArray aceptadas = new AtomicIntegerArray(5);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Thread> hilos = new ArrayList<>();
+        for (int t = 0; t < tornos; t++) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int vuelta = 0; vuelta < 100; vuelta++) {
+                    for (int id = 100; id <= 104; id++) {
+                        if (validador.validar(id) == Resultado.ACEPTADA) {
+                            aceptadas.incrementAndGet(id - 100);
+                        }
+                    }
+                }
+            });
+            hilo.start();
+            hilos.add(hilo);
+        }
+        salida.countDown();
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1, aceptadas.get(i));
+        }
+        assertEquals(0, aceptadas.get(4));
+
+        validador.persistirPendientes();
+        assertEquals(4, validador.getPersistidas());
+        for (int id = 100; id <= 103; id++) {
+            assertTrue(utilizadaEnBD(id));
+        }
+    }
+
+    @Test
+    public void lasMarcadasPorOtraViaSoloSeCuentan() throws Exception {
+        // Marcada en la BD después de cargar: el validador no lo sabe
+        entradaDAO.marcarComoUtilizada(101);
+
+        assertEquals(Resultado.ACEPTADA, validador.validar(100));
+        assertEquals(Resultado.ACEPTADA, validador.validar(101));
+        validador.persistirPendientes();
+
+        assertEquals(1, validador.getPersistidas());
+        assertEquals(1, validador.getYaUtilizadasEnBD());
+        assertTrue(utilizadaEnBD(100));
+    }
+
+    @Test
+    public void siLaBDFallaSeReintentaEnLaSiguienteVuelta() throws Exception {
+        entradaDAO.fallos.set(1);
+        assertEquals(Resultado.ACEPTADA, validador.validar(102));
+        assertEquals(Resultado.ACEPTADA, validador.validar(103));
+
+        // La primera escritura falla (aquí o en el hilo de persistencia) y la
+        // siguiente escribe las dos
+        validador.persistirPendientes();
+        validador.persistirPendientes();
+
+        assertTrue(utilizadaEnBD(102));
+        assertTrue(utilizadaEnBD(103));
+        assertEquals(2, validador.getPersistidas());
+        assertEquals(0, validador.getYaUtilizadasEnBD());
+    }
+
+    @Test
+    public void alCerrarSeEscribeLoPendiente() throws Exception {
+        assertEquals(Resultado.ACEPTADA, validador.validar(100));
+        validador.close();
+
+        assertTrue(utilizadaEnBD(100));
+    }
+
+    @Test
+    public void loAceptadoDuranteUnaRecargaNoSeAceptaOtraVez() throws Exception {
+        // Un torno acepta la entrada después de que la recarga haya leído la
+        // BD, todavía con el índice viejo
+        entradaDAO.trasLeer = () -> assertEquals(Resultado.ACEPTADA, validador.validar(100));
+        assertEquals(10, validador.cargar(new Date()));
+        entradaDAO.trasLeer = null;
+
+        assertEquals(Resultado.YA_UTILIZADA, validador.validar(100));
+        validador.persistirPendientes();
+        assertTrue(utilizadaEnBD(100));
+    }
+}